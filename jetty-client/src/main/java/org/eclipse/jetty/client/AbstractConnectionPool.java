@@ -19,6 +19,7 @@
 package org.eclipse.jetty.client;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -47,6 +48,7 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
     private final Destination destination;
     private final int maxConnections;
     private final Callback requester;
+    private volatile int minConnections;
 
     protected AbstractConnectionPool(Destination destination, int maxConnections, Callback requester)
     {
@@ -61,6 +63,30 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
         return maxConnections;
     }
 
+    @ManagedAttribute(value = "The min number of connections")
+    public int getMinConnectionCount()
+    {
+        return minConnections;
+    }
+
+    /**
+     * <p>Sets the min number of connections kept open by this pool.</p>
+     * <p>When a connection is removed from this pool, for example because it
+     * idle timed out or was closed by the server, a new connection is opened
+     * in the background if the number of connections falls below this value.
+     * Connections that idle time out are therefore replaced, once per idle
+     * timeout period; configure a longer idle timeout to avoid this churn.</p>
+     * <p>Failures to open these connections are logged and do not fail the
+     * requests queued in the destination.</p>
+     *
+     * @param minConnections the min number of connections
+     * @see #preCreateConnections(int)
+     */
+    public void setMinConnectionCount(int minConnections)
+    {
+        this.minConnections = minConnections;
+    }
+
     @ManagedAttribute(value = "The number of connections", readonly = true)
     public int getConnectionCount()
     {
@@ -97,7 +123,48 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
         return connection;
     }
 
+    /**
+     * <p>Opens, in the background, the given number of connections, within the
+     * {@link #getMaxConnectionCount() max number of connections}, so that the
+     * requests that follow do not pay the cost of opening connections.</p>
+     *
+     * <p>Failures to open these connections only complete the returned
+     * CompletableFuture, and do not fail the requests queued in the destination.</p>
+     *
+     * @param connectionCount the number of connections to open
+     * @return a CompletableFuture completed when the connections have been opened,
+     * or completed exceptionally if one of them could not be opened
+     */
+    public CompletableFuture<Void> preCreateConnections(int connectionCount)
+    {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.max(0, connectionCount)];
+        for (int i = 0; i < futures.length; ++i)
+        {
+            futures[i] = tryCreateReturningFuture(maxConnections, true);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * <p>Opens, in the background, the connections needed to reach the
+     * {@link #getMinConnectionCount() min number of connections}.</p>
+     *
+     * @return a CompletableFuture completed when the connections have been opened
+     */
+    public CompletableFuture<Void> ensureMinConnections()
+    {
+        int missing = getMinConnectionCount() - getConnectionCount();
+        if (missing <= 0 || isClosed())
+            return CompletableFuture.completedFuture(null);
+        return preCreateConnections(missing);
+    }
+
     protected void tryCreate(int maxPending)
+    {
+        tryCreateReturningFuture(maxPending, false);
+    }
+
+    private CompletableFuture<Void> tryCreateReturningFuture(int maxPending, boolean background)
     {
         while (true)
         {
@@ -109,16 +176,17 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                 LOG.debug("tryCreate {}/{} connections {}/{} pending", total, maxConnections, pending, maxPending);
 
             if (total >= maxConnections)
-                return;
+                return CompletableFuture.completedFuture(null);
 
             if (maxPending >= 0 && pending >= maxPending)
-                return;
+                return CompletableFuture.completedFuture(null);
 
             if (connections.compareAndSet(encoded, pending + 1, total + 1))
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("newConnection {}/{} connections {}/{} pending", total + 1, maxConnections, pending + 1, maxPending);
 
+                CompletableFuture<Void> future = new CompletableFuture<>();
                 destination.newConnection(new Promise<Connection>()
                 {
                     @Override
@@ -129,6 +197,7 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                         connections.add(-1, 0);
                         onCreated(connection);
                         proceed();
+                        future.complete(null);
                     }
 
                     @Override
@@ -137,11 +206,17 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                         if (LOG.isDebugEnabled())
                             LOG.debug("Connection " + (total + 1) + "/" + maxConnections + " creation failed", x);
                         connections.add(-1, -1);
-                        requester.failed(x);
+                        // A connection opened in the background is not
+                        // requested by an exchange, so it cannot fail one.
+                        if (background)
+                            LOG.info("Could not pre-create connection to {}: {}", destination, x.toString());
+                        else
+                            requester.failed(x);
+                        future.completeExceptionally(x);
                     }
                 });
 
-                return;
+                return future;
             }
         }
     }
@@ -192,6 +267,8 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
         int pooled = connections.addAndGetLo(-1);
         if (LOG.isDebugEnabled())
             LOG.debug("Connection removed {} - pooled: {}", connection, pooled);
+        if (pooled < getMinConnectionCount())
+            ensureMinConnections();
     }
 
     @Override
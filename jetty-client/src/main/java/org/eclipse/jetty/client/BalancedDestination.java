@@ -0,0 +1,441 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A logical {@link Destination} that groups several equivalent {@link Origin}s,
+ * and routes each request to one of them.</p>
+ * <p>Balanced destinations are created with
+ * {@link HttpClient#newBalancedDestination(String, String, int, List, Strategy)};
+ * requests sent to the logical scheme, host and port of a balanced destination
+ * are routed to the {@link HttpDestination} of the selected origin, so that each
+ * origin keeps its own {@link ConnectionPool} and request queue.</p>
+ * <p>The origin is selected with a {@link Strategy} that avoids slow or overloaded
+ * origins. Origins whose requests fail to connect or with an I/O error (or respond
+ * with a 5xx status) {@link #getMaxConsecutiveFailures() maxConsecutiveFailures}
+ * times in a row are
+ * ejected, and not selected for {@link #getEjectionTime() ejectionTime}
+ * milliseconds, doubled at every following ejection; if all the origins are
+ * ejected, they are all selectable.</p>
+ * <p>Since requests keep their logical host, HTTP/1.1 requests use the
+ * {@code Host} header of the selected origin unless the application sets one,
+ * while other transports may use the logical authority.</p>
+ */
+@ManagedObject
+public class BalancedDestination implements Destination, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(BalancedDestination.class);
+
+    private final HttpClient client;
+    private final Origin origin;
+    private final List<Member> members;
+    private final Strategy strategy;
+    private volatile long decayTime = TimeUnit.SECONDS.toMillis(10);
+    private volatile int maxConsecutiveFailures = 5;
+    private volatile long ejectionTime = TimeUnit.SECONDS.toMillis(30);
+
+    public BalancedDestination(HttpClient client, Origin origin, List<Origin> origins, Strategy strategy)
+    {
+        if (origins.isEmpty())
+            throw new IllegalArgumentException("No origins for " + origin);
+        this.client = client;
+        this.origin = origin;
+        List<Member> members = new ArrayList<>(origins.size());
+        for (Origin member : origins)
+        {
+            members.add(new Member(member));
+        }
+        this.members = Collections.unmodifiableList(members);
+        this.strategy = strategy;
+    }
+
+    public HttpClient getHttpClient()
+    {
+        return client;
+    }
+
+    public Origin getOrigin()
+    {
+        return origin;
+    }
+
+    @Override
+    public String getScheme()
+    {
+        return origin.getScheme();
+    }
+
+    @Override
+    public String getHost()
+    {
+        return origin.getAddress().getHost();
+    }
+
+    @Override
+    public int getPort()
+    {
+        return origin.getAddress().getPort();
+    }
+
+    /**
+     * @return the origins grouped by this destination
+     */
+    public List<Origin> getOrigins()
+    {
+        List<Origin> origins = new ArrayList<>(members.size());
+        for (Member member : members)
+        {
+            origins.add(member.origin);
+        }
+        return origins;
+    }
+
+    @ManagedAttribute(value = "The origin selection strategy", readonly = true)
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    /**
+     * @return the time, in milliseconds, over which the latency of an origin decays
+     */
+    @ManagedAttribute("The time in ms over which the latency of an origin decays")
+    public long getDecayTime()
+    {
+        return decayTime;
+    }
+
+    /**
+     * @param decayTime the time, in milliseconds, over which the latency of an origin decays
+     */
+    public void setDecayTime(long decayTime)
+    {
+        this.decayTime = decayTime;
+    }
+
+    /**
+     * @return the number of consecutive failures that eject an origin, or a non-positive value to never eject origins
+     */
+    @ManagedAttribute("The number of consecutive failures that eject an origin")
+    public int getMaxConsecutiveFailures()
+    {
+        return maxConsecutiveFailures;
+    }
+
+    /**
+     * @param maxConsecutiveFailures the number of consecutive failures that eject an origin,
+     * or a non-positive value to never eject origins
+     */
+    public void setMaxConsecutiveFailures(int maxConsecutiveFailures)
+    {
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+    }
+
+    /**
+     * @return the time, in milliseconds, an origin is ejected for the first time
+     */
+    @ManagedAttribute("The time in ms an origin is ejected for the first time")
+    public long getEjectionTime()
+    {
+        return ejectionTime;
+    }
+
+    /**
+     * @param ejectionTime the time, in milliseconds, an origin is ejected for the first time
+     */
+    public void setEjectionTime(long ejectionTime)
+    {
+        this.ejectionTime = ejectionTime;
+    }
+
+    @ManagedAttribute(value = "The number of ejected origins", readonly = true)
+    public int getEjectedCount()
+    {
+        long now = System.nanoTime();
+        int ejected = 0;
+        for (Member member : members)
+        {
+            if (member.isEjected(now))
+                ++ejected;
+        }
+        return ejected;
+    }
+
+    @Override
+    public void newConnection(Promise<Connection> promise)
+    {
+        destinationFor(select()).newConnection(promise);
+    }
+
+    protected void send(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        Member member = select();
+        HttpDestination destination = destinationFor(member);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Routing {} to {}", request, member);
+        // Track the request first, so the origin is updated before the application is notified.
+        List<Response.ResponseListener> trackedListeners = new ArrayList<>(listeners.size() + 1);
+        trackedListeners.add(member.onSend());
+        trackedListeners.addAll(listeners);
+        destination.send(new HttpExchange(destination, request, trackedListeners));
+    }
+
+    private HttpDestination destinationFor(Member member)
+    {
+        Origin.Address address = member.origin.getAddress();
+        return client.destinationFor(member.origin.getScheme(), address.getHost(), address.getPort());
+    }
+
+    private Member select()
+    {
+        int size = members.size();
+        if (size == 1)
+            return members.get(0);
+
+        long now = System.nanoTime();
+        List<Member> candidates = members;
+        if (getEjectedCount() > 0)
+        {
+            candidates = new ArrayList<>(size);
+            for (Member member : members)
+            {
+                if (!member.isEjected(now))
+                    candidates.add(member);
+            }
+            // Never starve requests if all origins are ejected.
+            if (candidates.isEmpty())
+                candidates = members;
+            size = candidates.size();
+            if (size == 1)
+                return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (strategy)
+        {
+            case PEAK_EWMA:
+            {
+                // Power of two choices: compare two random origins.
+                int index1 = random.nextInt(size);
+                int index2 = random.nextInt(size - 1);
+                if (index2 >= index1)
+                    ++index2;
+                Member member1 = candidates.get(index1);
+                Member member2 = candidates.get(index2);
+                return member1.getLoad(now) <= member2.getLoad(now) ? member1 : member2;
+            }
+            case LEAST_OUTSTANDING:
+            {
+                // Start from a random index to spread ties.
+                int start = random.nextInt(size);
+                Member least = null;
+                for (int i = 0; i < size; ++i)
+                {
+                    Member member = candidates.get((start + i) % size);
+                    if (least == null || member.outstanding.get() < least.outstanding.get())
+                        least = member;
+                }
+                return least;
+            }
+            default:
+                throw new IllegalStateException(strategy.toString());
+        }
+    }
+
+    @Override
+    public String dump()
+    {
+        return Dumpable.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, members);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,%s,origins=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            origin.asString(),
+            strategy,
+            members.size());
+    }
+
+    /**
+     * The strategy used to select the origin of a request.
+     */
+    public enum Strategy
+    {
+        /**
+         * <p>Selects, among two random origins, the one with the lowest latency
+         * multiplied by its outstanding requests.</p>
+         * <p>The latency is an exponentially weighted moving average over
+         * {@link #getDecayTime() decayTime}, that immediately follows latency
+         * peaks, so that slow origins are avoided as soon as they slow down.</p>
+         */
+        PEAK_EWMA,
+        /**
+         * Selects the origin with the fewest outstanding requests.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private class Member
+    {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Origin origin;
+        private double latency;
+        private long latencyStamp = System.nanoTime();
+        private int failures;
+        private int ejections;
+        private long ejectedUntil;
+
+        private Member(Origin origin)
+        {
+            this.origin = origin;
+        }
+
+        private Response.CompleteListener onSend()
+        {
+            outstanding.incrementAndGet();
+            long begin = System.nanoTime();
+            return result -> onComplete(result, System.nanoTime() - begin);
+        }
+
+        private void onComplete(Result result, long latency)
+        {
+            outstanding.decrementAndGet();
+            boolean failed = isFailure(result);
+            synchronized (this)
+            {
+                observe(System.nanoTime(), latency);
+                if (failed)
+                {
+                    int maxFailures = getMaxConsecutiveFailures();
+                    if (maxFailures > 0 && ++failures >= maxFailures)
+                    {
+                        failures = 0;
+                        long ejection = TimeUnit.MILLISECONDS.toNanos(getEjectionTime()) << Math.min(ejections, 10);
+                        ++ejections;
+                        ejectedUntil = System.nanoTime() + ejection;
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Ejected {} for {} ms", this, TimeUnit.NANOSECONDS.toMillis(ejection));
+                    }
+                }
+                else if (!result.isFailed())
+                {
+                    failures = 0;
+                    if (!isEjected(System.nanoTime()))
+                        ejections = 0;
+                }
+            }
+        }
+
+        private boolean isFailure(Result result)
+        {
+            // Only failures to connect or to communicate with the origin count,
+            // not failures caused by the client such as aborts, total timeouts
+            // or rejected requests, which neither count nor reset the failures.
+            if (result.isFailed())
+                return result.getFailure() instanceof IOException;
+            return HttpStatus.isServerError(result.getResponse().getStatus());
+        }
+
+        private boolean isEjected(long now)
+        {
+            synchronized (this)
+            {
+                return ejections > 0 && now - ejectedUntil < 0;
+            }
+        }
+
+        // Must be called with the lock held.
+        private void observe(long now, double sample)
+        {
+            long elapsed = Math.max(0, now - latencyStamp);
+            latencyStamp = now;
+            if (sample > latency)
+            {
+                // Follow peaks immediately.
+                latency = sample;
+            }
+            else
+            {
+                double weight = Math.exp(-elapsed / (double)TimeUnit.MILLISECONDS.toNanos(Math.max(1, getDecayTime())));
+                latency = latency * weight + sample * (1 - weight);
+            }
+        }
+
+        private double getLoad(long now)
+        {
+            int pending = outstanding.get();
+            double latency;
+            synchronized (this)
+            {
+                // Decay the latency towards zero while idle.
+                observe(now, 0);
+                latency = this.latency;
+            }
+            // Origins without latency samples but with requests
+            // outstanding are penalized as if they took about 1 second.
+            if (latency == 0 && pending > 0)
+                return (Integer.MAX_VALUE >> 1) + pending;
+            return latency * (pending + 1);
+        }
+
+        @Override
+        public String toString()
+        {
+            double latency;
+            synchronized (this)
+            {
+                latency = this.latency;
+            }
+            return String.format("%s[o=%d,l=%.3fms,e=%b]",
+                origin.asString(),
+                outstanding.get(),
+                latency / TimeUnit.MILLISECONDS.toNanos(1),
+                isEjected(System.nanoTime()));
+        }
+    }
+}
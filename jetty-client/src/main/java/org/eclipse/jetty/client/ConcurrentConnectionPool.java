@@ -0,0 +1,404 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link ConnectionPool} that acquires and releases connections without locking.</p>
+ * <p>Connections are stored in a fixed size array of entries, one per connection,
+ * and each entry tracks with a CAS loop the number of requests in use on its
+ * connection; acquiring a connection is a scan of the array that starts at an
+ * index that depends on the {@link Strategy}.</p>
+ * <p>This pool supports multiplexed connections, with up to
+ * {@link #getMaxMultiplex() maxMultiplex} concurrent requests per connection.</p>
+ */
+@ManagedObject
+public class ConcurrentConnectionPool extends AbstractConnectionPool implements ConnectionPool.Multiplexable
+{
+    private static final Logger LOG = Log.getLogger(ConcurrentConnectionPool.class);
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final ConcurrentMap<Connection, Entry> entries;
+    private final AtomicInteger index = new AtomicInteger();
+    private final Strategy strategy;
+    private volatile int maxMultiplex;
+
+    public ConcurrentConnectionPool(Destination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, Strategy.FIRST);
+    }
+
+    public ConcurrentConnectionPool(Destination destination, int maxConnections, Callback requester, Strategy strategy)
+    {
+        this(destination, maxConnections, requester, strategy, 1);
+    }
+
+    public ConcurrentConnectionPool(Destination destination, int maxConnections, Callback requester, Strategy strategy, int maxMultiplex)
+    {
+        super(destination, maxConnections, requester);
+        this.slots = new AtomicReferenceArray<>(maxConnections);
+        this.entries = new ConcurrentHashMap<>(maxConnections);
+        this.strategy = strategy;
+        this.maxMultiplex = maxMultiplex;
+    }
+
+    @ManagedAttribute(value = "The connection acquisition strategy", readonly = true)
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    @Override
+    @ManagedAttribute(value = "The max number of requests per connection", readonly = true)
+    public int getMaxMultiplex()
+    {
+        return maxMultiplex;
+    }
+
+    @Override
+    public void setMaxMultiplex(int maxMultiplex)
+    {
+        this.maxMultiplex = maxMultiplex;
+    }
+
+    @ManagedAttribute(value = "The number of idle connections", readonly = true)
+    public int getIdleConnectionCount()
+    {
+        int idle = 0;
+        for (Entry entry : entries.values())
+        {
+            if (entry.usage.get() == 0)
+                ++idle;
+        }
+        return idle;
+    }
+
+    @ManagedAttribute(value = "The number of active connections", readonly = true)
+    public int getActiveConnectionCount()
+    {
+        int active = 0;
+        for (Entry entry : entries.values())
+        {
+            if (entry.usage.get() > 0)
+                ++active;
+        }
+        return active;
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        int capacity = slots.length();
+        for (int i = 0; i < capacity; ++i)
+        {
+            // The connection count is bounded by the capacity,
+            // and slots are cleared before the count is decremented,
+            // so there always is a free slot for a new connection.
+            if (slots.get(i) != null)
+                continue;
+            // Map the entry before publishing it in the slot, so that
+            // a concurrent activate() always finds it in the map.
+            Entry entry = new Entry(i, connection);
+            entries.put(connection, entry);
+            if (slots.compareAndSet(i, null, entry))
+            {
+                if (isClosed())
+                {
+                    // Raced with close(), which may not have seen this entry.
+                    if (entry.usage.getAndSet(-1) >= 0)
+                        connection.close();
+                    return;
+                }
+                idle(connection, false);
+                return;
+            }
+            entries.remove(connection, entry);
+        }
+
+        LOG.warn("No slot for {} in {}", connection, this);
+        removed(connection);
+        connection.close();
+    }
+
+    @Override
+    protected Connection activate()
+    {
+        int capacity = slots.length();
+        if (capacity == 0)
+            return null;
+
+        Entry entry;
+        switch (strategy)
+        {
+            case FIRST:
+                entry = scan(0);
+                break;
+            case RANDOM:
+                entry = scan(ThreadLocalRandom.current().nextInt(capacity));
+                break;
+            case ROUND_ROBIN:
+                entry = scan((index.getAndIncrement() & Integer.MAX_VALUE) % capacity);
+                break;
+            case LEAST_IN_USE:
+                entry = leastInUse();
+                break;
+            default:
+                throw new IllegalStateException(strategy.toString());
+        }
+        return entry == null ? null : active(entry.connection);
+    }
+
+    private Entry scan(int start)
+    {
+        int maxMultiplex = getMaxMultiplex();
+        int capacity = slots.length();
+        for (int offset = 0; offset < capacity; ++offset)
+        {
+            int i = start + offset;
+            if (i >= capacity)
+                i -= capacity;
+            Entry entry = slots.get(i);
+            if (entry != null && entry.tryAcquire(maxMultiplex))
+                return entry;
+        }
+        return null;
+    }
+
+    private Entry leastInUse()
+    {
+        int maxMultiplex = getMaxMultiplex();
+        int capacity = slots.length();
+        while (true)
+        {
+            Entry least = null;
+            int leastUsage = Integer.MAX_VALUE;
+            for (int i = 0; i < capacity; ++i)
+            {
+                Entry entry = slots.get(i);
+                if (entry == null)
+                    continue;
+                int usage = entry.usage.get();
+                if (usage < 0 || usage >= maxMultiplex)
+                    continue;
+                // Among equally used connections, prefer the one that served fewer requests.
+                if (usage < leastUsage || (usage == leastUsage && entry.uses.get() < least.uses.get()))
+                {
+                    least = entry;
+                    leastUsage = usage;
+                }
+            }
+            if (least == null)
+                return null;
+            if (least.tryAcquire(maxMultiplex))
+                return least;
+            // Lost the race for the least used entry, look again.
+        }
+    }
+
+    @Override
+    public boolean isActive(Connection connection)
+    {
+        Entry entry = entries.get(connection);
+        return entry != null && entry.usage.get() > 0;
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Entry entry = entries.get(connection);
+        if (entry == null)
+            return false;
+        int usage = entry.tryRelease();
+        if (usage < 0)
+            return false;
+        released(connection);
+        if (usage == 0)
+            return idle(connection, isClosed());
+        return true;
+    }
+
+    @Override
+    public boolean remove(Connection connection)
+    {
+        Entry entry = entries.remove(connection);
+        if (entry == null)
+            return false;
+        int usage = entry.usage.getAndSet(-1);
+        slots.compareAndSet(entry.index, entry, null);
+        if (usage < 0)
+            return false;
+        if (usage > 0)
+            released(connection);
+        removed(connection);
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+
+        List<Connection> connections = new ArrayList<>();
+        for (Entry entry : entries.values())
+        {
+            if (entry.usage.getAndSet(-1) >= 0)
+                connections.add(entry.connection);
+        }
+        entries.clear();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            slots.set(i, null);
+        }
+
+        close(connections);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Entry> connections = new ArrayList<>();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null)
+                connections.add(entry);
+        }
+        Dumpable.dumpObjects(out, indent, this, connections);
+    }
+
+    @Override
+    public String toString()
+    {
+        int present = 0;
+        int active = 0;
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null)
+            {
+                ++present;
+                if (entry.usage.get() > 0)
+                    ++active;
+            }
+        }
+        return String.format("%s@%x[%s,c=%d/%d,a=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            strategy,
+            present,
+            getMaxConnectionCount(),
+            active);
+    }
+
+    /**
+     * The strategy used to pick the connection to acquire among the idle ones.
+     */
+    public enum Strategy
+    {
+        /**
+         * Acquires the first available connection from the start of the pool, so
+         * that requests keep reusing the same, warm, connections, like a LIFO queue,
+         * while the connections at the end of the pool remain idle and may time out.
+         */
+        FIRST,
+        /**
+         * Acquires an available connection starting from a random index.
+         */
+        RANDOM,
+        /**
+         * Acquires an available connection starting from an index that is
+         * incremented for every acquisition.
+         */
+        ROUND_ROBIN,
+        /**
+         * Acquires the connection with the fewest concurrent requests, and among those
+         * the one that served the fewest requests.
+         */
+        LEAST_IN_USE
+    }
+
+    private static class Entry
+    {
+        private final int index;
+        private final Connection connection;
+        // The number of requests using the connection, or -1 if the entry has been removed.
+        private final AtomicInteger usage = new AtomicInteger();
+        private final AtomicLong uses = new AtomicLong();
+
+        private Entry(int index, Connection connection)
+        {
+            this.index = index;
+            this.connection = connection;
+        }
+
+        private boolean tryAcquire(int maxMultiplex)
+        {
+            while (true)
+            {
+                int current = usage.get();
+                if (current < 0 || current >= maxMultiplex)
+                    return false;
+                if (usage.compareAndSet(current, current + 1))
+                {
+                    uses.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return the usage after the release, or -1 if the entry has been removed or was not in use
+         */
+        private int tryRelease()
+        {
+            while (true)
+            {
+                int current = usage.get();
+                if (current <= 0)
+                    return -1;
+                if (usage.compareAndSet(current, current - 1))
+                    return current - 1;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("{i=%d,u=%d/%d,c=%s}", index, usage.get(), uses.get(), connection);
+        }
+    }
+}
@@ -122,6 +122,7 @@ public class HttpClient extends ContainerLifeCycle
     private static final Logger LOG = Log.getLogger(HttpClient.class);
 
     private final ConcurrentMap<Origin, HttpDestination> destinations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Origin, BalancedDestination> balancedDestinations = new ConcurrentHashMap<>();
     private final ProtocolHandlers handlers = new ProtocolHandlers();
     private final List<Request.Listener> requestListeners = new ArrayList<>();
     private final Set<ContentDecoder.Factory> decoderFactories = new ContentDecoderFactorySet();
@@ -138,7 +139,9 @@ public class HttpClient extends ContainerLifeCycle
     private HttpField agentField = new HttpField(HttpHeader.USER_AGENT, "Jetty/" + Jetty.VERSION);
     private boolean followRedirects = true;
     private int maxConnectionsPerDestination = 64;
+    private int minConnectionsPerDestination;
     private int maxRequestsQueuedPerDestination = 1024;
+    private boolean concurrentExchangeQueue;
     private int requestBufferSize = 4096;
     private int responseBufferSize = 16384;
     private int maxRedirects = 8;
@@ -555,11 +558,64 @@ public class HttpClient extends ContainerLifeCycle
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Created {}", destination);
+                // Only open the min connections of the destination
+                // that won the race, the other has been discarded.
+                ConnectionPool connectionPool = destination.getConnectionPool();
+                if (connectionPool instanceof AbstractConnectionPool)
+                    ((AbstractConnectionPool)connectionPool).ensureMinConnections();
             }
         }
         return destination;
     }
 
+    /**
+     * <p>Creates a {@link BalancedDestination} that routes the requests sent
+     * to the given logical scheme, host and port to one of the given origins.</p>
+     *
+     * @param scheme the logical scheme
+     * @param host the logical host
+     * @param port the logical port
+     * @param origins the origins requests are routed to
+     * @param strategy the strategy to select the origin of a request
+     * @return the balanced destination
+     * @throws IllegalStateException if a balanced destination already exists for the logical scheme, host and port
+     */
+    public BalancedDestination newBalancedDestination(String scheme, String host, int port, List<Origin> origins, BalancedDestination.Strategy strategy)
+    {
+        scheme = scheme.toLowerCase(Locale.ENGLISH);
+        host = host.toLowerCase(Locale.ENGLISH);
+        port = normalizePort(scheme, port);
+
+        Origin origin = new Origin(scheme, host, port);
+        BalancedDestination destination = new BalancedDestination(this, origin, origins, strategy);
+        if (balancedDestinations.putIfAbsent(origin, destination) != null)
+            throw new IllegalStateException("Balanced destination already exists for " + origin.asString());
+        addBean(destination);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Created {}", destination);
+        return destination;
+    }
+
+    /**
+     * @param destination the balanced destination to remove
+     * @return whether the balanced destination was removed
+     */
+    public boolean removeBalancedDestination(BalancedDestination destination)
+    {
+        if (!balancedDestinations.remove(destination.getOrigin(), destination))
+            return false;
+        removeBean(destination);
+        return true;
+    }
+
+    /**
+     * @return the list of balanced destinations known to this {@link HttpClient}.
+     */
+    public List<BalancedDestination> getBalancedDestinations()
+    {
+        return new ArrayList<>(balancedDestinations.values());
+    }
+
     protected boolean removeDestination(HttpDestination destination)
     {
         removeBean(destination);
@@ -576,6 +632,18 @@ public class HttpClient extends ContainerLifeCycle
 
     protected void send(final HttpRequest request, List<Response.ResponseListener> listeners)
     {
+        if (!balancedDestinations.isEmpty())
+        {
+            String scheme = request.getScheme().toLowerCase(Locale.ENGLISH);
+            String host = request.getHost().toLowerCase(Locale.ENGLISH);
+            Origin origin = new Origin(scheme, host, normalizePort(scheme, request.getPort()));
+            BalancedDestination balanced = balancedDestinations.get(origin);
+            if (balanced != null)
+            {
+                balanced.send(request, listeners);
+                return;
+            }
+        }
         HttpDestination destination = destinationFor(request.getScheme(), request.getHost(), request.getPort());
         destination.send(request, listeners);
     }
@@ -870,6 +938,32 @@ public class HttpClient extends ContainerLifeCycle
         this.maxConnectionsPerDestination = maxConnectionsPerDestination;
     }
 
+    /**
+     * @return the min number of connections that this {@link HttpClient} keeps open to {@link Destination}s
+     */
+    @ManagedAttribute("The min number of connections per each destination")
+    public int getMinConnectionsPerDestination()
+    {
+        return minConnectionsPerDestination;
+    }
+
+    /**
+     * Sets the min number of connections to keep open to each destination.
+     * <p>
+     * When a destination is created, this number of connections is opened in the background,
+     * and connections that are closed are replaced, so that the requests that follow a deploy
+     * or a backend failover do not pay the latency of opening new connections.
+     * This value only applies to connection pools that extend {@link AbstractConnectionPool},
+     * and is capped by {@link #getMaxConnectionsPerDestination()}.
+     *
+     * @param minConnectionsPerDestination the min number of connections that this {@link HttpClient} keeps open to {@link Destination}s
+     * @see AbstractConnectionPool#preCreateConnections(int)
+     */
+    public void setMinConnectionsPerDestination(int minConnectionsPerDestination)
+    {
+        this.minConnectionsPerDestination = minConnectionsPerDestination;
+    }
+
     /**
      * @return the max number of requests that may be queued to a {@link Destination}.
      */
@@ -897,6 +991,32 @@ public class HttpClient extends ContainerLifeCycle
         this.maxRequestsQueuedPerDestination = maxRequestsQueuedPerDestination;
     }
 
+    /**
+     * @return whether destinations queue requests in a lock-free queue
+     */
+    @ManagedAttribute("Whether destinations queue requests in a lock-free queue")
+    public boolean isConcurrentExchangeQueue()
+    {
+        return concurrentExchangeQueue;
+    }
+
+    /**
+     * Sets whether destinations queue requests in a lock-free queue.
+     * <p>
+     * By default, requests are queued in a {@link org.eclipse.jetty.util.BlockingArrayQueue}, that serializes
+     * the threads queueing requests on a lock.
+     * When many threads send requests to the same destination, a {@link org.eclipse.jetty.util.ConcurrentBoundedQueue}
+     * reduces the contention, while still dequeuing requests in the order they have been queued.
+     * This setting only applies to destinations created after it is changed.
+     *
+     * @param concurrentExchangeQueue whether destinations queue requests in a lock-free queue
+     * @see #setMaxRequestsQueuedPerDestination(int)
+     */
+    public void setConcurrentExchangeQueue(boolean concurrentExchangeQueue)
+    {
+        this.concurrentExchangeQueue = concurrentExchangeQueue;
+    }
+
     /**
      * @return the size of the buffer used to write requests
      */
@@ -39,6 +39,7 @@ import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.CyclicTimeout;
 import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.ConcurrentBoundedQueue;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -107,6 +108,9 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         this.connectionPool = newConnectionPool(client);
         addBean(connectionPool);
         super.doStart();
+        int minConnections = client.getMinConnectionsPerDestination();
+        if (minConnections > 0 && connectionPool instanceof AbstractConnectionPool)
+            ((AbstractConnectionPool)connectionPool).setMinConnectionCount(minConnections);
         Sweeper sweeper = client.getBean(Sweeper.class);
         if (sweeper != null && connectionPool instanceof Sweeper.Sweepable)
             sweeper.offer((Sweeper.Sweepable)connectionPool);
@@ -129,7 +133,10 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
 
     protected Queue<HttpExchange> newExchangeQueue(HttpClient client)
     {
-        return new BlockingArrayQueue<>(client.getMaxRequestsQueuedPerDestination());
+        int maxQueued = client.getMaxRequestsQueuedPerDestination();
+        if (client.isConcurrentExchangeQueue())
+            return new ConcurrentBoundedQueue<>(maxQueued);
+        return new BlockingArrayQueue<>(maxQueued);
     }
 
     protected ClientConnectionFactory newSslClientConnectionFactory(ClientConnectionFactory connectionFactory)
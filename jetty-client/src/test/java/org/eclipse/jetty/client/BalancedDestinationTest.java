@@ -0,0 +1,179 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BalancedDestinationTest
+{
+    private final List<Server> servers = new ArrayList<>();
+    private final List<AtomicInteger> counters = new ArrayList<>();
+    private HttpClient client;
+
+    private List<Origin> startServers(int count, int... failing) throws Exception
+    {
+        List<Origin> origins = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            boolean fail = false;
+            for (int f : failing)
+            {
+                fail |= f == i;
+            }
+            boolean failRequests = fail;
+            AtomicInteger counter = new AtomicInteger();
+            counters.add(counter);
+            Server server = new Server();
+            ServerConnector connector = new ServerConnector(server);
+            server.addConnector(connector);
+            server.setHandler(new EmptyServerHandler()
+            {
+                @Override
+                protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+                {
+                    counter.incrementAndGet();
+                    if (failRequests)
+                        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+                }
+            });
+            server.start();
+            servers.add(server);
+            origins.add(new Origin("http", "localhost", connector.getLocalPort()));
+        }
+
+        QueuedThreadPool executor = new QueuedThreadPool();
+        executor.setName(executor.getName() + "-client");
+        client = new HttpClient();
+        client.setExecutor(executor);
+        client.start();
+        return origins;
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        for (Server server : servers)
+        {
+            server.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(BalancedDestination.Strategy.class)
+    public void testRequestsAreRoutedToAllOrigins(BalancedDestination.Strategy strategy) throws Exception
+    {
+        List<Origin> origins = startServers(3);
+        client.newBalancedDestination("http", "backend", 80, origins, strategy);
+
+        int requests = 60;
+        for (int i = 0; i < requests; ++i)
+        {
+            ContentResponse response = client.newRequest("http://backend/path").send();
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+
+        int total = 0;
+        for (AtomicInteger counter : counters)
+        {
+            assertThat(counter.get(), greaterThan(0));
+            total += counter.get();
+        }
+        assertEquals(requests, total);
+        // The logical destination does not create an HttpDestination.
+        assertEquals(origins.size(), client.getDestinations().size());
+    }
+
+    @Test
+    public void testFailingOriginIsEjected() throws Exception
+    {
+        List<Origin> origins = startServers(2, 1);
+        BalancedDestination destination = client.newBalancedDestination("http", "backend", 80, origins, BalancedDestination.Strategy.LEAST_OUTSTANDING);
+        destination.setMaxConsecutiveFailures(2);
+        destination.setEjectionTime(60000);
+
+        // Sequential requests have no outstanding requests, so both origins are used until one is ejected.
+        int failures = 0;
+        for (int i = 0; i < 40; ++i)
+        {
+            ContentResponse response = client.newRequest("http://backend/path").send();
+            if (response.getStatus() != HttpStatus.OK_200)
+                ++failures;
+        }
+
+        assertEquals(2, failures);
+        assertThat(counters.get(1).get(), is(2));
+        assertThat(destination.getEjectedCount(), is(1));
+    }
+
+    @Test
+    public void testAbortedRequestsDoNotEjectOrigin() throws Exception
+    {
+        List<Origin> origins = startServers(1);
+        BalancedDestination destination = client.newBalancedDestination("http", "backend", 80, origins, BalancedDestination.Strategy.LEAST_OUTSTANDING);
+        destination.setMaxConsecutiveFailures(1);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            assertThrows(ExecutionException.class, () -> client.newRequest("http://backend/path")
+                .onRequestBegin(request -> request.abort(new Exception("aborted")))
+                .send());
+        }
+
+        assertThat(destination.getEjectedCount(), is(0));
+        assertEquals(HttpStatus.OK_200, client.newRequest("http://backend/path").send().getStatus());
+    }
+
+    @Test
+    public void testBalancedDestinationIsBean() throws Exception
+    {
+        List<Origin> origins = startServers(1);
+        BalancedDestination destination = client.newBalancedDestination("http", "backend", 80, origins, BalancedDestination.Strategy.LEAST_OUTSTANDING);
+        assertTrue(client.getBeans(BalancedDestination.class).contains(destination));
+
+        assertTrue(client.removeBalancedDestination(destination));
+        assertFalse(client.getBeans(BalancedDestination.class).contains(destination));
+    }
+}
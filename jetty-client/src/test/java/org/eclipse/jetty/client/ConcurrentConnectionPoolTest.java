@@ -0,0 +1,199 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentConnectionPoolTest
+{
+    private ConcurrentConnectionPool newConnectionPool(int maxConnections, ConcurrentConnectionPool.Strategy strategy)
+    {
+        ConcurrentConnectionPool[] pool = new ConcurrentConnectionPool[1];
+        Destination destination = new Destination()
+        {
+            @Override
+            public String getScheme()
+            {
+                return "http";
+            }
+
+            @Override
+            public String getHost()
+            {
+                return "localhost";
+            }
+
+            @Override
+            public int getPort()
+            {
+                return 80;
+            }
+
+            @Override
+            public void newConnection(Promise<Connection> promise)
+            {
+                promise.succeeded(new MockConnection(pool[0]));
+            }
+        };
+        pool[0] = new ConcurrentConnectionPool(destination, maxConnections, Callback.NOOP, strategy);
+        return pool[0];
+    }
+
+    private void fill(ConcurrentConnectionPool pool)
+    {
+        Set<Connection> connections = new HashSet<>();
+        for (int i = 0; i < pool.getMaxConnectionCount(); ++i)
+        {
+            connections.add(pool.acquire());
+        }
+        assertThat(connections.size(), is(pool.getMaxConnectionCount()));
+        connections.forEach(pool::release);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrentConnectionPool.Strategy.class)
+    public void testAcquireReleaseRemove(ConcurrentConnectionPool.Strategy strategy)
+    {
+        ConcurrentConnectionPool pool = newConnectionPool(2, strategy);
+
+        Connection connection1 = pool.acquire();
+        assertThat(connection1, not(nullValue()));
+        assertTrue(pool.isActive(connection1));
+        Connection connection2 = pool.acquire();
+        assertThat(connection2, not(nullValue()));
+        assertThat(connection2, not(sameInstance(connection1)));
+
+        // The pool is exhausted.
+        assertThat(pool.acquire(), nullValue());
+        assertThat(pool.getActiveConnectionCount(), is(2));
+
+        assertTrue(pool.release(connection1));
+        assertFalse(pool.isActive(connection1));
+        assertThat(pool.acquire(), sameInstance(connection1));
+        assertTrue(pool.release(connection1));
+        // Releasing twice fails.
+        assertFalse(pool.release(connection1));
+
+        assertTrue(pool.remove(connection2));
+        assertFalse(pool.remove(connection2));
+        assertThat(pool.getConnectionCount(), is(1));
+
+        pool.close();
+        assertTrue(pool.isClosed());
+        assertTrue(pool.isEmpty());
+        assertThat(pool.acquire(), nullValue());
+    }
+
+    @Test
+    public void testFirstReusesWarmConnection()
+    {
+        ConcurrentConnectionPool pool = newConnectionPool(4, ConcurrentConnectionPool.Strategy.FIRST);
+        fill(pool);
+
+        Connection connection = pool.acquire();
+        pool.release(connection);
+        for (int i = 0; i < 8; ++i)
+        {
+            Connection next = pool.acquire();
+            assertThat(next, sameInstance(connection));
+            pool.release(next);
+        }
+    }
+
+    @Test
+    public void testRoundRobinSpreadsConnections()
+    {
+        ConcurrentConnectionPool pool = newConnectionPool(4, ConcurrentConnectionPool.Strategy.ROUND_ROBIN);
+        fill(pool);
+
+        Set<Connection> connections = new HashSet<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            Connection connection = pool.acquire();
+            connections.add(connection);
+            pool.release(connection);
+        }
+        assertThat(connections.size(), is(4));
+    }
+
+    @Test
+    public void testLeastInUseMultiplexed()
+    {
+        ConcurrentConnectionPool pool = newConnectionPool(2, ConcurrentConnectionPool.Strategy.LEAST_IN_USE);
+        fill(pool);
+        pool.setMaxMultiplex(2);
+
+        Connection connection1 = pool.acquire();
+        Connection connection2 = pool.acquire();
+        assertThat(connection2, not(sameInstance(connection1)));
+        Connection connection3 = pool.acquire();
+        pool.release(connection3);
+        // connection1 is now idle, while connection2 is still in use.
+        pool.release(connection1);
+        assertThat(pool.acquire(), sameInstance(connection1));
+    }
+
+    private static class MockConnection implements Connection
+    {
+        private final ConnectionPool pool;
+        private boolean closed;
+
+        private MockConnection(ConnectionPool pool)
+        {
+            this.pool = pool;
+        }
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+            pool.remove(this);
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
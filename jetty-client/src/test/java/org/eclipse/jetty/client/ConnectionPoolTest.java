@@ -72,6 +72,26 @@ public class ConnectionPoolTest
             (ConnectionPool.Factory)
                 destination -> new RoundRobinConnectionPool(destination, 8, destination)
         });
+        pools.add(new Object[]{
+            ConcurrentConnectionPool.class,
+            (ConnectionPool.Factory)
+                destination -> new ConcurrentConnectionPool(destination, 8, destination, ConcurrentConnectionPool.Strategy.FIRST)
+        });
+        pools.add(new Object[]{
+            ConcurrentConnectionPool.class,
+            (ConnectionPool.Factory)
+                destination -> new ConcurrentConnectionPool(destination, 8, destination, ConcurrentConnectionPool.Strategy.RANDOM)
+        });
+        pools.add(new Object[]{
+            ConcurrentConnectionPool.class,
+            (ConnectionPool.Factory)
+                destination -> new ConcurrentConnectionPool(destination, 8, destination, ConcurrentConnectionPool.Strategy.ROUND_ROBIN)
+        });
+        pools.add(new Object[]{
+            ConcurrentConnectionPool.class,
+            (ConnectionPool.Factory)
+                destination -> new ConcurrentConnectionPool(destination, 8, destination, ConcurrentConnectionPool.Strategy.LEAST_IN_USE)
+        });
         return pools.stream().map(Arguments::of);
     }
 
@@ -44,6 +44,7 @@ import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Exchanger;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -84,6 +85,7 @@ import org.eclipse.jetty.toolchain.test.Net;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.ConcurrentBoundedQueue;
 import org.eclipse.jetty.util.FuturePromise;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.Promise;
@@ -146,6 +148,79 @@ public class HttpClientTest extends AbstractHttpClientServerTest
         assertFalse(connection.getEndPoint().isOpen());
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testMinConnectionsPerDestination(Scenario scenario) throws Exception
+    {
+        start(scenario, new EmptyServerHandler());
+        client.stop();
+        client.setMinConnectionsPerDestination(2);
+        client.start();
+
+        String host = "localhost";
+        int port = connector.getLocalPort();
+        HttpDestinationOverHTTP destination = (HttpDestinationOverHTTP)client.getDestination(scenario.getScheme(), host, port);
+        DuplexConnectionPool connectionPool = (DuplexConnectionPool)destination.getConnectionPool();
+        assertEquals(2, connectionPool.getMinConnectionCount());
+
+        // The min connections are opened without sending requests.
+        long start = System.nanoTime();
+        while (connectionPool.getIdleConnectionCount() < 2 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+        {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(2, connectionPool.getIdleConnectionCount());
+
+        // Closed connections are replaced.
+        Connection connection = connectionPool.getIdleConnections().peek();
+        assertNotNull(connection);
+        connection.close();
+        start = System.nanoTime();
+        while (connectionPool.getIdleConnectionCount() < 2 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+        {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(2, connectionPool.getIdleConnectionCount());
+        assertFalse(connectionPool.getIdleConnections().contains(connection));
+
+        // Explicit pre-creation.
+        connectionPool.preCreateConnections(3).get(5, TimeUnit.SECONDS);
+        assertEquals(5, connectionPool.getConnectionCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testMinConnectionsReplacedAfterIdleTimeout(Scenario scenario) throws Exception
+    {
+        start(scenario, new EmptyServerHandler());
+        client.stop();
+        client.setIdleTimeout(500);
+        client.setMinConnectionsPerDestination(1);
+        client.start();
+
+        String host = "localhost";
+        int port = connector.getLocalPort();
+        HttpDestinationOverHTTP destination = (HttpDestinationOverHTTP)client.getDestination(scenario.getScheme(), host, port);
+        DuplexConnectionPool connectionPool = (DuplexConnectionPool)destination.getConnectionPool();
+        long start = System.nanoTime();
+        while (connectionPool.getIdleConnectionCount() < 1 && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+        {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Connection connection = connectionPool.getIdleConnections().peek();
+        assertNotNull(connection);
+
+        // The connection that idle times out is replaced by a new one.
+        start = System.nanoTime();
+        while ((connectionPool.getIdleConnectionCount() < 1 || connectionPool.getIdleConnections().contains(connection)) &&
+            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5)
+        {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(1, connectionPool.getIdleConnectionCount());
+        assertFalse(connectionPool.getIdleConnections().contains(connection));
+    }
+
     @ParameterizedTest
     @ArgumentsSource(ScenarioProvider.class)
     public void test_DestinationCount(Scenario scenario) throws Exception
@@ -530,6 +605,106 @@ public class HttpClientTest extends AbstractHttpClientServerTest
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConcurrentExchangeQueue(Scenario scenario) throws Exception
+    {
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(scenario, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                try
+                {
+                    assertTrue(serverLatch.await(5, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException x)
+                {
+                    throw new ServletException(x);
+                }
+            }
+        });
+        client.stop();
+        client.setConcurrentExchangeQueue(true);
+        client.setMaxConnectionsPerDestination(1);
+        client.setMaxRequestsQueuedPerDestination(3);
+        client.start();
+
+        String host = "localhost";
+        int port = connector.getLocalPort();
+        HttpDestination destination = (HttpDestination)client.getDestination(scenario.getScheme(), host, port);
+        assertThat(destination.getHttpExchanges(), instanceOf(ConcurrentBoundedQueue.class));
+
+        // The first request occupies the only connection.
+        CountDownLatch beginLatch = new CountDownLatch(1);
+        CountDownLatch firstLatch = new CountDownLatch(1);
+        client.newRequest(host, port)
+            .scheme(scenario.getScheme())
+            .onRequestBegin(request -> beginLatch.countDown())
+            .send(result ->
+            {
+                if (result.isSucceeded() && result.getResponse().getStatus() == 200)
+                    firstLatch.countDown();
+            });
+        assertTrue(beginLatch.await(5, TimeUnit.SECONDS));
+
+        // The next requests are queued.
+        long timeout = 1000;
+        CountDownLatch timeoutLatch = new CountDownLatch(1);
+        client.newRequest(host, port)
+            .scheme(scenario.getScheme())
+            .timeout(timeout, TimeUnit.MILLISECONDS)
+            .send(result ->
+            {
+                if (result.getFailure() instanceof TimeoutException)
+                    timeoutLatch.countDown();
+            });
+        CountDownLatch abortLatch = new CountDownLatch(1);
+        Request aborted = client.newRequest(host, port)
+            .scheme(scenario.getScheme());
+        aborted.send(result ->
+        {
+            if (result.isFailed())
+                abortLatch.countDown();
+        });
+        CountDownLatch lastLatch = new CountDownLatch(1);
+        client.newRequest(host, port)
+            .scheme(scenario.getScheme())
+            .send(result ->
+            {
+                if (result.isSucceeded() && result.getResponse().getStatus() == 200)
+                    lastLatch.countDown();
+            });
+        assertEquals(3, destination.getHttpExchanges().size());
+
+        // The queue is full, so this request is rejected.
+        CountDownLatch rejectLatch = new CountDownLatch(1);
+        client.newRequest(host, port)
+            .scheme(scenario.getScheme())
+            .send(result ->
+            {
+                if (result.getFailure() instanceof RejectedExecutionException)
+                    rejectLatch.countDown();
+            });
+        assertTrue(rejectLatch.await(5, TimeUnit.SECONDS));
+
+        // Aborting a queued request removes it from the queue.
+        assertTrue(aborted.abort(new Exception("explicitly_aborted")));
+        assertTrue(abortLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, destination.getHttpExchanges().size());
+
+        // A queued request times out while still in the queue.
+        assertTrue(timeoutLatch.await(5 * timeout, TimeUnit.MILLISECONDS));
+        assertEquals(1, destination.getHttpExchanges().size());
+
+        // The remaining requests complete once the server responds.
+        serverLatch.countDown();
+        assertTrue(firstLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(lastLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(destination.getHttpExchanges().isEmpty());
+    }
+
     @ParameterizedTest
     @ArgumentsSource(ScenarioProvider.class)
     public void test_ExchangeIsComplete_OnlyWhenBothRequestAndResponseAreComplete(Scenario scenario) throws Exception
@@ -0,0 +1,207 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A bounded cache of {@link HttpField}s that can be shared by many {@link HttpParser}s.</p>
+ * <p>Unlike the per connection field cache of {@link HttpParser}, that is discarded when
+ * the connection is closed, this cache is shared by all the connections that are
+ * configured with it, so that frequent header name and value pairs (for example
+ * {@code User-Agent} or {@code Accept} values) are resolved to a pre-built
+ * {@link HttpField} directly from the parse buffer, without allocating Strings,
+ * even for short-lived connections.</p>
+ * <p>Lookups are lock free: they are performed on an immutable {@link ArrayTernaryTrie}
+ * that is replaced by a copy every time a field is added.
+ * The capacity of the cache is expressed in trie nodes, which is at most the total
+ * number of characters of the cached fields.</p>
+ * <p>To avoid that rarely seen fields fill the cache, a field is
+ * {@link #offer(HttpField) offered} to the cache and only added after it
+ * has been offered {@code admissionThreshold} times.
+ * When a field is admitted but the cache is full, the cache is cleared and restarts
+ * from that field, so that it adapts to the current traffic; the memory retained by
+ * the cache is therefore bounded by its capacity, and attacks that send random header
+ * values may at most make the cache ineffective.
+ * Callers must not offer fields that carry credentials or per client values
+ * (for example {@code Authorization} or {@code Cookie}), since cached fields are
+ * shared by all the connections.</p>
+ */
+@ManagedObject
+public class HttpFieldInternCache
+{
+    private final int _capacity;
+    private final int _admissionThreshold;
+    private final int _maxCandidates;
+    private final Map<HttpField, AtomicInteger> _candidates = new ConcurrentHashMap<>();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _clears = new LongAdder();
+    private volatile ArrayTernaryTrie<HttpField> _trie;
+
+    /**
+     * @param capacity the capacity of the cache, in trie nodes
+     */
+    public HttpFieldInternCache(int capacity)
+    {
+        this(capacity, 4);
+    }
+
+    /**
+     * @param capacity the capacity of the cache, in trie nodes
+     * @param admissionThreshold the number of times a field must be offered before it is cached
+     */
+    public HttpFieldInternCache(int capacity, int admissionThreshold)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        _capacity = capacity;
+        _admissionThreshold = Math.max(1, admissionThreshold);
+        _maxCandidates = Math.max(16, capacity / 16);
+        _trie = new ArrayTernaryTrie<>(capacity);
+    }
+
+    /**
+     * <p>Looks up the best cached field for the given bytes.</p>
+     *
+     * @param buffer the buffer containing the header field
+     * @param offset the offset, relative to the buffer position, of the header field
+     * @param length the maximum number of bytes to look at
+     * @return the cached field that best matches the bytes, or null if none matches
+     * @see ArrayTernaryTrie#getBest(ByteBuffer, int, int)
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        HttpField field = _trie.getBest(buffer, offset, length);
+        if (field == null)
+            _misses.increment();
+        else
+            _hits.increment();
+        return field;
+    }
+
+    /**
+     * <p>Offers a parsed field to this cache.</p>
+     * <p>The field is added to the cache once it has been offered
+     * {@code admissionThreshold} times; if there is no room in the cache,
+     * the cache is cleared before adding the field.</p>
+     *
+     * @param field the parsed field
+     * @return whether the field has been added to the cache
+     */
+    public boolean offer(HttpField field)
+    {
+        if (field.getHeader() == null || field.getValue() == null)
+            return false;
+
+        if (_admissionThreshold > 1)
+        {
+            AtomicInteger count = _candidates.get(field);
+            if (count == null)
+            {
+                // Forget the candidates periodically so that
+                // rare values do not accumulate indefinitely.
+                if (_candidates.size() >= _maxCandidates)
+                    _candidates.clear();
+                count = _candidates.computeIfAbsent(field, f -> new AtomicInteger());
+            }
+            if (count.incrementAndGet() < _admissionThreshold)
+                return false;
+            _candidates.remove(field);
+        }
+
+        return add(field);
+    }
+
+    private synchronized boolean add(HttpField field)
+    {
+        ArrayTernaryTrie<HttpField> trie = _trie;
+        String key = field.toString();
+        if (trie.get(key) != null)
+            return false;
+        // The published Trie is never mutated, so lookups need no locking.
+        ArrayTernaryTrie<HttpField> copy = new ArrayTernaryTrie<>(trie, 1.0);
+        if (!copy.put(key, field))
+        {
+            // Full, start again from the new field.
+            _clears.increment();
+            copy = new ArrayTernaryTrie<>(_capacity);
+            if (!copy.put(key, field))
+                return false;
+        }
+        _trie = copy;
+        return true;
+    }
+
+    @ManagedAttribute("Whether the cache is full")
+    public boolean isFull()
+    {
+        return _trie.isFull();
+    }
+
+    @ManagedAttribute("The capacity of the cache, in trie nodes")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute("The number of times a field must be seen before it is cached")
+    public int getAdmissionThreshold()
+    {
+        return _admissionThreshold;
+    }
+
+    @ManagedAttribute("The number of cached fields")
+    public int size()
+    {
+        return _trie.size();
+    }
+
+    @ManagedAttribute("The number of lookups that returned a cached field")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of lookups that did not return a cached field")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of times the cache has been cleared because it was full")
+    public long getClears()
+    {
+        return _clears.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,capacity=%d}", getClass().getSimpleName(), hashCode(), size(), _capacity);
+    }
+}
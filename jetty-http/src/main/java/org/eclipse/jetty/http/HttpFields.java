@@ -47,6 +47,12 @@ import org.eclipse.jetty.util.log.Logger;
  * single thread.
  *
  * <p>The cookie handling provided by this class is guided by the Servlet specification and RFC6265.
+ *
+ * <p>Fields are looked up with a linear scan, which is the fastest option for the typical number of fields.
+ * When there are more than {@code org.eclipse.jetty.http.HttpFields.indexThreshold} fields (16 by default),
+ * a hash index by {@link HttpHeader} and by case-insensitive name is built and used for lookups.
+ * The index is built and maintained when fields are added, and relinked when fields are put, removed
+ * or replaced, so that lookups never modify the fields and can be performed concurrently.
  */
 public class HttpFields implements Iterable<HttpField>
 {
@@ -54,9 +60,12 @@ public class HttpFields implements Iterable<HttpField>
     public static final String __separators = ", \t";
 
     private static final Logger LOG = Log.getLogger(HttpFields.class);
+    private static final int INDEX_THRESHOLD = Integer.getInteger("org.eclipse.jetty.http.HttpFields.indexThreshold", 16);
+    private static final int HEADERS = HttpHeader.values().length;
 
     private HttpField[] _fields;
     private int _size;
+    private Index _index;
 
     /**
      * Initialize an empty HttpFields.
@@ -85,6 +94,7 @@ public class HttpFields implements Iterable<HttpField>
     {
         _fields = Arrays.copyOf(fields._fields, fields._fields.length);
         _size = fields._size;
+        index();
     }
 
     public int size()
@@ -152,48 +162,45 @@ public class HttpFields implements Iterable<HttpField>
 
     public HttpField getField(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f;
-        }
-        return null;
+        int i = indexOf(header);
+        return i < 0 ? null : _fields[i];
     }
 
     public HttpField getField(String name)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-                return f;
-        }
-        return null;
+        int i = indexOf(name);
+        return i < 0 ? null : _fields[i];
     }
 
     public List<HttpField> getFields(HttpHeader header)
     {
         List<HttpField> fields = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-            {
-                if (fields == null)
-                    fields = new ArrayList<>();
-                fields.add(f);
-            }
+            if (fields == null)
+                fields = new ArrayList<>();
+            fields.add(_fields[i]);
         }
         return fields == null ? Collections.emptyList() : fields;
     }
 
     public boolean contains(HttpField field)
     {
-        for (int i = _size; i-- > 0; )
+        HttpHeader header = field.getHeader();
+        if (header != null)
+        {
+            for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
+            {
+                HttpField f = _fields[i];
+                if (f.equals(field) || f.contains(field.getValue()))
+                    return true;
+            }
+        }
+        String name = field.getName();
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
             HttpField f = _fields[i];
-            if (f.isSameName(field) && (f.equals(field) || f.contains(field.getValue())))
+            if (f.equals(field) || f.contains(field.getValue()))
                 return true;
         }
         return false;
@@ -201,10 +208,9 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header, String value)
     {
-        for (int i = _size; i-- > 0; )
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header && f.contains(value))
+            if (_fields[i].contains(value))
                 return true;
         }
         return false;
@@ -212,10 +218,9 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(String name, String value)
     {
-        for (int i = _size; i-- > 0; )
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name) && f.contains(value))
+            if (_fields[i].contains(value))
                 return true;
         }
         return false;
@@ -223,24 +228,12 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header)
     {
-        for (int i = _size; i-- > 0; )
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return true;
-        }
-        return false;
+        return indexOf(header) >= 0;
     }
 
     public boolean containsKey(String name)
     {
-        for (int i = _size; i-- > 0; )
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-                return true;
-        }
-        return false;
+        return indexOf(name) >= 0;
     }
 
     @Deprecated
@@ -251,13 +244,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public String get(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f.getValue();
-        }
-        return null;
+        int i = indexOf(header);
+        return i < 0 ? null : _fields[i].getValue();
     }
 
     @Deprecated
@@ -268,13 +256,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public String get(String header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(header))
-                return f.getValue();
-        }
-        return null;
+        int i = indexOf(header);
+        return i < 0 ? null : _fields[i].getValue();
     }
 
     /**
@@ -286,11 +269,9 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getValuesList(HttpHeader header)
     {
         final List<String> list = new ArrayList<>();
-        for (int i = 0; i < _size; i++)
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                list.add(f.getValue());
+            list.add(_fields[i].getValue());
         }
         return list;
     }
@@ -304,11 +285,9 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getValuesList(String name)
     {
         final List<String> list = new ArrayList<>();
-        for (int i = 0; i < _size; i++)
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-                list.add(f.getValue());
+            list.add(_fields[i].getValue());
         }
         return list;
     }
@@ -324,15 +303,11 @@ public class HttpFields implements Iterable<HttpField>
     public boolean addCSV(HttpHeader header, String... values)
     {
         QuotedCSV existing = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-            {
-                if (existing == null)
-                    existing = new QuotedCSV(false);
-                existing.addValue(f.getValue());
-            }
+            if (existing == null)
+                existing = new QuotedCSV(false);
+            existing.addValue(_fields[i].getValue());
         }
 
         String value = addCSV(existing, values);
@@ -355,15 +330,11 @@ public class HttpFields implements Iterable<HttpField>
     public boolean addCSV(String name, String... values)
     {
         QuotedCSV existing = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
-            HttpField f = _fields[i];
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (existing == null)
-                    existing = new QuotedCSV(false);
-                existing.addValue(f.getValue());
-            }
+            if (existing == null)
+                existing = new QuotedCSV(false);
+            existing.addValue(_fields[i].getValue());
         }
         String value = addCSV(existing, values);
         if (value != null)
@@ -421,14 +392,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getCSV(HttpHeader header, boolean keepQuotes)
     {
         QuotedCSV values = null;
-        for (HttpField f : this)
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            if (f.getHeader() == header)
-            {
-                if (values == null)
-                    values = new QuotedCSV(keepQuotes);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedCSV(keepQuotes);
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -444,14 +412,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getCSV(String name, boolean keepQuotes)
     {
         QuotedCSV values = null;
-        for (HttpField f : this)
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (values == null)
-                    values = new QuotedCSV(keepQuotes);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedCSV(keepQuotes);
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -479,14 +444,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getQualityCSV(HttpHeader header, ToIntFunction<String> secondaryOrdering)
     {
         QuotedQualityCSV values = null;
-        for (HttpField f : this)
+        for (int i = indexOf(header); i >= 0; i = nextIndexOf(header, i))
         {
-            if (f.getHeader() == header)
-            {
-                if (values == null)
-                    values = new QuotedQualityCSV(secondaryOrdering);
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedQualityCSV(secondaryOrdering);
+            values.addValue(_fields[i].getValue());
         }
 
         return values == null ? Collections.emptyList() : values.getValues();
@@ -502,14 +464,11 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getQualityCSV(String name)
     {
         QuotedQualityCSV values = null;
-        for (HttpField f : this)
+        for (int i = indexOf(name); i >= 0; i = nextIndexOf(name, i))
         {
-            if (f.getName().equalsIgnoreCase(name))
-            {
-                if (values == null)
-                    values = new QuotedQualityCSV();
-                values.addValue(f.getValue());
-            }
+            if (values == null)
+                values = new QuotedQualityCSV();
+            values.addValue(_fields[i].getValue());
         }
         return values == null ? Collections.emptyList() : values.getValues();
     }
@@ -623,7 +582,15 @@ public class HttpFields implements Iterable<HttpField>
 
     public void put(HttpField field)
     {
+        HttpHeader header = field.getHeader();
+        if ((header == null || indexOf(header) < 0) && indexOf(field.getName()) < 0)
+        {
+            add(field);
+            return;
+        }
+
         boolean put = false;
+        boolean moved = false;
         for (int i = _size; i-- > 0; )
         {
             HttpField f = _fields[i];
@@ -632,14 +599,20 @@ public class HttpFields implements Iterable<HttpField>
                 if (put)
                 {
                     System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
+                    moved = true;
                 }
                 else
                 {
+                    // A field with the same header and name keeps its index links.
+                    if (f.getHeader() != header || !f.getName().equalsIgnoreCase(field.getName()))
+                        moved = true;
                     _fields[i] = field;
                     put = true;
                 }
             }
         }
+        if (moved)
+            reindex();
         if (!put)
             add(field);
     }
@@ -748,6 +721,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
             }
         }
+        if (removed != null)
+            reindex();
         return removed;
     }
 
@@ -769,6 +744,8 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
             }
         }
+        if (removed != null)
+            reindex();
         return removed;
     }
 
@@ -940,6 +917,7 @@ public class HttpFields implements Iterable<HttpField>
     public void clear()
     {
         _size = 0;
+        _index = null;
     }
 
     public void add(HttpField field)
@@ -947,8 +925,15 @@ public class HttpFields implements Iterable<HttpField>
         if (field != null)
         {
             if (_size == _fields.length)
+            {
                 _fields = Arrays.copyOf(_fields, _size * 2);
-            _fields[_size++] = field;
+                _index = null;
+            }
+            _fields[_size] = field;
+            if (_index != null)
+                _index.link(_fields, _size);
+            _size++;
+            index();
         }
     }
 
@@ -1135,6 +1120,98 @@ public class HttpFields implements Iterable<HttpField>
         return values.getValues();
     }
 
+    private int indexOf(HttpHeader header)
+    {
+        Index index = header == null ? null : _index;
+        if (index != null)
+            return index._headerFirst[header.ordinal()];
+        return scan(header, 0);
+    }
+
+    private int nextIndexOf(HttpHeader header, int i)
+    {
+        Index index = header == null ? null : _index;
+        if (index != null)
+            return index._headerNext[i];
+        return scan(header, i + 1);
+    }
+
+    private int scan(HttpHeader header, int from)
+    {
+        for (int i = from; i < _size; i++)
+        {
+            if (_fields[i].getHeader() == header)
+                return i;
+        }
+        return -1;
+    }
+
+    private int indexOf(String name)
+    {
+        Index index = _index;
+        if (index != null)
+            return index._nameFirst[index.slot(_fields, name)];
+        return scan(name, 0);
+    }
+
+    private int nextIndexOf(String name, int i)
+    {
+        Index index = _index;
+        if (index != null)
+            return index._nameNext[i];
+        return scan(name, i + 1);
+    }
+
+    private int scan(String name, int from)
+    {
+        for (int i = from; i < _size; i++)
+        {
+            if (_fields[i].getName().equalsIgnoreCase(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * <p>Builds the index if there is none and there are enough fields.</p>
+     * <p>Only called when fields are added, so that lookups only read the index.</p>
+     */
+    private void index()
+    {
+        if (_index == null && _size > INDEX_THRESHOLD)
+        {
+            Index index = new Index(_fields.length);
+            for (int i = 0; i < _size; i++)
+            {
+                index.link(_fields, i);
+            }
+            _index = index;
+        }
+    }
+
+    /**
+     * <p>Relinks the fields after their positions have changed,
+     * reusing the index arrays if there is an index.</p>
+     */
+    private void reindex()
+    {
+        Index index = _index;
+        if (index != null)
+        {
+            index.clear();
+            for (int i = 0; i < _size; i++)
+            {
+                index.link(_fields, i);
+            }
+        }
+    }
+
+    // Package local for testing
+    Object getIndex()
+    {
+        return _index;
+    }
+
     private class ListItr implements ListIterator<HttpField>
     {
         int _cursor;       // index of next element to return
@@ -1163,6 +1240,7 @@ public class HttpFields implements Iterable<HttpField>
             _size--;
             System.arraycopy(_fields, _current + 1, _fields, _current, _size - _current);
             _fields[_size] = null;
+            reindex();
             _cursor = _current;
             _current = -1;
         }
@@ -1200,15 +1278,110 @@ public class HttpFields implements Iterable<HttpField>
             if (_current < 0)
                 throw new IllegalStateException();
             _fields[_current] = field;
+            reindex();
         }
 
         @Override
         public void add(HttpField field)
         {
+            _index = null;
             _fields = Arrays.copyOf(_fields, _fields.length + 1);
             System.arraycopy(_fields, _cursor, _fields, _cursor + 1, _size++);
             _fields[_cursor++] = field;
             _current = -1;
+            index();
+        }
+    }
+
+    /**
+     * <p>A hash index of the fields, that links the fields with the same
+     * {@link HttpHeader} and the fields with the same case-insensitive name
+     * in insertion order.</p>
+     * <p>The index is sized for the capacity of the fields array, so that the
+     * open addressing name table is never more than half full.</p>
+     */
+    private static class Index
+    {
+        private final int[] _headerFirst = new int[HEADERS];
+        private final int[] _headerLast = new int[HEADERS];
+        private final int[] _headerNext;
+        private final int[] _nameFirst;
+        private final int[] _nameLast;
+        private final int[] _nameNext;
+
+        private Index(int capacity)
+        {
+            _headerNext = new int[capacity];
+            _nameNext = new int[capacity];
+            int slots = Integer.highestOneBit(Math.max(capacity, 1)) << 2;
+            _nameFirst = new int[slots];
+            _nameLast = new int[slots];
+            clear();
+        }
+
+        private void clear()
+        {
+            Arrays.fill(_headerFirst, -1);
+            Arrays.fill(_nameFirst, -1);
+        }
+
+        private void link(HttpField[] fields, int i)
+        {
+            HttpField field = fields[i];
+
+            _headerNext[i] = -1;
+            HttpHeader header = field.getHeader();
+            if (header != null)
+            {
+                int h = header.ordinal();
+                if (_headerFirst[h] < 0)
+                    _headerFirst[h] = i;
+                else
+                    _headerNext[_headerLast[h]] = i;
+                _headerLast[h] = i;
+            }
+
+            _nameNext[i] = -1;
+            int s = slot(fields, field.getName());
+            if (_nameFirst[s] < 0)
+                _nameFirst[s] = i;
+            else
+                _nameNext[_nameLast[s]] = i;
+            _nameLast[s] = i;
+        }
+
+        private int slot(HttpField[] fields, String name)
+        {
+            int mask = _nameFirst.length - 1;
+            int s = hash(name) & mask;
+            while (true)
+            {
+                int first = _nameFirst[s];
+                if (first < 0 || fields[first].getName().equalsIgnoreCase(name))
+                    return s;
+                s = (s + 1) & mask;
+            }
+        }
+
+        private static int hash(String name)
+        {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++)
+            {
+                char c = name.charAt(i);
+                if (c < 0x80)
+                {
+                    if (c >= 'A' && c <= 'Z')
+                        c += 'a' - 'A';
+                }
+                else
+                {
+                    // Consistent with String.equalsIgnoreCase().
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+                hash = 31 * hash + c;
+            }
+            return hash ^ (hash >>> 16);
         }
     }
 }
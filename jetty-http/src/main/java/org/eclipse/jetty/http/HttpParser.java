@@ -177,6 +177,7 @@ public class HttpParser
     private boolean _cr;
     private ByteBuffer _contentChunk;
     private Trie<HttpField> _fieldCache;
+    private HttpFieldInternCache _sharedFieldCache;
 
     private int _length;
     private final StringBuilder _string = new StringBuilder();
@@ -952,6 +953,7 @@ public class HttpParser
             if (_header != null)
             {
                 boolean addToConnectionTrie = false;
+                boolean addToSharedCache = false;
                 switch (_header)
                 {
                     case CONTENT_LENGTH:
@@ -1008,6 +1010,7 @@ public class HttpParser
                                 _compliances.contains(HttpComplianceSection.FIELD_NAME_CASE_INSENSITIVE) ? _header.asString() : _headerString,
                                 _valueString);
                             addToConnectionTrie = _fieldCache != null;
+                            addToSharedCache = _sharedFieldCache != null;
                         }
                         break;
 
@@ -1018,14 +1021,19 @@ public class HttpParser
                         break;
 
                     case AUTHORIZATION:
+                    case COOKIE:
+                        // Credentials and sessions are only cached per connection.
+                        addToConnectionTrie = _fieldCache != null && _field == null;
+                        break;
+
                     case ACCEPT:
                     case ACCEPT_CHARSET:
                     case ACCEPT_ENCODING:
                     case ACCEPT_LANGUAGE:
-                    case COOKIE:
                     case CACHE_CONTROL:
                     case USER_AGENT:
                         addToConnectionTrie = _fieldCache != null && _field == null;
+                        addToSharedCache = _sharedFieldCache != null && _field == null;
                         break;
 
                     default:
@@ -1038,6 +1046,13 @@ public class HttpParser
                         _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
                     _fieldCache.put(_field);
                 }
+
+                if (addToSharedCache && _header != null && _valueString != null)
+                {
+                    if (_field == null)
+                        _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
+                    _sharedFieldCache.offer(_field);
+                }
             }
             _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
         }
@@ -1211,6 +1226,8 @@ public class HttpParser
                             {
                                 // Try a look ahead for the known header name and value.
                                 HttpField cachedField = _fieldCache == null ? null : _fieldCache.getBest(buffer, -1, buffer.remaining());
+                                if (cachedField == null && _sharedFieldCache != null)
+                                    cachedField = _sharedFieldCache.getBest(buffer, -1, buffer.remaining());
                                 if (cachedField == null)
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
 
@@ -1845,6 +1862,22 @@ public class HttpParser
         return _fieldCache;
     }
 
+    public HttpFieldInternCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    /**
+     * <p>Sets a field cache shared with other parsers, that is looked up after
+     * the per connection field cache and before the static {@link #CACHE}.</p>
+     *
+     * @param sharedFieldCache the shared field cache, or null to not use one
+     */
+    public void setSharedFieldCache(HttpFieldInternCache sharedFieldCache)
+    {
+        _sharedFieldCache = sharedFieldCache;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,73 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpFieldInternCacheTest
+{
+    @Test
+    public void testAdmissionThreshold()
+    {
+        HttpFieldInternCache cache = new HttpFieldInternCache(1024, 3);
+        HttpField field = new HttpField(HttpHeader.USER_AGENT, "Test/1.0");
+
+        assertFalse(cache.offer(field));
+        assertFalse(cache.offer(field));
+        assertEquals(0, cache.size());
+        assertTrue(cache.offer(field));
+        assertEquals(1, cache.size());
+
+        String line = field.toString() + "\r\n";
+        assertSame(field, cache.getBest(BufferUtil.toBuffer(line), 0, line.length()));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testClearedWhenFull()
+    {
+        HttpFieldInternCache cache = new HttpFieldInternCache(64, 1);
+
+        // Fill the cache until a field does not fit.
+        HttpField field = null;
+        int added = 0;
+        while (cache.getClears() == 0)
+        {
+            assertEquals(added, cache.size());
+            field = new HttpField(HttpHeader.USER_AGENT, "Agent/" + added);
+            assertTrue(cache.offer(field));
+            ++added;
+        }
+        assertTrue(added > 1);
+
+        // The field that did not fit replaced the cached fields.
+        assertEquals(1, cache.size());
+        String line = field.toString() + "\r\n";
+        assertSame(field, cache.getBest(BufferUtil.toBuffer(line), 0, line.length()));
+        String old = new HttpField(HttpHeader.USER_AGENT, "Agent/0").toString() + "\r\n";
+        assertNull(cache.getBest(BufferUtil.toBuffer(old), 0, old.length()));
+    }
+}
@@ -36,7 +36,9 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -727,4 +729,117 @@ public class HttpFieldsTest
         assertThat(i.next().getName(), is("name4"));
         assertThat(i.hasNext(), is(false));
     }
+
+    @Test
+    public void testIndexedLookups()
+    {
+        HttpFields fields = new HttpFields();
+        for (int i = 0; i < 40; i++)
+        {
+            fields.add("X-Header-" + i, "value" + i);
+        }
+        fields.add(HttpHeader.ACCEPT, "text/html");
+        fields.add("accept", "text/plain");
+        fields.add(new HttpField(null, "Accept", "image/png"));
+        fields.add(HttpHeader.HOST, "localhost");
+
+        assertThat(fields.get("x-header-17"), is("value17"));
+        assertThat(fields.get("X-HEADER-39"), is("value39"));
+        assertNull(fields.get("X-Header-40"));
+        assertThat(fields.get(HttpHeader.ACCEPT), is("text/html"));
+        assertThat(fields.getValuesList(HttpHeader.ACCEPT), Matchers.contains("text/html", "text/plain"));
+        assertThat(fields.getValuesList("ACCEPT"), Matchers.contains("text/html", "text/plain", "image/png"));
+        assertThat(fields.getCSV("Accept", false), Matchers.contains("text/html", "text/plain", "image/png"));
+        assertTrue(fields.contains(HttpHeader.HOST));
+        assertTrue(fields.contains(HttpHeader.ACCEPT, "text/plain"));
+        assertTrue(fields.contains("accept", "image/png"));
+        assertFalse(fields.contains(HttpHeader.ACCEPT, "image/png"));
+        assertTrue(fields.containsKey("x-header-0"));
+        assertFalse(fields.contains(HttpHeader.CONTENT_TYPE));
+        assertFalse(fields.containsKey("Content-Type"));
+
+        // Adding keeps the index up to date.
+        fields.add(HttpHeader.CONTENT_TYPE, "text/html");
+        fields.add("X-Header-17", "other");
+        assertThat(fields.get(HttpHeader.CONTENT_TYPE), is("text/html"));
+        assertThat(fields.getValuesList("X-Header-17"), Matchers.contains("value17", "other"));
+
+        // Other mutations relink the index.
+        fields.put("X-Header-17", "put");
+        assertThat(fields.getValuesList("X-Header-17"), Matchers.contains("put"));
+        fields.remove(HttpHeader.ACCEPT);
+        assertThat(fields.getValuesList("Accept"), Matchers.contains("image/png"));
+        assertNull(fields.get(HttpHeader.ACCEPT));
+
+        ListIterator<HttpField> iterator = fields.listIterator();
+        while (iterator.hasNext())
+        {
+            HttpField field = iterator.next();
+            if (field.getName().equals("X-Header-3"))
+                iterator.set(new HttpField("X-Header-3", "set"));
+            else if (field.getName().equals("X-Header-4"))
+                iterator.remove();
+        }
+        assertThat(fields.get("X-Header-3"), is("set"));
+        assertNull(fields.get("X-Header-4"));
+        assertThat(fields.get("X-Header-5"), is("value5"));
+        assertThat(fields.get(HttpHeader.HOST), is("localhost"));
+
+        fields.clear();
+        assertNull(fields.get("X-Header-5"));
+        assertFalse(fields.contains(HttpHeader.HOST));
+    }
+
+    @Test
+    public void testIndexSurvivesLookupsAndPuts()
+    {
+        HttpFields fields = new HttpFields(64);
+        for (int i = 0; i < 16; i++)
+        {
+            fields.add("X-Header-" + i, "value" + i);
+        }
+        // Lookups do not build the index.
+        assertThat(fields.get("X-Header-5"), is("value5"));
+        assertNull(fields.getIndex());
+
+        // Adding past the threshold builds the index.
+        for (int i = 16; i < 20; i++)
+        {
+            fields.add("X-Header-" + i, "value" + i);
+        }
+        fields.add(HttpHeader.CONTENT_TYPE, "text/html");
+        Object index = fields.getIndex();
+        assertNotNull(index);
+
+        fields.put("X-Header-5", "put");
+        fields.remove("X-Header-6");
+        assertThat(fields.get("X-Header-5"), is("put"));
+        assertSame(index, fields.getIndex());
+
+        for (int i = 0; i < 10; i++)
+        {
+            // Replace an existing field.
+            fields.put("X-Header-7", "put" + i);
+            assertThat(fields.get("x-header-7"), is("put" + i));
+            fields.put(HttpHeader.CONTENT_TYPE, "text/plain;v=" + i);
+            assertThat(fields.get(HttpHeader.CONTENT_TYPE), is("text/plain;v=" + i));
+            // Put a new field.
+            fields.put("X-New-" + i, "new" + i);
+            assertThat(fields.get("X-New-" + i), is("new" + i));
+            // Put over a field with multiple values.
+            fields.add("X-Multi", "a" + i);
+            fields.add("X-Multi", "b" + i);
+            fields.put("X-Multi", "c" + i);
+            assertThat(fields.getValuesList("X-Multi"), Matchers.contains("c" + i));
+            // Remove a field.
+            fields.remove("X-New-" + i);
+            assertNull(fields.get("X-New-" + i));
+            assertSame(index, fields.getIndex());
+        }
+
+        assertThat(fields.get("X-Header-19"), is("value19"));
+        assertNull(fields.get("X-Header-6"));
+        assertThat(fields.size(), is(21));
+        assertSame(index, fields.getIndex());
+    }
 }
@@ -0,0 +1,125 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.AdaptiveFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveFlowControlStrategyTest extends FlowControlStrategyTest
+{
+    private final AdaptiveFlowControlStrategy.Factory factory = new AdaptiveFlowControlStrategy.Factory();
+    private volatile long latency;
+
+    @Override
+    protected FlowControlStrategy newFlowControlStrategy()
+    {
+        return new AdaptiveFlowControlStrategy(factory)
+        {
+            @Override
+            protected void onRoundTripTime(ISession session, long roundTripTime)
+            {
+                // Simulate a long distance link.
+                super.onRoundTripTime(session, roundTripTime + latency);
+            }
+        };
+    }
+
+    @Test
+    public void testWindowsGrowForHighBandwidthDelayUpload() throws Exception
+    {
+        latency = TimeUnit.MILLISECONDS.toNanos(100);
+        factory.setMemoryBudget(1024 * 1024);
+
+        int length = 16 * 1024 * 1024;
+        CountDownLatch serverLatch = new CountDownLatch(1);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    private final AtomicInteger received = new AtomicInteger();
+
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        received.addAndGet(frame.remaining());
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            assertEquals(length, received.get());
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                            serverLatch.countDown();
+                        }
+                    }
+                };
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+        MetaData.Request request = newRequest("POST", new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        CountDownLatch clientLatch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(request, null, false), promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                if (frame.isEndStream())
+                    clientLatch.countDown();
+            }
+        });
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+
+        assertTrue(serverLatch.await(15, TimeUnit.SECONDS));
+        assertTrue(clientLatch.await(5, TimeUnit.SECONDS));
+
+        // The windows grew, within the memory budget.
+        assertThat(factory.getWindowGrowths(), greaterThan(0L));
+        assertThat(factory.getDeniedGrowths(), greaterThan(0L));
+        // The memory reserved by the stream is released when the stream is closed.
+        assertEquals(0, factory.getReservedMemory());
+    }
+}
@@ -0,0 +1,178 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ChannelEndPoint;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameCoalescingTest extends AbstractTest
+{
+    private static final int COALESCE_BUFFER_SIZE = 16 * 1024;
+
+    private final AtomicLong flushedBytes = new AtomicLong();
+    private final AtomicInteger flushes = new AtomicInteger();
+    private final AtomicReference<String> notCoalesced = new AtomicReference<>();
+
+    private void startServer(int streams, int contentLength) throws Exception
+    {
+        List<Stream> serverStreams = new CopyOnWriteArrayList<>();
+        RawHTTP2ServerConnectionFactory connectionFactory = new RawHTTP2ServerConnectionFactory(new HttpConfiguration(), new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverStreams.add(stream);
+                // Respond to all streams at once, so that many
+                // small frames are queued in the flusher together.
+                if (serverStreams.size() == streams)
+                {
+                    for (Stream serverStream : serverStreams)
+                    {
+                        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+                        serverStream.headers(new HeadersFrame(serverStream.getId(), response, null, false), Callback.NOOP);
+                        serverStream.data(new DataFrame(serverStream.getId(), ByteBuffer.allocate(contentLength), true), Callback.NOOP);
+                    }
+                }
+                return null;
+            }
+        });
+        connectionFactory.setCoalesceBufferSize(COALESCE_BUFFER_SIZE);
+
+        QueuedThreadPool serverExecutor = new QueuedThreadPool();
+        serverExecutor.setName("server");
+        server = new Server(serverExecutor);
+        connector = new ServerConnector(server, 1, 1, connectionFactory)
+        {
+            @Override
+            protected ChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key)
+            {
+                SocketChannelEndPoint endPoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler())
+                {
+                    @Override
+                    public boolean flush(ByteBuffer... buffers) throws IOException
+                    {
+                        flushes.incrementAndGet();
+                        assertCoalesced(buffers);
+                        long before = remaining(buffers);
+                        boolean flushed = super.flush(buffers);
+                        flushedBytes.addAndGet(before - remaining(buffers));
+                        return flushed;
+                    }
+                };
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        server.addConnector(connector);
+        server.start();
+
+        prepareClient();
+        client.start();
+    }
+
+    private void assertCoalesced(ByteBuffer[] buffers)
+    {
+        int maxCopyLength = COALESCE_BUFFER_SIZE / 4;
+        ByteBuffer previous = null;
+        for (ByteBuffer buffer : buffers)
+        {
+            if (!buffer.hasRemaining())
+                continue;
+            if (previous != null && previous.remaining() <= maxCopyLength && buffer.remaining() <= maxCopyLength)
+                notCoalesced.compareAndSet(null, previous + ", " + buffer);
+            previous = buffer;
+        }
+    }
+
+    private static long remaining(ByteBuffer[] buffers)
+    {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers)
+        {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    @Test
+    public void testSmallFramesFromManyStreamsAreCoalesced() throws Exception
+    {
+        int streams = 32;
+        int contentLength = 64;
+        startServer(streams, contentLength);
+
+        Session session = newClient(new Session.Listener.Adapter());
+        CountDownLatch latch = new CountDownLatch(streams);
+        AtomicLong received = new AtomicLong();
+        for (int i = 0; i < streams; ++i)
+        {
+            session.newStream(new HeadersFrame(newRequest("GET", new HttpFields()), null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+            {
+                @Override
+                public void onData(Stream stream, DataFrame frame, Callback callback)
+                {
+                    received.addAndGet(frame.getData().remaining());
+                    callback.succeeded();
+                    if (frame.isEndStream())
+                        latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(streams * contentLength, received.get());
+        assertNull(notCoalesced.get());
+        assertTrue(flushes.get() > 0);
+        assertTrue(flushedBytes.get() > streams * contentLength);
+    }
+}
@@ -0,0 +1,203 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ResourceGovernor;
+import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HTTP2ResourceGovernorTest extends AbstractTest
+{
+    private static final int MAX_CONCURRENT_STREAMS = 128;
+    private static final int CONSTRAINED_MAX_CONCURRENT_STREAMS = 2;
+    private static final int CONSTRAINED_STREAM_WINDOW = 16 * 1024;
+
+    private final Queue<Callback> dataCallbacks = new ConcurrentLinkedQueue<>();
+    private HTTP2ResourceGovernor governor;
+
+    private void startServer() throws Exception
+    {
+        governor = new HTTP2ResourceGovernor();
+        governor.setMaxBufferedBytes(1024);
+        governor.setConstrainedMaxConcurrentStreams(CONSTRAINED_MAX_CONCURRENT_STREAMS);
+        governor.setConstrainedInitialStreamRecvWindow(CONSTRAINED_STREAM_WINDOW);
+
+        RawHTTP2ServerConnectionFactory connectionFactory = new RawHTTP2ServerConnectionFactory(new HttpConfiguration(), new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        // Do not consume the data, so that it stays buffered.
+                        dataCallbacks.offer(callback);
+                    }
+                };
+            }
+        });
+        connectionFactory.setInitialSessionRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        connectionFactory.setInitialStreamRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        connectionFactory.setMaxConcurrentStreams(MAX_CONCURRENT_STREAMS);
+        connectionFactory.setResourceGovernor(governor);
+        prepareServer(connectionFactory);
+        server.start();
+
+        prepareClient();
+        client.start();
+    }
+
+    private Session newClient(BlockingQueue<SettingsFrame> settings) throws Exception
+    {
+        return newClient(new Session.Listener.Adapter()
+        {
+            @Override
+            public void onSettings(Session session, SettingsFrame frame)
+            {
+                settings.offer(frame);
+            }
+        });
+    }
+
+    private void upload(Session session, int length) throws Exception
+    {
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("POST", new HttpFields()), null, false), promise, new Stream.Listener.Adapter());
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+    }
+
+    private static void assertSettings(SettingsFrame frame, int maxConcurrentStreams, int initialStreamWindow)
+    {
+        assertNotNull(frame);
+        Map<Integer, Integer> settings = frame.getSettings();
+        assertEquals(maxConcurrentStreams, (int)settings.get(SettingsFrame.MAX_CONCURRENT_STREAMS));
+        assertEquals(initialStreamWindow, (int)settings.get(SettingsFrame.INITIAL_WINDOW_SIZE));
+    }
+
+    @Test
+    public void testSessionsConstrainedAndRestored() throws Exception
+    {
+        startServer();
+
+        BlockingQueue<SettingsFrame> settings = new LinkedBlockingQueue<>();
+        Session session = newClient(settings);
+        assertSettings(settings.poll(5, TimeUnit.SECONDS), MAX_CONCURRENT_STREAMS, FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+
+        upload(session, 4096);
+
+        // Crossing the threshold constrains the existing sessions.
+        assertSettings(settings.poll(5, TimeUnit.SECONDS), CONSTRAINED_MAX_CONCURRENT_STREAMS, CONSTRAINED_STREAM_WINDOW);
+        assertTrue(governor.isConstrained());
+        assertEquals(1, governor.getConstrainCount());
+
+        // New sessions are constrained from the start.
+        BlockingQueue<SettingsFrame> newSettings = new LinkedBlockingQueue<>();
+        Session newSession = newClient(newSettings);
+        assertSettings(newSettings.poll(5, TimeUnit.SECONDS), CONSTRAINED_MAX_CONCURRENT_STREAMS, CONSTRAINED_STREAM_WINDOW);
+
+        // Consuming the data restores all sessions.
+        Callback callback;
+        while ((callback = dataCallbacks.poll()) != null)
+        {
+            callback.succeeded();
+        }
+        assertSettings(settings.poll(5, TimeUnit.SECONDS), MAX_CONCURRENT_STREAMS, FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        assertSettings(newSettings.poll(5, TimeUnit.SECONDS), MAX_CONCURRENT_STREAMS, FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        assertFalse(governor.isConstrained());
+        assertEquals(0, governor.getBufferedBytes());
+        assertEquals(2, governor.getSessionCount());
+    }
+
+    @Test
+    public void testClosedSessionReleasesBufferedBytes() throws Exception
+    {
+        startServer();
+
+        BlockingQueue<SettingsFrame> settings = new LinkedBlockingQueue<>();
+        Session session = newClient(settings);
+        assertNotNull(settings.poll(5, TimeUnit.SECONDS));
+
+        upload(session, 4096);
+        assertNotNull(settings.poll(5, TimeUnit.SECONDS));
+        assertTrue(governor.isConstrained());
+
+        session.close(0, null, Callback.NOOP);
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (governor.getSessionCount() > 0 && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, governor.getSessionCount());
+        assertEquals(0, governor.getBufferedBytes());
+        assertFalse(governor.isConstrained());
+    }
+
+    @Test
+    public void testGovernedFlowControlStrategyManagesDelegate() throws Exception
+    {
+        startServer();
+
+        BlockingQueue<SettingsFrame> settings = new LinkedBlockingQueue<>();
+        newClient(settings);
+        assertNotNull(settings.poll(5, TimeUnit.SECONDS));
+
+        AbstractHTTP2ServerConnectionFactory connectionFactory = connector.getConnectionFactory(AbstractHTTP2ServerConnectionFactory.class);
+        Set<Session> serverSessions = connectionFactory.getBean(AbstractHTTP2ServerConnectionFactory.HTTP2SessionContainer.class).getSessions();
+        assertEquals(1, serverSessions.size());
+        FlowControlStrategy flowControl = ((HTTP2Session)serverSessions.iterator().next()).getFlowControlStrategy();
+        // The flow control strategy of the connection factory
+        // is still dumped and managed as part of the session.
+        assertNotNull(((ContainerLifeCycle)flowControl).getBean(BufferingFlowControlStrategy.class));
+    }
+}
@@ -0,0 +1,493 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>A flow control strategy that grows and shrinks the receive windows of the
+ * session and of the streams to match the bandwidth-delay product of the connection.</p>
+ * <p>Like {@link BufferingFlowControlStrategy}, window updates are sent when half
+ * of a receive window has been consumed by the application. At that point the
+ * consumption rate is compared with the round trip time, measured by sending
+ * PING frames: if the receive window is smaller than what the peer could send in
+ * two round trips at the current consumption rate, the window is doubled so that
+ * the peer does not stall (for example for uploads over long distance links);
+ * if it is much larger, the window is halved, down to its initial size, by
+ * returning less than the consumed bytes to the peer.</p>
+ * <p>The memory that receive windows may hold is bounded: the growth of the stream
+ * receive windows above their initial size is reserved from the memory budget of
+ * the {@link Factory}, which is typically shared by all the connections of a connector.
+ * When the budget is exhausted the windows stop growing.</p>
+ */
+@ManagedObject
+public class AdaptiveFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    private final Map<IStream, Window> streamWindows = new ConcurrentHashMap<>();
+    private final Window sessionWindow = new Window(DEFAULT_WINDOW_SIZE);
+    private final AtomicLong pingTime = new AtomicLong();
+    private final LongAdder sessionRecvStalls = new LongAdder();
+    private final LongAdder streamRecvStalls = new LongAdder();
+    private final Factory factory;
+    private volatile long pingPayload;
+    private volatile long roundTripTime;
+
+    public AdaptiveFlowControlStrategy()
+    {
+        this(new Factory());
+    }
+
+    /**
+     * @param factory the factory holding the configuration and the memory budget
+     */
+    public AdaptiveFlowControlStrategy(Factory factory)
+    {
+        super(DEFAULT_WINDOW_SIZE);
+        this.factory = factory;
+    }
+
+    @ManagedAttribute(value = "The round trip time in microseconds, or 0 if not yet measured", readonly = true)
+    public long getRoundTripTime()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(roundTripTime);
+    }
+
+    @ManagedAttribute(value = "The current size of the session receive window", readonly = true)
+    public int getSessionRecvWindow()
+    {
+        return sessionWindow.getSize();
+    }
+
+    @ManagedAttribute(value = "The number of times the session receive window has been exhausted", readonly = true)
+    public long getSessionRecvStalls()
+    {
+        return sessionRecvStalls.sum();
+    }
+
+    @ManagedAttribute(value = "The number of times a stream receive window has been exhausted", readonly = true)
+    public long getStreamRecvStalls()
+    {
+        return streamRecvStalls.sum();
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        streamWindows.put(stream, new Window(getInitialStreamRecvWindow()));
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        Window window = streamWindows.remove(stream);
+        if (window != null)
+            factory.release(window.getGrowth());
+        super.onStreamDestroyed(stream);
+    }
+
+    @Override
+    public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+    {
+        int previousInitialStreamWindow = getInitialStreamRecvWindow();
+        super.updateInitialStreamWindow(session, initialStreamWindow, local);
+        if (local)
+        {
+            int delta = initialStreamWindow - previousInitialStreamWindow;
+            if (delta != 0)
+                streamWindows.values().forEach(window -> window.resize(delta));
+        }
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+
+        if (session.updateRecvWindow(0) <= 0)
+        {
+            sessionRecvStalls.increment();
+            factory.sessionRecvStalls.increment();
+        }
+        if (stream != null && stream.updateRecvWindow(0) <= 0)
+        {
+            streamRecvStalls.increment();
+            factory.streamRecvStalls.increment();
+        }
+
+        ping(session);
+    }
+
+    private void ping(ISession session)
+    {
+        // Measure the round trip time at the first data
+        // received, and then periodically while data is received.
+        long now = System.nanoTime();
+        long lastPing = pingTime.get();
+        if (lastPing != 0 && now - lastPing < factory.getPingIntervalNanos())
+            return;
+        if (!pingTime.compareAndSet(lastPing, now))
+            return;
+        pingPayload = now;
+        session.ping(new PingFrame(now, false), Callback.NOOP);
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        long payload = frame.getPayloadAsLong();
+        if (payload == 0 || payload != pingPayload)
+            return false;
+        onRoundTripTime(session, Math.max(1, System.nanoTime() - payload));
+        return true;
+    }
+
+    /**
+     * <p>Invoked when the round trip time has been measured.</p>
+     *
+     * @param session the session
+     * @param roundTripTime the round trip time, in nanoseconds
+     */
+    protected void onRoundTripTime(ISession session, long roundTripTime)
+    {
+        this.roundTripTime = roundTripTime;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Measured round trip time {} us for {}", getRoundTripTime(), session);
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        int sessionDelta = sessionWindow.consume(length, factory.getMaxSessionRecvWindow(), false);
+        if (sessionDelta > 0)
+        {
+            session.updateRecvWindow(sessionDelta);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Data consumed, {} bytes, updated session recv window by {} to size {} for {}", length, sessionDelta, sessionWindow.getSize(), session);
+            session.frames(null, Callback.NOOP, new WindowUpdateFrame(0, sessionDelta), Frame.EMPTY_ARRAY);
+        }
+
+        if (stream != null)
+        {
+            if (stream.isRemotelyClosed())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, ignoring update stream recv window for remotely closed {}", length, stream);
+            }
+            else
+            {
+                Window streamWindow = streamWindows.get(stream);
+                if (streamWindow != null)
+                {
+                    int streamDelta = streamWindow.consume(length, factory.getMaxStreamRecvWindow(), true);
+                    if (streamDelta > 0)
+                    {
+                        stream.updateRecvWindow(streamDelta);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, updated stream recv window by {} to size {} for {}", length, streamDelta, streamWindow.getSize(), stream);
+                        session.frames(stream, Callback.NOOP, new WindowUpdateFrame(stream.getId(), streamDelta), Frame.EMPTY_ARRAY);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+        // Track the enlargement of the session window
+        // done when the session is created, see
+        // BufferingFlowControlStrategy.windowUpdate().
+        if (frame.getStreamId() == 0)
+            sessionWindow.enlarge(session.updateRecvWindow(0));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[rtt=%dus,sessionWindow=%d,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getRoundTripTime(),
+            getSessionRecvWindow(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+
+    /**
+     * <p>A receive window, that is resized when half of it has been consumed.</p>
+     */
+    private class Window
+    {
+        private int initialSize;
+        private int size;
+        private int level;
+        private long epoch = System.nanoTime();
+
+        private Window(int size)
+        {
+            this.initialSize = size;
+            this.size = size;
+        }
+
+        private synchronized int getSize()
+        {
+            return size;
+        }
+
+        private synchronized int getGrowth()
+        {
+            return Math.max(0, size - initialSize);
+        }
+
+        private synchronized void resize(int delta)
+        {
+            initialSize += delta;
+            size += delta;
+        }
+
+        private synchronized void enlarge(int window)
+        {
+            if (window > size)
+            {
+                initialSize = window;
+                size = window;
+            }
+        }
+
+        /**
+         * @param length the bytes consumed by the application
+         * @param maxSize the max size of this window
+         * @param budgeted whether the growth of this window is reserved from the memory budget
+         * @return the delta of the window update to send, or 0 to not send a window update
+         */
+        private synchronized int consume(int length, int maxSize, boolean budgeted)
+        {
+            level += length;
+            if (level <= size / 2)
+                return 0;
+
+            long now = System.nanoTime();
+            long elapsed = Math.max(1, now - epoch);
+            epoch = now;
+            int consumed = level;
+            level = 0;
+
+            int newSize = size;
+            long rtt = roundTripTime;
+            if (rtt > 0)
+            {
+                // The bytes the peer may send in two round trips at the current consumption rate.
+                double required = 2.0 * consumed * rtt / elapsed;
+                if (required > size && size < maxSize)
+                {
+                    int growth = Math.min(maxSize, size * 2) - size;
+                    if (budgeted)
+                        growth = factory.reserve(growth);
+                    if (growth > 0)
+                    {
+                        newSize = size + growth;
+                        factory.windowGrowths.increment();
+                    }
+                }
+                else if (required < size / 4.0 && size > initialSize)
+                {
+                    newSize = Math.max(initialSize, size / 2);
+                    if (budgeted)
+                        factory.release(size - newSize);
+                    factory.windowShrinks.increment();
+                }
+            }
+
+            // When shrinking, fewer bytes than those consumed are given back to the peer.
+            int delta = consumed + newSize - size;
+            size = newSize;
+            return delta;
+        }
+    }
+
+    /**
+     * <p>A factory of {@link AdaptiveFlowControlStrategy} that holds their
+     * configuration and the memory budget they share.</p>
+     */
+    @ManagedObject
+    public static class Factory implements FlowControlStrategy.Factory
+    {
+        private final AtomicLong reservedMemory = new AtomicLong();
+        private final LongAdder windowGrowths = new LongAdder();
+        private final LongAdder windowShrinks = new LongAdder();
+        private final LongAdder deniedGrowths = new LongAdder();
+        private final LongAdder sessionRecvStalls = new LongAdder();
+        private final LongAdder streamRecvStalls = new LongAdder();
+        private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        private int maxSessionRecvWindow = 64 * 1024 * 1024;
+        private int maxStreamRecvWindow = 16 * 1024 * 1024;
+        private long pingInterval = TimeUnit.SECONDS.toMillis(30);
+
+        @Override
+        public FlowControlStrategy newFlowControlStrategy()
+        {
+            return new AdaptiveFlowControlStrategy(this);
+        }
+
+        @ManagedAttribute("The max memory, in bytes, by which stream receive windows may grow")
+        public long getMemoryBudget()
+        {
+            return memoryBudget;
+        }
+
+        public void setMemoryBudget(long memoryBudget)
+        {
+            this.memoryBudget = memoryBudget;
+        }
+
+        @ManagedAttribute("The memory, in bytes, by which stream receive windows have grown")
+        public long getReservedMemory()
+        {
+            return reservedMemory.get();
+        }
+
+        @ManagedAttribute("The max size of the session receive window")
+        public int getMaxSessionRecvWindow()
+        {
+            return maxSessionRecvWindow;
+        }
+
+        public void setMaxSessionRecvWindow(int maxSessionRecvWindow)
+        {
+            this.maxSessionRecvWindow = maxSessionRecvWindow;
+        }
+
+        @ManagedAttribute("The max size of a stream receive window")
+        public int getMaxStreamRecvWindow()
+        {
+            return maxStreamRecvWindow;
+        }
+
+        public void setMaxStreamRecvWindow(int maxStreamRecvWindow)
+        {
+            this.maxStreamRecvWindow = maxStreamRecvWindow;
+        }
+
+        @ManagedAttribute("The interval, in milliseconds, between PINGs that measure the round trip time")
+        public long getPingInterval()
+        {
+            return pingInterval;
+        }
+
+        public void setPingInterval(long pingInterval)
+        {
+            this.pingInterval = pingInterval;
+        }
+
+        private long getPingIntervalNanos()
+        {
+            return TimeUnit.MILLISECONDS.toNanos(pingInterval);
+        }
+
+        @ManagedAttribute("The number of times a receive window has grown")
+        public long getWindowGrowths()
+        {
+            return windowGrowths.sum();
+        }
+
+        @ManagedAttribute("The number of times a receive window has shrunk")
+        public long getWindowShrinks()
+        {
+            return windowShrinks.sum();
+        }
+
+        @ManagedAttribute("The number of times a stream receive window could not grow because the memory budget was exhausted")
+        public long getDeniedGrowths()
+        {
+            return deniedGrowths.sum();
+        }
+
+        @ManagedAttribute("The number of times a session receive window has been exhausted")
+        public long getSessionRecvStalls()
+        {
+            return sessionRecvStalls.sum();
+        }
+
+        @ManagedAttribute("The number of times a stream receive window has been exhausted")
+        public long getStreamRecvStalls()
+        {
+            return streamRecvStalls.sum();
+        }
+
+        @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+        public void resetStatistics()
+        {
+            windowGrowths.reset();
+            windowShrinks.reset();
+            deniedGrowths.reset();
+            sessionRecvStalls.reset();
+            streamRecvStalls.reset();
+        }
+
+        private int reserve(int bytes)
+        {
+            while (true)
+            {
+                long reserved = reservedMemory.get();
+                long granted = Math.min(bytes, memoryBudget - reserved);
+                if (granted <= 0)
+                {
+                    deniedGrowths.increment();
+                    return 0;
+                }
+                if (reservedMemory.compareAndSet(reserved, reserved + granted))
+                {
+                    if (granted < bytes)
+                        deniedGrowths.increment();
+                    return (int)granted;
+                }
+            }
+        }
+
+        private void release(int bytes)
+        {
+            if (bytes > 0)
+                reservedMemory.addAndGet(-bytes);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[reserved=%d/%d]", getClass().getSimpleName(), hashCode(), getReservedMemory(), getMemoryBudget());
+        }
+    }
+}
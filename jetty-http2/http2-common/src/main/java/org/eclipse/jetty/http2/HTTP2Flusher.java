@@ -21,6 +21,7 @@ package org.eclipse.jetty.http2;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,9 +30,11 @@ import java.util.Queue;
 import java.util.Set;
 
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.component.Dumpable;
@@ -47,6 +50,11 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private final Deque<Entry> entries = new ArrayDeque<>();
     private final Queue<Entry> pendingEntries = new ArrayDeque<>();
     private final Set<Entry> processedEntries = new HashSet<>();
+    private final List<Entry> scheduledEntries = new ArrayList<>();
+    private final List<IStream> scheduledStreams = new ArrayList<>();
+    private final Set<IStream> deferredStreams = new HashSet<>();
+    private final List<ByteBuffer> coalescedBuffers = new ArrayList<>();
+    private final List<ByteBuffer> writeBuffers = new ArrayList<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
     private Throwable terminated;
@@ -157,6 +165,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        StreamScheduler scheduler = session.getStreamScheduler();
         while (true)
         {
             boolean progress = false;
@@ -182,30 +191,32 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                     continue;
                 }
 
-                try
+                if (scheduler != null && entry.stream != null)
                 {
-                    if (entry.generate(lease))
+                    // Frames of a stream are written in order, so
+                    // frames queued after a deferred DATA frame
+                    // wait until the DATA frame has been written.
+                    if (deferredStreams.contains(entry.stream))
+                        continue;
+
+                    // DATA frames are generated later, in the scheduler order.
+                    if (entry.isScheduled())
                     {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
+                        deferredStreams.add(entry.stream);
+                        scheduledEntries.add(entry);
+                        scheduledStreams.add(entry.stream);
+                        continue;
+                    }
+                }
 
+                try
+                {
+                    if (generate(entry))
+                    {
                         progress = true;
-
-                        processedEntries.add(entry);
-
                         if (entry.getDataBytesRemaining() == 0)
                             pending.remove();
                     }
-                    else
-                    {
-                        if (session.getSendWindow() <= 0 && stalledEntry == null)
-                        {
-                            stalledEntry = entry;
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Flow control stalled at {}", entry);
-                            // Continue to process control frames.
-                        }
-                    }
                 }
                 catch (Throwable failure)
                 {
@@ -217,6 +228,28 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 }
             }
 
+            if (!scheduledEntries.isEmpty())
+            {
+                try
+                {
+                    if (generateScheduled(scheduler))
+                        progress = true;
+                }
+                catch (Throwable failure)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Failure generating scheduled entries", failure);
+                    failed(failure);
+                    return Action.SUCCEEDED;
+                }
+                finally
+                {
+                    scheduledEntries.clear();
+                    scheduledStreams.clear();
+                    deferredStreams.clear();
+                }
+            }
+
             if (!progress)
                 break;
 
@@ -248,10 +281,135 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 processedEntries,
                 pendingEntries);
 
-        session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
+        session.getEndPoint().write(this, coalesce(byteBuffers));
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Copies runs of small buffers into pooled, contiguous buffers
+     * of {@link HTTP2Session#getCoalesceBufferSize()} bytes.</p>
+     * <p>The copied buffers are consumed, as if they were written.</p>
+     */
+    private ByteBuffer[] coalesce(List<ByteBuffer> byteBuffers)
+    {
+        int bufferSize = session.getCoalesceBufferSize();
+        int size = byteBuffers.size();
+        if (bufferSize <= 0 || size < 2)
+            return byteBuffers.toArray(EMPTY_BYTE_BUFFERS);
+
+        int maxCopyLength = bufferSize / 4;
+        ByteBufferPool byteBufferPool = session.getGenerator().getByteBufferPool();
+        try
+        {
+            int i = 0;
+            while (i < size)
+            {
+                // Find the run of small buffers starting at i.
+                int end = i;
+                while (end < size && byteBuffers.get(end).remaining() <= maxCopyLength)
+                {
+                    ++end;
+                }
+
+                if (end - i < 2)
+                {
+                    // Nothing to coalesce, write the buffer as it is.
+                    writeBuffers.add(byteBuffers.get(i));
+                    ++i;
+                    continue;
+                }
+
+                ByteBuffer coalesced = null;
+                for (; i < end; ++i)
+                {
+                    ByteBuffer buffer = byteBuffers.get(i);
+                    if (coalesced != null && coalesced.remaining() < buffer.remaining())
+                    {
+                        BufferUtil.flipToFlush(coalesced, 0);
+                        writeBuffers.add(coalesced);
+                        coalesced = null;
+                    }
+                    if (coalesced == null)
+                    {
+                        coalesced = byteBufferPool.acquire(bufferSize, true);
+                        coalescedBuffers.add(coalesced);
+                        BufferUtil.clearToFill(coalesced);
+                    }
+                    coalesced.put(buffer);
+                }
+                BufferUtil.flipToFlush(coalesced, 0);
+                writeBuffers.add(coalesced);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Coalesced {} buffers into {}", size, writeBuffers.size());
+            return writeBuffers.toArray(EMPTY_BYTE_BUFFERS);
+        }
+        finally
+        {
+            writeBuffers.clear();
+        }
+    }
+
+    private void releaseCoalescedBuffers()
+    {
+        if (coalescedBuffers.isEmpty())
+            return;
+        ByteBufferPool byteBufferPool = session.getGenerator().getByteBufferPool();
+        coalescedBuffers.forEach(byteBufferPool::release);
+        coalescedBuffers.clear();
+    }
+
+    private boolean generate(Entry entry)
+    {
+        if (entry.generate(lease))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
+            processedEntries.add(entry);
+            return true;
+        }
+
+        if (session.getSendWindow() <= 0 && stalledEntry == null)
+        {
+            stalledEntry = entry;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Flow control stalled at {}", entry);
+            // Continue to process control frames.
+        }
+        return false;
+    }
+
+    /**
+     * <p>Generates one DATA frame for the entry of the stream selected by the scheduler.</p>
+     * <p>There is at most one entry per stream, the first DATA entry queued for the stream.
+     * Entries that cannot be generated because of flow control are skipped,
+     * and the scheduler selects among the remaining ones.</p>
+     */
+    private boolean generateScheduled(StreamScheduler scheduler)
+    {
+        while (!scheduledStreams.isEmpty())
+        {
+            IStream stream = scheduler.select(scheduledStreams);
+            int index = scheduledStreams.indexOf(stream);
+            if (index < 0)
+                throw new IllegalStateException("Invalid stream " + stream + " selected by " + scheduler);
+            scheduledStreams.remove(index);
+            Entry entry = scheduledEntries.remove(index);
+
+            int frameBytes = entry.getFrameBytesGenerated();
+            if (generate(entry))
+            {
+                int length = entry.getFrameBytesGenerated() - frameBytes;
+                scheduler.onDataSending(stream, length);
+                if (entry.getDataBytesRemaining() == 0)
+                    pendingEntries.remove(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -278,6 +436,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private void finish()
     {
         lease.recycle();
+        releaseCoalescedBuffers();
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
@@ -307,6 +466,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     protected void onCompleteFailure(Throwable x)
     {
         lease.recycle();
+        releaseCoalescedBuffers();
 
         Throwable closed;
         Set<Entry> allEntries;
@@ -412,6 +572,11 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             super.failed(x);
         }
 
+        private boolean isScheduled()
+        {
+            return frame.getType() == FrameType.DATA && stream != null;
+        }
+
         private boolean isStale()
         {
             return !isProtocol() && stream != null && stream.isReset();
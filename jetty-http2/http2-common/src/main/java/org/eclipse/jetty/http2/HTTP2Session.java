@@ -87,11 +87,13 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private final Session.Listener listener;
     private final FlowControlStrategy flowControl;
     private final HTTP2Flusher flusher;
+    private volatile StreamScheduler streamScheduler;
     private int maxLocalStreams;
     private int maxRemoteStreams;
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private int coalesceBufferSize;
     private boolean pushEnabled;
     private long idleTime;
     private GoAwayFrame closeFrame;
@@ -192,6 +194,22 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.initialSessionRecvWindow = initialSessionRecvWindow;
     }
 
+    /**
+     * @return the scheduler of DATA frames, or null if DATA frames are written in queue order
+     */
+    public StreamScheduler getStreamScheduler()
+    {
+        return streamScheduler;
+    }
+
+    /**
+     * @param streamScheduler the scheduler of DATA frames, or null to write DATA frames in queue order
+     */
+    public void setStreamScheduler(StreamScheduler streamScheduler)
+    {
+        this.streamScheduler = streamScheduler;
+    }
+
     public int getWriteThreshold()
     {
         return writeThreshold;
@@ -202,6 +220,30 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.writeThreshold = writeThreshold;
     }
 
+    /**
+     * @return the size of the buffers small frames are coalesced into before writing, or 0 if frames are not coalesced
+     */
+    @ManagedAttribute("The size of the buffers small frames are coalesced into")
+    public int getCoalesceBufferSize()
+    {
+        return coalesceBufferSize;
+    }
+
+    /**
+     * <p>Sets the size of the buffers small frames are coalesced into before writing.</p>
+     * <p>When many streams write small frames, each frame is generated in its
+     * own buffers; copying them into few contiguous buffers reduces the number
+     * of buffers written (and of TLS records, when the connection is encrypted).
+     * Only buffers of at most a quarter of this size are copied, larger buffers
+     * are written as they are.</p>
+     *
+     * @param coalesceBufferSize the size of the buffers small frames are coalesced into, or 0 to not coalesce frames
+     */
+    public void setCoalesceBufferSize(int coalesceBufferSize)
+    {
+        this.coalesceBufferSize = coalesceBufferSize;
+    }
+
     public EndPoint getEndPoint()
     {
         return endPoint;
@@ -279,6 +321,19 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {}", frame);
+        onStreamPriority(frame);
+    }
+
+    /**
+     * <p>Notifies the {@link StreamScheduler}, if any, of the priority of a stream.</p>
+     *
+     * @param frame the priority received in a PRIORITY frame or in a HEADERS frame
+     */
+    protected void onStreamPriority(PriorityFrame frame)
+    {
+        StreamScheduler scheduler = streamScheduler;
+        if (scheduler != null)
+            scheduler.onPriority(frame);
     }
 
     @Override
@@ -391,7 +446,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -846,6 +902,9 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         {
             onStreamClosed(stream);
             flowControl.onStreamDestroyed(stream);
+            StreamScheduler scheduler = streamScheduler;
+            if (scheduler != null)
+                scheduler.onStreamRemoved(stream);
             if (LOG.isDebugEnabled())
                 LOG.debug("Removed {} {}", stream.isLocal() ? "local" : "remote", stream);
         }
@@ -0,0 +1,73 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.List;
+
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+
+/**
+ * <p>A {@link StreamScheduler} that ignores stream priorities and interleaves
+ * the DATA frames of all the streams, one frame per stream in turn.</p>
+ * <p>Since each stream gets its turn after at most one DATA frame of every other
+ * stream, a small response completes early even next to large downloads.</p>
+ */
+public class RoundRobinStreamScheduler implements StreamScheduler
+{
+    private int lastStreamId;
+
+    @Override
+    public void onPriority(PriorityFrame frame)
+    {
+    }
+
+    @Override
+    public void onStreamRemoved(IStream stream)
+    {
+    }
+
+    @Override
+    public IStream select(List<IStream> streams)
+    {
+        // Select the stream that follows the last one, by stream id.
+        IStream next = null;
+        IStream first = null;
+        for (IStream stream : streams)
+        {
+            int streamId = stream.getId();
+            if (streamId > lastStreamId && (next == null || streamId < next.getId()))
+                next = stream;
+            if (first == null || streamId < first.getId())
+                first = stream;
+        }
+        return next != null ? next : first;
+    }
+
+    @Override
+    public void onDataSending(IStream stream, int length)
+    {
+        lastStreamId = stream.getId();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[last=%d]", getClass().getSimpleName(), hashCode(), lastStreamId);
+    }
+}
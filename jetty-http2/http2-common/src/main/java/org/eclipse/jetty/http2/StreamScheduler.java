@@ -0,0 +1,76 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.List;
+
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+
+/**
+ * <p>Decides which stream gets the next DATA frame written by {@link HTTP2Flusher}.</p>
+ * <p>Only control frames and the frames of a stream that has no DATA frames queued
+ * (typically its first HEADERS frame) bypass the scheduler, and are written in the
+ * order they are queued; DATA frames are instead written one frame at a time, each
+ * time for the stream selected by {@link #select(List)}, so that small, important
+ * responses are not delayed by large downloads multiplexed on the same connection.</p>
+ * <p>The order of the frames of each stream is preserved: frames queued after a DATA
+ * frame of a stream, such as trailer HEADERS frames, are written only after that
+ * DATA frame has been written.</p>
+ * <p>Implementations are per session, and are notified of the stream priorities
+ * received from the peer.</p>
+ */
+public interface StreamScheduler
+{
+    /**
+     * <p>Callback method invoked when the priority of a stream
+     * is received, either in a PRIORITY frame or in a HEADERS frame.</p>
+     *
+     * @param frame the priority of the stream
+     */
+    void onPriority(PriorityFrame frame);
+
+    /**
+     * <p>Callback method invoked when a stream is removed from the session.</p>
+     *
+     * @param stream the removed stream
+     */
+    void onStreamRemoved(IStream stream);
+
+    /**
+     * <p>Selects the stream that gets the next DATA frame.</p>
+     *
+     * @param streams the streams that have DATA frames to write, in queue order, never empty
+     * @return one of the given streams
+     */
+    IStream select(List<IStream> streams);
+
+    /**
+     * <p>Callback method invoked when a DATA frame has been generated
+     * for the stream selected by {@link #select(List)}.</p>
+     *
+     * @param stream the stream
+     * @param length the length of the DATA frame, in bytes
+     */
+    void onDataSending(IStream stream, int length);
+
+    interface Factory
+    {
+        StreamScheduler newStreamScheduler();
+    }
+}
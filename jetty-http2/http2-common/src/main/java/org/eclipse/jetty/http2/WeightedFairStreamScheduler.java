@@ -0,0 +1,264 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+
+/**
+ * <p>A {@link StreamScheduler} that honors the stream priorities sent by the peer.</p>
+ * <p>As specified by RFC 7540, section 5.3, a stream that depends on another stream
+ * only gets DATA frames written when none of its ancestors in the dependency tree
+ * has DATA frames to write; streams that can proceed share the connection in
+ * proportion to their weights, by means of weighted fair queueing: each stream
+ * has a virtual finish time that advances by the frame length divided by the
+ * stream weight, and the stream with the earliest virtual finish time is selected.</p>
+ * <p>The number of streams for which priority information is retained is bounded,
+ * so that peers cannot exhaust memory by sending PRIORITY frames for idle streams:
+ * when the bound is reached, the priority information of the least recently created
+ * stream that has not written DATA frames yet is discarded, as allowed by RFC 7540,
+ * section 5.3.4.</p>
+ */
+public class WeightedFairStreamScheduler implements StreamScheduler
+{
+    private static final int DEFAULT_WEIGHT = 16;
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private final Map<Integer, Node> idleNodes = new LinkedHashMap<>();
+    private final Set<Integer> pendingIds = new HashSet<>();
+    private final int maxNodes;
+    private long virtualTime;
+
+    public WeightedFairStreamScheduler()
+    {
+        this(1024);
+    }
+
+    /**
+     * @param maxNodes the max number of streams for which priority information is retained
+     */
+    public WeightedFairStreamScheduler(int maxNodes)
+    {
+        this.maxNodes = maxNodes;
+    }
+
+    @Override
+    public synchronized void onPriority(PriorityFrame frame)
+    {
+        int streamId = frame.getStreamId();
+        int parentId = frame.getParentStreamId();
+        // A stream cannot depend on itself.
+        if (parentId == streamId)
+            return;
+        Node node = node(streamId);
+        if (node == null)
+            return;
+
+        // SPEC: if the stream is made dependent on one of its
+        // descendants, the descendant is first moved to depend
+        // on the former parent of the stream.
+        if (dependsOn(parentId, streamId))
+        {
+            Node parent = nodes.get(parentId);
+            if (parent != null)
+                parent.parentId = node.parentId;
+        }
+
+        // SPEC: an exclusive dependency makes the stream
+        // the sole parent of the former children.
+        if (frame.isExclusive())
+        {
+            for (Node other : nodes.values())
+            {
+                if (other != node && other.parentId == parentId)
+                    other.parentId = streamId;
+            }
+        }
+
+        node.parentId = parentId;
+        node.weight = frame.getWeight();
+    }
+
+    @Override
+    public synchronized void onStreamRemoved(IStream stream)
+    {
+        Node node = nodes.remove(stream.getId());
+        if (node == null)
+            return;
+        idleNodes.remove(node.streamId);
+        // SPEC: the children of a removed stream
+        // are moved to depend on its parent.
+        for (Node other : nodes.values())
+        {
+            if (other.parentId == node.streamId)
+                other.parentId = node.parentId;
+        }
+    }
+
+    @Override
+    public synchronized IStream select(List<IStream> streams)
+    {
+        try
+        {
+            for (IStream stream : streams)
+            {
+                pendingIds.add(stream.getId());
+            }
+
+            IStream selected = null;
+            long earliest = Long.MAX_VALUE;
+            for (IStream stream : streams)
+            {
+                if (hasPendingAncestor(stream.getId()))
+                    continue;
+                Node node = nodes.get(stream.getId());
+                long finish = Math.max(virtualTime, node == null ? 0 : node.finish);
+                if (finish < earliest)
+                {
+                    selected = stream;
+                    earliest = finish;
+                }
+            }
+            return selected != null ? selected : streams.get(0);
+        }
+        finally
+        {
+            pendingIds.clear();
+        }
+    }
+
+    @Override
+    public synchronized void onDataSending(IStream stream, int length)
+    {
+        Node node = node(stream.getId());
+        if (node == null)
+            return;
+        // A stream that writes DATA frames is not idle,
+        // so its priority information is not discarded.
+        idleNodes.remove(node.streamId);
+        long start = Math.max(virtualTime, node.finish);
+        virtualTime = start;
+        node.finish = start + (long)length * 256 / node.weight;
+    }
+
+    /**
+     * @param streamId the stream id
+     * @return the weight of the given stream
+     */
+    public synchronized int getWeight(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? DEFAULT_WEIGHT : node.weight;
+    }
+
+    /**
+     * @param streamId the stream id
+     * @return the id of the stream the given stream depends on, or 0 for the root
+     */
+    public synchronized int getParentStreamId(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? 0 : node.parentId;
+    }
+
+    private Node node(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node == null)
+        {
+            if (nodes.size() >= maxNodes && !evictIdleNode())
+                return null;
+            node = new Node(streamId);
+            nodes.put(streamId, node);
+            idleNodes.put(streamId, node);
+        }
+        return node;
+    }
+
+    private boolean evictIdleNode()
+    {
+        Iterator<Node> iterator = idleNodes.values().iterator();
+        if (!iterator.hasNext())
+            return false;
+        Node node = iterator.next();
+        iterator.remove();
+        nodes.remove(node.streamId);
+        // The children of the discarded stream get the default priority.
+        for (Node other : nodes.values())
+        {
+            if (other.parentId == node.streamId)
+                other.parentId = 0;
+        }
+        return true;
+    }
+
+    private boolean dependsOn(int streamId, int ancestorId)
+    {
+        // Bound the walk, in case of malformed trees.
+        int depth = nodes.size();
+        Node node = nodes.get(streamId);
+        while (node != null && node.parentId != 0 && depth-- >= 0)
+        {
+            if (node.parentId == ancestorId)
+                return true;
+            node = nodes.get(node.parentId);
+        }
+        return false;
+    }
+
+    private boolean hasPendingAncestor(int streamId)
+    {
+        // Bound the walk, in case of malformed trees.
+        int depth = nodes.size();
+        Node node = nodes.get(streamId);
+        while (node != null && node.parentId != 0 && depth-- >= 0)
+        {
+            if (pendingIds.contains(node.parentId))
+                return true;
+            node = nodes.get(node.parentId);
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("%s@%x[streams=%d,idle=%d]", getClass().getSimpleName(), hashCode(), nodes.size(), idleNodes.size());
+    }
+
+    private static class Node
+    {
+        private final int streamId;
+        private int parentId;
+        private int weight = DEFAULT_WEIGHT;
+        private long finish;
+
+        private Node(int streamId)
+        {
+            this.streamId = streamId;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackFieldCache;
 import org.eclipse.jetty.io.ByteBufferPool;
 
 public class Generator
@@ -89,4 +90,9 @@ public class Generator
     {
         hpackEncoder.setMaxHeaderListSize(value);
     }
+
+    public void setHpackFieldCache(HpackFieldCache fieldCache)
+    {
+        hpackEncoder.setFieldCache(fieldCache);
+    }
 }
@@ -0,0 +1,186 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class StreamSchedulerTest
+{
+    private static final int FRAME = 16384;
+
+    @Test
+    public void testRoundRobinInterleavesStreams()
+    {
+        StreamScheduler scheduler = new RoundRobinStreamScheduler();
+        IStream stream1 = newStream(1);
+        IStream stream3 = newStream(3);
+        IStream stream5 = newStream(5);
+        List<IStream> streams = Arrays.asList(stream3, stream1, stream5);
+
+        assertThat(schedule(scheduler, streams, 6), is(Arrays.asList(1, 3, 5, 1, 3, 5)));
+    }
+
+    @Test
+    public void testWeightedFairSharesByWeight()
+    {
+        StreamScheduler scheduler = new WeightedFairStreamScheduler();
+        IStream stream1 = newStream(1);
+        IStream stream3 = newStream(3);
+        scheduler.onPriority(new PriorityFrame(1, 0, 64, false));
+        scheduler.onPriority(new PriorityFrame(3, 0, 16, false));
+
+        List<Integer> order = schedule(scheduler, Arrays.asList(stream1, stream3), 100);
+        Map<Integer, Integer> counts = count(order);
+        assertThat(counts.get(1), is(80));
+        assertThat(counts.get(3), is(20));
+    }
+
+    @Test
+    public void testWeightedFairNewStreamIsNotDelayed()
+    {
+        StreamScheduler scheduler = new WeightedFairStreamScheduler();
+        IStream bulk = newStream(1);
+        List<IStream> streams = new ArrayList<>();
+        streams.add(bulk);
+        schedule(scheduler, streams, 100);
+
+        // A small stream arriving next to a long download is served immediately.
+        IStream small = newStream(3);
+        streams.add(small);
+        assertThat(scheduler.select(streams), sameInstance(small));
+    }
+
+    @Test
+    public void testWeightedFairDependentStreamWaitsForParent()
+    {
+        WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler();
+        IStream css = newStream(1);
+        IStream image = newStream(3);
+        scheduler.onPriority(new PriorityFrame(3, 1, 256, false));
+
+        List<IStream> streams = Arrays.asList(image, css);
+        assertThat(schedule(scheduler, streams, 3), is(Arrays.asList(1, 1, 1)));
+        // Without pending DATA for the parent, the dependent stream proceeds.
+        assertThat(scheduler.select(Arrays.asList(image)), sameInstance(image));
+
+        // When the parent is removed, the dependent stream moves to the root.
+        scheduler.onStreamRemoved(css);
+        assertThat(scheduler.getParentStreamId(3), is(0));
+    }
+
+    @Test
+    public void testWeightedFairExclusiveDependency()
+    {
+        WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler();
+        scheduler.onPriority(new PriorityFrame(3, 0, 16, false));
+        scheduler.onPriority(new PriorityFrame(5, 0, 16, false));
+        scheduler.onPriority(new PriorityFrame(7, 0, 32, true));
+
+        assertThat(scheduler.getParentStreamId(3), is(7));
+        assertThat(scheduler.getParentStreamId(5), is(7));
+        assertThat(scheduler.getParentStreamId(7), is(0));
+        assertThat(scheduler.getWeight(7), is(32));
+
+        // Making a stream depend on its descendant moves the descendant up.
+        scheduler.onPriority(new PriorityFrame(7, 3, 32, false));
+        assertThat(scheduler.getParentStreamId(3), is(0));
+        assertThat(scheduler.getParentStreamId(7), is(3));
+    }
+
+    @Test
+    public void testWeightedFairBoundsRetainedStreams()
+    {
+        WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler(2);
+        IStream stream1 = newStream(1);
+        scheduler.onPriority(new PriorityFrame(1, 0, 32, false));
+        scheduler.onDataSending(stream1, FRAME);
+        scheduler.onPriority(new PriorityFrame(3, 1, 32, false));
+        scheduler.onPriority(new PriorityFrame(5, 0, 32, false));
+
+        // The idle stream 3 is discarded, rather than stream 1 that writes DATA frames.
+        assertThat(scheduler.getWeight(1), is(32));
+        assertThat(scheduler.getWeight(3), is(16));
+        assertThat(scheduler.getParentStreamId(3), is(0));
+        assertThat(scheduler.getWeight(5), is(32));
+
+        // Many PRIORITY frames for idle streams only retain the most recent.
+        for (int streamId = 7; streamId < 1000; streamId += 2)
+        {
+            scheduler.onPriority(new PriorityFrame(streamId, 0, 64, false));
+        }
+        assertThat(scheduler.getWeight(1), is(32));
+        assertThat(scheduler.getWeight(5), is(16));
+        assertThat(scheduler.getWeight(999), is(64));
+    }
+
+    @Test
+    public void testWeightedFairManyDependentStreams()
+    {
+        // A deep dependency chain, with all streams having DATA frames to write.
+        WeightedFairStreamScheduler scheduler = new WeightedFairStreamScheduler();
+        List<IStream> streams = new ArrayList<>();
+        for (int streamId = 1; streamId < 2000; streamId += 2)
+        {
+            if (streamId > 1)
+                scheduler.onPriority(new PriorityFrame(streamId, streamId - 2, 16, false));
+            streams.add(0, newStream(streamId));
+        }
+
+        // Only the root of the chain can proceed.
+        assertThat(scheduler.select(streams).getId(), is(1));
+    }
+
+    private static List<Integer> schedule(StreamScheduler scheduler, List<IStream> streams, int frames)
+    {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < frames; ++i)
+        {
+            IStream stream = scheduler.select(streams);
+            scheduler.onDataSending(stream, FRAME);
+            order.add(stream.getId());
+        }
+        return order;
+    }
+
+    private static Map<Integer, Integer> count(List<Integer> order)
+    {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Integer streamId : order)
+        {
+            counts.merge(streamId, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static IStream newStream(int streamId)
+    {
+        return new HTTP2Stream(null, null, streamId, false);
+    }
+}
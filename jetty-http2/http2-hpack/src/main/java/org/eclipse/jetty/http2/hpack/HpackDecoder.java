@@ -41,6 +41,9 @@ public class HpackDecoder
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
     private int _localMaxDynamicTableSize;
+    private HpackInternTable _internTable = new HpackInternTable(64);
+    private byte[] _scratch = new byte[256];
+    private ByteBuffer _scratchBuffer = ByteBuffer.wrap(_scratch);
 
     /**
      * @param localMaxDynamicTableSize The maximum allowed size of the local dynamic header field table.
@@ -63,6 +66,23 @@ public class HpackDecoder
         _localMaxDynamicTableSize = localMaxdynamciTableSize;
     }
 
+    /**
+     * @return the table used to resolve decoded literal names and values to Strings, or null if there is no table
+     */
+    public HpackInternTable getInternTable()
+    {
+        return _internTable;
+    }
+
+    /**
+     * @param internTable the table used to resolve decoded literal names and values
+     * to Strings, or null to create a new String for every literal
+     */
+    public void setInternTable(HpackInternTable internTable)
+    {
+        _internTable = internTable;
+    }
+
     public MetaData decode(ByteBuffer buffer) throws HpackException.SessionException, HpackException.StreamException
     {
         if (LOG.isDebugEnabled())
@@ -171,30 +191,25 @@ public class HpackDecoder
                     huffmanName = (buffer.get() & 0x80) == 0x80;
                     int length = NBitInteger.decode(buffer, 7);
                     _builder.checkSize(length, huffmanName);
-                    if (huffmanName)
-                        name = Huffman.decode(buffer, length);
-                    else
-                        name = toASCIIString(buffer, length);
-                    for (int i = 0; i < name.length(); i++)
+                    int decoded = decodeToScratch(buffer, length, huffmanName);
+                    header = HttpHeader.CACHE.get(_scratchBuffer, 0, decoded);
+                    name = toString(decoded);
+                    for (int i = 0; i < decoded; i++)
                     {
-                        char c = name.charAt(i);
+                        byte c = _scratch[i];
                         if (c >= 'A' && c <= 'Z')
                         {
                             _builder.streamException("Uppercase header name %s", name);
                             break;
                         }
                     }
-                    header = HttpHeader.CACHE.get(name);
                 }
 
                 // decode the value
                 boolean huffmanValue = (buffer.get() & 0x80) == 0x80;
                 int length = NBitInteger.decode(buffer, 7);
                 _builder.checkSize(length, huffmanValue);
-                if (huffmanValue)
-                    value = Huffman.decode(buffer, length);
-                else
-                    value = toASCIIString(buffer, length);
+                value = toString(decodeToScratch(buffer, length, huffmanValue));
 
                 // Make the new field
                 HttpField field;
@@ -255,6 +270,56 @@ public class HpackDecoder
         return _builder.build();
     }
 
+    /**
+     * <p>Decodes a literal string into the scratch array, without allocating.</p>
+     *
+     * @param buffer the buffer containing the literal string
+     * @param length the number of octets of the literal string
+     * @param huffman whether the literal string is Huffman encoded
+     * @return the number of decoded octets in the scratch array
+     * @throws HpackException.CompressionException if the literal string is not correctly Huffman encoded
+     */
+    private int decodeToScratch(ByteBuffer buffer, int length, boolean huffman) throws HpackException.CompressionException
+    {
+        int capacity = huffman ? Huffman.decodedLengthMax(length) : length;
+        if (capacity > _scratch.length)
+        {
+            // The length is bounded by MetaDataBuilder.checkSize().
+            _scratch = new byte[Math.max(capacity, _scratch.length * 2)];
+            _scratchBuffer = ByteBuffer.wrap(_scratch);
+        }
+
+        if (huffman)
+            return Huffman.decode(buffer, length, _scratch);
+
+        if (buffer.hasArray())
+        {
+            byte[] array = buffer.array();
+            int start = buffer.arrayOffset() + buffer.position();
+            for (int i = 0; i < length; i++)
+            {
+                _scratch[i] = (byte)(0x7f & array[start + i]);
+            }
+            buffer.position(buffer.position() + length);
+        }
+        else
+        {
+            for (int i = 0; i < length; i++)
+            {
+                _scratch[i] = (byte)(0x7f & buffer.get());
+            }
+        }
+        return length;
+    }
+
+    private String toString(int length)
+    {
+        HpackInternTable internTable = _internTable;
+        if (internTable == null)
+            return HpackInternTable.newStaticOrString(_scratch, 0, length);
+        return internTable.intern(_scratch, 0, length);
+    }
+
     public static String toASCIIString(ByteBuffer buffer, int length)
     {
         StringBuilder builder = new StringBuilder(length);
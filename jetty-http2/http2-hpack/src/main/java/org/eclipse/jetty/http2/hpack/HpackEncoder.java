@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -95,6 +96,7 @@ public class HpackEncoder
     private int _localMaxDynamicTableSize;
     private int _maxHeaderListSize;
     private int _headerListSize;
+    private HpackFieldCache _fieldCache;
 
     public HpackEncoder()
     {
@@ -135,6 +137,21 @@ public class HpackEncoder
         return _context;
     }
 
+    public HpackFieldCache getFieldCache()
+    {
+        return _fieldCache;
+    }
+
+    /**
+     * <p>Sets the cache of encoded fields, typically shared by the encoders of many connections.</p>
+     *
+     * @param fieldCache the cache of encoded fields, or null to encode fields every time
+     */
+    public void setFieldCache(HpackFieldCache fieldCache)
+    {
+        _fieldCache = fieldCache;
+    }
+
     public void setRemoteMaxDynamicTableSize(int remoteMaxDynamicTableSize)
     {
         _remoteMaxDynamicTableSize = remoteMaxDynamicTableSize;
@@ -184,10 +201,12 @@ public class HpackEncoder
         HttpFields fields = metadata.getFields();
         if (fields != null)
         {
-            Set<String> hopHeaders = fields.getCSV(HttpHeader.CONNECTION, false).stream()
-                .filter(v -> specialHopHeaders.get(v) == Boolean.TRUE)
-                .map(StringUtil::asciiToLowerCase)
-                .collect(Collectors.toSet());
+            // Responses rarely have a Connection header, so avoid the allocations.
+            Set<String> hopHeaders = !fields.contains(HttpHeader.CONNECTION) ? Collections.emptySet() :
+                fields.getCSV(HttpHeader.CONNECTION, false).stream()
+                    .filter(v -> specialHopHeaders.get(v) == Boolean.TRUE)
+                    .map(StringUtil::asciiToLowerCase)
+                    .collect(Collectors.toSet());
             for (HttpField field : fields)
             {
                 if (field.getHeader() == HttpHeader.CONNECTION)
@@ -266,8 +285,21 @@ public class HpackEncoder
             // But do we know it's name?
             HttpHeader header = field.getHeader();
 
+            // Has the field already been encoded for another connection?
+            byte[] cached = null;
+            if (_fieldCache != null && !(field instanceof PreEncodedHttpField) && fieldSize < _context.getMaxDynamicTableSize())
+                cached = _fieldCache.get(field);
+
             // Select encoding strategy
-            if (header == null)
+            if (cached != null)
+            {
+                buffer.put(cached);
+                byte b = cached[0];
+                indexed = b < 0 || b >= 0x40;
+                if (_debug)
+                    encoding = indexed ? "CachedIdx" : "Cached";
+            }
+            else if (header == null)
             {
                 // Select encoding strategy for unknown header names
                 Entry name = _context.get(field.getName());
@@ -0,0 +1,209 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>A bounded cache of HPACK encoded {@link HttpField}s that can be shared by many {@link HpackEncoder}s.</p>
+ * <p>Responses typically carry the same header fields (for example {@code Content-Type},
+ * {@code Cache-Control} or {@code Strict-Transport-Security}) over and over, and when
+ * those fields are not in the dynamic table of a connection the encoder has to Huffman
+ * encode their names and values again.
+ * This cache maps header fields to their encoded bytes, in the same way
+ * {@link org.eclipse.jetty.http.PreEncodedHttpField} does, so that the encoder
+ * can copy the encoded bytes instead.</p>
+ * <p>The encoded bytes only refer to the static table, so they do not depend on the
+ * dynamic table of a connection and can be shared by all connections; fields that are
+ * already in the dynamic table of a connection are still encoded as an index.</p>
+ * <p>To avoid that rarely seen fields fill the cache, a field is only cached after
+ * it has been looked up {@code admissionThreshold} times.
+ * When the cache is full it is cleared before the next field is added, so that
+ * fields that are no longer sent do not prevent new fields from being cached.</p>
+ * <p>Fields whose values vary per resource or per request, and that the encoder
+ * does not index (such as {@code ETag}, {@code Last-Modified}, {@code Location}
+ * or {@code Set-Cookie}), as well as {@code Content-Length} and fields whose values
+ * vary over time ({@code Date}, {@code Expires} and {@code Age}), are never cached.</p>
+ */
+@ManagedObject
+public class HpackFieldCache
+{
+    private static final HpackFieldPreEncoder __preEncoder = new HpackFieldPreEncoder();
+    private static final EnumSet<HttpHeader> __DO_NOT_CACHE =
+        EnumSet.of(
+            HttpHeader.CONTENT_LENGTH,
+            HttpHeader.DATE,
+            HttpHeader.EXPIRES,
+            HttpHeader.AGE);
+
+    private final Map<HttpField, byte[]> _fields = new ConcurrentHashMap<>();
+    private final Map<HttpField, AtomicInteger> _candidates = new ConcurrentHashMap<>();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final int _capacity;
+    private final int _admissionThreshold;
+    private final int _maxCandidates;
+
+    /**
+     * @param capacity the max number of cached fields
+     */
+    public HpackFieldCache(int capacity)
+    {
+        this(capacity, 4);
+    }
+
+    /**
+     * @param capacity the max number of cached fields
+     * @param admissionThreshold the number of times a field must be looked up before it is cached
+     */
+    public HpackFieldCache(int capacity, int admissionThreshold)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        _capacity = capacity;
+        _admissionThreshold = Math.max(1, admissionThreshold);
+        _maxCandidates = Math.max(16, capacity);
+    }
+
+    /**
+     * <p>Returns the HPACK encoded bytes of the given field.</p>
+     * <p>If the field is not cached, it is counted as a candidate and it is
+     * cached once it has been looked up {@code admissionThreshold} times,
+     * clearing the cache first if it is full.</p>
+     *
+     * @param field the field to encode
+     * @return the encoded bytes of the field, or null if the field is not cached
+     */
+    public byte[] get(HttpField field)
+    {
+        byte[] encoded = _fields.get(field);
+        if (encoded != null)
+        {
+            _hits.increment();
+            return encoded;
+        }
+
+        _misses.increment();
+        if (!isCacheable(field))
+            return null;
+
+        if (_admissionThreshold > 1)
+        {
+            AtomicInteger count = _candidates.get(field);
+            if (count == null)
+            {
+                // Forget the candidates periodically so that
+                // rare values do not accumulate indefinitely.
+                if (_candidates.size() >= _maxCandidates)
+                    _candidates.clear();
+                count = _candidates.computeIfAbsent(field, f -> new AtomicInteger());
+            }
+            if (count.incrementAndGet() < _admissionThreshold)
+                return null;
+            _candidates.remove(field);
+        }
+
+        // The size check is racy, so the cache may exceed its capacity by a few fields.
+        if (isFull())
+        {
+            _fields.clear();
+            _evictions.increment();
+        }
+        encoded = __preEncoder.getEncodedField(field.getHeader(), field.getName(), field.getValue());
+        byte[] existing = _fields.putIfAbsent(field, encoded);
+        return existing == null ? encoded : existing;
+    }
+
+    private boolean isCacheable(HttpField field)
+    {
+        if (field.getValue() == null)
+            return false;
+        HttpHeader header = field.getHeader();
+        if (header == null)
+            return true;
+        return !__DO_NOT_CACHE.contains(header) && !HpackEncoder.__DO_NOT_INDEX.contains(header);
+    }
+
+    @ManagedAttribute("Whether the cache is full")
+    public boolean isFull()
+    {
+        return _fields.size() >= _capacity;
+    }
+
+    @ManagedAttribute("The max number of cached fields")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute("The number of times a field must be seen before it is cached")
+    public int getAdmissionThreshold()
+    {
+        return _admissionThreshold;
+    }
+
+    @ManagedAttribute("The number of cached fields")
+    public int size()
+    {
+        return _fields.size();
+    }
+
+    @ManagedAttribute("The number of lookups that returned a cached field")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of lookups that did not return a cached field")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of times the cache was cleared because it was full")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+    public void clear()
+    {
+        _fields.clear();
+        _candidates.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,capacity=%d}", getClass().getSimpleName(), hashCode(), size(), _capacity);
+    }
+}
@@ -0,0 +1,221 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * <p>A bounded table of the Strings decoded by a {@link HpackDecoder}.</p>
+ * <p>Literal header names and values are decoded by {@link HpackDecoder}
+ * into a scratch byte array, and then resolved by this table to a String:
+ * first against the names and values of the HPACK static table and the
+ * known header names, then against the Strings recently decoded by the
+ * same decoder, so that the values that are sent over and over as literals
+ * on a connection do not allocate a new String every time.</p>
+ * <p>The table is direct mapped: a String that collides with another replaces
+ * it, so that the table never grows beyond its capacity.</p>
+ * <p>This is not thread safe and may only be called by 1 thread at a time.</p>
+ */
+public class HpackInternTable
+{
+    private static final String[] __static;
+
+    static
+    {
+        Set<String> strings = new LinkedHashSet<>();
+        for (int i = 1; i < HpackContext.STATIC_TABLE.length; i++)
+        {
+            strings.add(HpackContext.STATIC_TABLE[i][0]);
+            strings.add(HpackContext.STATIC_TABLE[i][1]);
+        }
+        for (HttpHeader header : HttpHeader.values())
+        {
+            strings.add(header.asString().toLowerCase(Locale.ENGLISH));
+        }
+        strings.remove("");
+
+        // Open addressing with linear probing, at most half full.
+        __static = new String[Integer.highestOneBit(strings.size()) << 2];
+        for (String string : strings)
+        {
+            byte[] bytes = string.getBytes(StandardCharsets.ISO_8859_1);
+            int slot = hash(bytes, 0, bytes.length) & (__static.length - 1);
+            while (__static[slot] != null)
+            {
+                slot = (slot + 1) & (__static.length - 1);
+            }
+            __static[slot] = string;
+        }
+    }
+
+    private final String[] _strings;
+    private final int _maxLength;
+    private long _hits;
+    private long _misses;
+
+    /**
+     * @param capacity the number of Strings of the table, rounded up to a power of 2
+     */
+    public HpackInternTable(int capacity)
+    {
+        this(capacity, 128);
+    }
+
+    /**
+     * @param capacity the number of Strings of the table, rounded up to a power of 2
+     * @param maxLength the max length of the Strings held by the table
+     */
+    public HpackInternTable(int capacity, int maxLength)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        _strings = new String[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        _maxLength = maxLength;
+    }
+
+    /**
+     * <p>Returns a String for the given ISO-8859-1 bytes, either from
+     * this table or newly created, in which case it is added to this table.</p>
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return a String made of the given bytes
+     */
+    public String intern(byte[] bytes, int offset, int length)
+    {
+        int hash = hash(bytes, offset, length);
+        String string = getStatic(hash, bytes, offset, length);
+        if (string != null)
+        {
+            ++_hits;
+            return string;
+        }
+
+        if (length > _maxLength)
+            return newString(bytes, offset, length);
+
+        int slot = hash & (_strings.length - 1);
+        string = _strings[slot];
+        if (string != null && matches(string, bytes, offset, length))
+        {
+            ++_hits;
+            return string;
+        }
+
+        ++_misses;
+        string = newString(bytes, offset, length);
+        _strings[slot] = string;
+        return string;
+    }
+
+    /**
+     * <p>Returns a String for the given ISO-8859-1 bytes, either from
+     * the static Strings or newly created.</p>
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return a String made of the given bytes
+     */
+    public static String newStaticOrString(byte[] bytes, int offset, int length)
+    {
+        String string = getStatic(hash(bytes, offset, length), bytes, offset, length);
+        return string == null ? newString(bytes, offset, length) : string;
+    }
+
+    public int getCapacity()
+    {
+        return _strings.length;
+    }
+
+    public int getMaxLength()
+    {
+        return _maxLength;
+    }
+
+    /**
+     * @return the number of lookups that returned an existing String
+     */
+    public long getHits()
+    {
+        return _hits;
+    }
+
+    /**
+     * @return the number of lookups that created a new String
+     */
+    public long getMisses()
+    {
+        return _misses;
+    }
+
+    private static String getStatic(int hash, byte[] bytes, int offset, int length)
+    {
+        int slot = hash & (__static.length - 1);
+        while (true)
+        {
+            String string = __static[slot];
+            if (string == null)
+                return null;
+            if (matches(string, bytes, offset, length))
+                return string;
+            slot = (slot + 1) & (__static.length - 1);
+        }
+    }
+
+    private static String newString(byte[] bytes, int offset, int length)
+    {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int hash(byte[] bytes, int offset, int length)
+    {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String string, byte[] bytes, int offset, int length)
+    {
+        if (string.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (string.charAt(i) != (char)(bytes[offset + i] & 0xFF))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{capacity=%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getCapacity(), _hits, _misses);
+    }
+}
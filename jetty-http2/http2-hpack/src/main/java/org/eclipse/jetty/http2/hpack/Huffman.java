@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class Huffman
 {
@@ -358,7 +359,33 @@ public class Huffman
 
     public static String decode(ByteBuffer buffer, int length) throws HpackException.CompressionException
     {
-        StringBuilder out = new StringBuilder(length * 2);
+        byte[] out = new byte[decodedLengthMax(length)];
+        int decoded = decode(buffer, length, out);
+        return new String(out, 0, decoded, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param length the number of Huffman encoded octets
+     * @return the max number of octets the given number of Huffman encoded octets decode to
+     */
+    public static int decodedLengthMax(int length)
+    {
+        // The shortest Huffman code is 5 bits.
+        return length * 8 / 5;
+    }
+
+    /**
+     * <p>Decodes Huffman encoded octets into the given array, without allocating.</p>
+     *
+     * @param buffer the buffer containing the Huffman encoded octets
+     * @param length the number of Huffman encoded octets
+     * @param out the array to decode into, at least {@link #decodedLengthMax(int)} long
+     * @return the number of decoded octets
+     * @throws HpackException.CompressionException if the octets are not correctly Huffman encoded
+     */
+    public static int decode(ByteBuffer buffer, int length, byte[] out) throws HpackException.CompressionException
+    {
+        int decoded = 0;
         int node = 0;
         int current = 0;
         int bits = 0;
@@ -378,7 +405,7 @@ public class Huffman
                         throw new HpackException.CompressionException("EOS in content");
 
                     // terminal node
-                    out.append(rowsym[node]);
+                    out[decoded++] = (byte)rowsym[node];
                     bits -= rowbits[node];
                     node = 0;
                 }
@@ -411,7 +438,7 @@ public class Huffman
                 break;
             }
 
-            out.append(rowsym[node]);
+            out[decoded++] = (byte)rowsym[node];
             bits -= rowbits[node];
             node = 0;
         }
@@ -419,7 +446,7 @@ public class Huffman
         if (node != 0)
             throw new HpackException.CompressionException("Bad termination");
 
-        return out.toString();
+        return decoded;
     }
 
     public static int octetsNeeded(String s)
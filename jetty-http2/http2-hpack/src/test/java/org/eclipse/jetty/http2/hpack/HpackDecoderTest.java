@@ -19,9 +19,11 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.MetaData;
@@ -37,6 +39,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -506,4 +509,26 @@ public class HpackDecoderTest
         CompressionException ex = assertThrows(CompressionException.class, () -> decoder.decode(buffer));
         assertThat(ex.getMessage(), Matchers.containsString("Bad termination"));
     }
+
+    @Test
+    public void testLiteralsInterned() throws Exception
+    {
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        // Literal without indexing of a new name, and of the static accept-encoding name.
+        String literals = "00" + "08" + TypeUtil.toHexString("x-custom".getBytes(StandardCharsets.ISO_8859_1)) +
+            "05" + TypeUtil.toHexString("value".getBytes(StandardCharsets.ISO_8859_1)) +
+            "0f01" + "0d" + TypeUtil.toHexString("gzip, deflate".getBytes(StandardCharsets.ISO_8859_1));
+        String encoded = "828684410f7777772e6578616d706c652e636f6d" + literals;
+
+        HttpFields first = decoder.decode(ByteBuffer.wrap(TypeUtil.fromHexString(encoded))).getFields();
+        HttpFields second = decoder.decode(ByteBuffer.wrap(TypeUtil.fromHexString(encoded))).getFields();
+
+        assertEquals("value", first.get("x-custom"));
+        assertSame(first.getField("x-custom").getName(), second.getField("x-custom").getName());
+        assertSame(first.get("x-custom"), second.get("x-custom"));
+        // Values of the static table are resolved to the static table Strings.
+        assertSame(HpackContext.STATIC_TABLE[16][1], first.get(HttpHeader.ACCEPT_ENCODING));
+        assertThat(decoder.getInternTable().getHits(), is(5L));
+    }
 }
@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.BufferUtil;
@@ -30,7 +31,11 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  *
@@ -263,4 +268,98 @@ public class HpackEncoderTest
         assertThat(context.getMaxDynamicTableSize(), Matchers.is(50));
         assertThat(context.size(), Matchers.is(1));
     }
+
+    @Test
+    public void testFieldCacheSharedByEncoders() throws Exception
+    {
+        HpackFieldCache cache = new HpackFieldCache(16, 2);
+
+        HttpFields fields = new HttpFields();
+        fields.add(HttpHeader.CONTENT_TYPE, "text/html; charset=utf-8");
+        fields.add(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+        fields.add("X-Frame-Options", "DENY");
+        fields.add(HttpHeader.SET_COOKIE, "session=1234567890abcdef");
+        fields.add(HttpHeader.ETAG, "W/\"1234567890\"");
+        fields.add(HttpHeader.CONTENT_LENGTH, "1024");
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+
+        for (int i = 0; i < 4; ++i)
+        {
+            // A new encoder and decoder for each connection.
+            HpackEncoder encoder = new HpackEncoder();
+            encoder.setFieldCache(cache);
+            HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+            // Twice on the same connection, to use the dynamic table.
+            for (int j = 0; j < 2; ++j)
+            {
+                ByteBuffer buffer = BufferUtil.allocate(4096);
+                int pos = BufferUtil.flipToFill(buffer);
+                encoder.encode(buffer, response);
+                BufferUtil.flipToFlush(buffer, pos);
+
+                MetaData.Response decoded = (MetaData.Response)decoder.decode(buffer);
+                assertEquals(200, decoded.getStatus());
+                assertEquals(fields, decoded.getFields());
+            }
+        }
+
+        // Set-Cookie, ETag and Content-Length must never be cached.
+        assertThat(cache.size(), equalTo(3));
+        // The first two connections admit the fields, the others hit the cache.
+        assertThat(cache.getHits(), equalTo(6L));
+    }
+
+    @Test
+    public void testFieldCacheDoesNotCacheDateValues() throws Exception
+    {
+        HpackFieldCache cache = new HpackFieldCache(16, 4);
+
+        // Under steady load each Date value is seen many times before the next one.
+        for (int second = 0; second < 1024; ++second)
+        {
+            HttpField date = new HttpField(HttpHeader.DATE, "Thu, 01 Jan 1970 00:00:" + second + " GMT");
+            HttpField expires = new HttpField(HttpHeader.EXPIRES, "Thu, 01 Jan 1970 01:00:" + second + " GMT");
+            HttpField age = new HttpField(HttpHeader.AGE, String.valueOf(second));
+            for (int i = 0; i < 8; ++i)
+            {
+                assertNull(cache.get(date));
+                assertNull(cache.get(expires));
+                assertNull(cache.get(age));
+            }
+        }
+
+        assertThat(cache.size(), equalTo(0));
+        assertFalse(cache.isFull());
+
+        // Other fields are still cached.
+        HttpField field = new HttpField(HttpHeader.CONTENT_TYPE, "text/plain");
+        for (int i = 0; i < 3; ++i)
+        {
+            assertNull(cache.get(field));
+        }
+        assertNotNull(cache.get(field));
+        assertThat(cache.size(), equalTo(1));
+    }
+
+    @Test
+    public void testFieldCacheClearedWhenFull() throws Exception
+    {
+        int capacity = 16;
+        HpackFieldCache cache = new HpackFieldCache(capacity, 1);
+
+        for (int i = 0; i < 4 * capacity; ++i)
+        {
+            HttpField field = new HttpField("X-Value", String.valueOf(i));
+            assertNotNull(cache.get(field));
+            assertThat(cache.size(), lessThanOrEqualTo(capacity));
+        }
+
+        // Fields that are no longer sent do not prevent new fields from being cached.
+        assertThat(cache.getEvictions(), equalTo(3L));
+        HttpField field = new HttpField("X-Value", "new");
+        assertNotNull(cache.get(field));
+        assertNotNull(cache.get(field));
+        assertThat(cache.getHits(), equalTo(1L));
+    }
 }
@@ -26,14 +26,18 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.jetty.http2.AdaptiveFlowControlStrategy;
 import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
 import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.StreamScheduler;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackFieldCache;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
@@ -59,6 +63,10 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private StreamScheduler.Factory streamSchedulerFactory;
+    private HpackFieldCache hpackFieldCache;
+    private HTTP2ResourceGovernor resourceGovernor;
+    private int coalesceBufferSize;
     private long streamIdleTimeout;
 
     public AbstractHTTP2ServerConnectionFactory(@Name("config") HttpConfiguration httpConfiguration)
@@ -140,11 +148,104 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         return flowControlStrategyFactory;
     }
 
+    /**
+     * <p>Sets the factory of the {@link FlowControlStrategy}s, one for each session.</p>
+     * <p>The factory is added as a bean, so that factories that hold state shared
+     * by all sessions, such as {@link AdaptiveFlowControlStrategy.Factory}, are managed.</p>
+     *
+     * @param flowControlStrategyFactory the factory of {@link FlowControlStrategy}s
+     */
     public void setFlowControlStrategyFactory(FlowControlStrategy.Factory flowControlStrategyFactory)
     {
+        updateBean(this.flowControlStrategyFactory, flowControlStrategyFactory);
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    /**
+     * @return the factory of {@link StreamScheduler}s, or null if DATA frames are written in queue order
+     */
+    public StreamScheduler.Factory getStreamSchedulerFactory()
+    {
+        return streamSchedulerFactory;
+    }
+
+    /**
+     * <p>Sets the factory of the {@link StreamScheduler}s that decide, for each session,
+     * the order in which the DATA frames of concurrent streams are written,
+     * for example {@code WeightedFairStreamScheduler::new} to honor the stream priorities
+     * sent by clients, or {@code RoundRobinStreamScheduler::new} to interleave streams.</p>
+     *
+     * @param streamSchedulerFactory the factory of {@link StreamScheduler}s,
+     * or null to write DATA frames in queue order
+     */
+    public void setStreamSchedulerFactory(StreamScheduler.Factory streamSchedulerFactory)
+    {
+        this.streamSchedulerFactory = streamSchedulerFactory;
+    }
+
+    /**
+     * @return the cache of HPACK encoded fields shared by all connections, or null if there is no cache
+     */
+    @ManagedAttribute("The cache of HPACK encoded fields")
+    public HpackFieldCache getHpackFieldCache()
+    {
+        return hpackFieldCache;
+    }
+
+    /**
+     * <p>Sets the cache of HPACK encoded fields shared by all connections, so that
+     * the response header fields that are sent over and over by the application
+     * are encoded once rather than for every connection.</p>
+     *
+     * @param hpackFieldCache the cache of HPACK encoded fields, or null to encode fields every time
+     */
+    public void setHpackFieldCache(HpackFieldCache hpackFieldCache)
+    {
+        updateBean(this.hpackFieldCache, hpackFieldCache);
+        this.hpackFieldCache = hpackFieldCache;
+    }
+
+    /**
+     * @return the governor of the memory used by sessions, or null if there is no governor
+     */
+    @ManagedAttribute("The governor of the memory used by sessions")
+    public HTTP2ResourceGovernor getResourceGovernor()
+    {
+        return resourceGovernor;
+    }
+
+    /**
+     * <p>Sets the governor of the memory used by sessions, that may be shared
+     * with the connection factories of other connectors, so that the data
+     * buffered by all sessions is bounded.</p>
+     *
+     * @param resourceGovernor the governor of the memory used by sessions, or null for no governor
+     */
+    public void setResourceGovernor(HTTP2ResourceGovernor resourceGovernor)
+    {
+        updateBean(this.resourceGovernor, resourceGovernor);
+        this.resourceGovernor = resourceGovernor;
+    }
+
+    /**
+     * @return the size of the buffers small frames are coalesced into before writing, or 0 if frames are not coalesced
+     * @see HTTP2Session#setCoalesceBufferSize(int)
+     */
+    @ManagedAttribute("The size of the buffers small frames are coalesced into")
+    public int getCoalesceBufferSize()
+    {
+        return coalesceBufferSize;
+    }
+
+    /**
+     * @param coalesceBufferSize the size of the buffers small frames are coalesced into before writing, or 0 to not coalesce frames
+     * @see HTTP2Session#setCoalesceBufferSize(int)
+     */
+    public void setCoalesceBufferSize(int coalesceBufferSize)
+    {
+        this.coalesceBufferSize = coalesceBufferSize;
+    }
+
     @ManagedAttribute("The stream idle timeout in milliseconds")
     public long getStreamIdleTimeout()
     {
@@ -216,13 +317,30 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         return settings;
     }
 
+    /**
+     * @param session the session the preface settings are sent to
+     * @return the preface settings of the given session, constrained by the {@link #getResourceGovernor() resource governor}, if any
+     */
+    protected Map<Integer, Integer> newSettings(Session session)
+    {
+        Map<Integer, Integer> settings = newSettings();
+        HTTP2ResourceGovernor resourceGovernor = getResourceGovernor();
+        if (resourceGovernor != null)
+            resourceGovernor.constrain(session, settings);
+        return settings;
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackFieldCache(getHpackFieldCache());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
+        HTTP2ResourceGovernor resourceGovernor = getResourceGovernor();
+        if (resourceGovernor != null)
+            flowControl = resourceGovernor.newFlowControlStrategy(flowControl, connector.getExecutor(), getMaxConcurrentStreams(), getInitialStreamRecvWindow());
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
         session.setMaxRemoteStreams(getMaxConcurrentStreams());
@@ -236,6 +354,10 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setStreamIdleTimeout(streamIdleTimeout);
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
+        session.setCoalesceBufferSize(getCoalesceBufferSize());
+        StreamScheduler.Factory streamSchedulerFactory = getStreamSchedulerFactory();
+        if (streamSchedulerFactory != null)
+            session.setStreamScheduler(streamSchedulerFactory.newStreamScheduler());
 
         ServerParser parser = newServerParser(connector, session);
         parser.setMaxFrameLength(getMaxFrameLength());
@@ -244,6 +366,8 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
             endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
         connection.addListener(sessionContainer);
+        if (resourceGovernor != null)
+            connection.addListener(resourceGovernor);
         return configure(connection, connector, endPoint);
     }
 
@@ -0,0 +1,425 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.IStream;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Governs the memory used by all the HTTP/2 sessions of a server.</p>
+ * <p>Each session buffers the DATA frames it receives until the application
+ * consumes them, up to its flow control windows, independently of the other
+ * sessions; a synchronized burst of uploads over many connections may therefore
+ * exhaust the heap.</p>
+ * <p>This governor tracks the bytes received but not yet consumed by all the
+ * sessions it governs. When they exceed {@link #getMaxBufferedBytes()}, it
+ * sends to all the sessions a SETTINGS frame that lowers {@code MAX_CONCURRENT_STREAMS}
+ * and {@code INITIAL_WINDOW_SIZE} to {@link #getConstrainedMaxConcurrentStreams()} and
+ * {@link #getConstrainedInitialStreamRecvWindow()}, and new sessions are created with
+ * these lower values. When the buffered bytes fall below {@link #getRestoreBufferedBytes()},
+ * the sessions are sent a SETTINGS frame that restores their configured values.</p>
+ * <p>A governor may be shared by the connection factories of many connectors,
+ * see {@link AbstractHTTP2ServerConnectionFactory#setResourceGovernor(HTTP2ResourceGovernor)}.</p>
+ */
+@ManagedObject("Governs the memory used by HTTP/2 sessions")
+public class HTTP2ResourceGovernor implements Connection.Listener
+{
+    private static final Logger LOG = Log.getLogger(HTTP2ResourceGovernor.class);
+
+    private final Set<GovernedFlowControlStrategy> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicBoolean constrained = new AtomicBoolean();
+    private final LongAdder constrainCount = new LongAdder();
+    private long maxBufferedBytes = Runtime.getRuntime().maxMemory() / 4;
+    private long restoreBufferedBytes = -1;
+    private int constrainedMaxConcurrentStreams = 8;
+    private int constrainedInitialStreamRecvWindow = FlowControlStrategy.DEFAULT_WINDOW_SIZE;
+
+    @ManagedAttribute("The bytes received but not yet consumed by all sessions")
+    public long getBufferedBytes()
+    {
+        return bufferedBytes.get();
+    }
+
+    @ManagedAttribute("The buffered bytes above which sessions are constrained")
+    public long getMaxBufferedBytes()
+    {
+        return maxBufferedBytes;
+    }
+
+    public void setMaxBufferedBytes(long maxBufferedBytes)
+    {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * @return the buffered bytes below which sessions are restored, by default half of {@link #getMaxBufferedBytes()}
+     */
+    @ManagedAttribute("The buffered bytes below which sessions are restored")
+    public long getRestoreBufferedBytes()
+    {
+        long restore = restoreBufferedBytes;
+        return restore < 0 ? getMaxBufferedBytes() / 2 : restore;
+    }
+
+    public void setRestoreBufferedBytes(long restoreBufferedBytes)
+    {
+        this.restoreBufferedBytes = restoreBufferedBytes;
+    }
+
+    @ManagedAttribute("The max number of concurrent streams when sessions are constrained")
+    public int getConstrainedMaxConcurrentStreams()
+    {
+        return constrainedMaxConcurrentStreams;
+    }
+
+    public void setConstrainedMaxConcurrentStreams(int constrainedMaxConcurrentStreams)
+    {
+        this.constrainedMaxConcurrentStreams = constrainedMaxConcurrentStreams;
+    }
+
+    @ManagedAttribute("The initial stream receive window when sessions are constrained")
+    public int getConstrainedInitialStreamRecvWindow()
+    {
+        return constrainedInitialStreamRecvWindow;
+    }
+
+    public void setConstrainedInitialStreamRecvWindow(int constrainedInitialStreamRecvWindow)
+    {
+        this.constrainedInitialStreamRecvWindow = constrainedInitialStreamRecvWindow;
+    }
+
+    @ManagedAttribute("Whether sessions are constrained")
+    public boolean isConstrained()
+    {
+        return constrained.get();
+    }
+
+    @ManagedAttribute("The number of times sessions have been constrained")
+    public long getConstrainCount()
+    {
+        return constrainCount.sum();
+    }
+
+    @ManagedAttribute("The number of governed sessions")
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        constrainCount.reset();
+    }
+
+    /**
+     * <p>Returns a flow control strategy for a new session, that captures whether
+     * sessions are constrained when it is created.</p>
+     * <p>The captured state is then used both to constrain the max remote streams
+     * when the connection is opened, and the preface SETTINGS frame, see
+     * {@link #constrain(Session, Map)}, so that they are consistent.</p>
+     *
+     * @param delegate the flow control strategy of a new session
+     * @param executor the executor used to update the sessions
+     * @param maxConcurrentStreams the max concurrent streams configured for the session
+     * @param initialStreamRecvWindow the initial stream receive window configured for the session
+     * @return a flow control strategy that tracks the bytes buffered by the session
+     */
+    FlowControlStrategy newFlowControlStrategy(FlowControlStrategy delegate, Executor executor, int maxConcurrentStreams, int initialStreamRecvWindow)
+    {
+        return new GovernedFlowControlStrategy(delegate, executor, maxConcurrentStreams, initialStreamRecvWindow, isConstrained());
+    }
+
+    /**
+     * @param session the session the settings are sent to
+     * @param settings the preface settings of the session, modified to their constrained values if the session is constrained
+     */
+    void constrain(Session session, Map<Integer, Integer> settings)
+    {
+        FlowControlStrategy flowControl = ((HTTP2Session)session).getFlowControlStrategy();
+        if (flowControl instanceof GovernedFlowControlStrategy && ((GovernedFlowControlStrategy)flowControl).isConstrained())
+        {
+            settings.put(SettingsFrame.MAX_CONCURRENT_STREAMS, getConstrainedMaxConcurrentStreams());
+            settings.put(SettingsFrame.INITIAL_WINDOW_SIZE, getConstrainedInitialStreamRecvWindow());
+        }
+    }
+
+    @Override
+    public void onOpened(Connection connection)
+    {
+        HTTP2Session session = (HTTP2Session)((HTTP2Connection)connection).getSession();
+        if (!(session.getFlowControlStrategy() instanceof GovernedFlowControlStrategy))
+            return;
+        GovernedFlowControlStrategy governed = (GovernedFlowControlStrategy)session.getFlowControlStrategy();
+        sessions.add(governed);
+        governed.open(session);
+        // Catch up with a state change that happened after the session was
+        // created, but before it was added. The preface SETTINGS frame has
+        // not been sent yet, and it will be constrained by the session state.
+        governed.apply(isConstrained(), false);
+    }
+
+    @Override
+    public void onClosed(Connection connection)
+    {
+        HTTP2Session session = (HTTP2Session)((HTTP2Connection)connection).getSession();
+        FlowControlStrategy flowControl = session.getFlowControlStrategy();
+        if (flowControl instanceof GovernedFlowControlStrategy && sessions.remove(flowControl))
+            ((GovernedFlowControlStrategy)flowControl).close();
+    }
+
+    private void update(long delta, Executor executor)
+    {
+        long buffered = bufferedBytes.addAndGet(delta);
+        if (delta > 0)
+        {
+            if (buffered > getMaxBufferedBytes() && constrained.compareAndSet(false, true))
+            {
+                constrainCount.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Constraining {} sessions, buffered {}/{} bytes", getSessionCount(), buffered, getMaxBufferedBytes());
+                schedule(executor);
+            }
+        }
+        else
+        {
+            if (buffered < getRestoreBufferedBytes() && constrained.compareAndSet(true, false))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Restoring {} sessions, buffered {}/{} bytes", getSessionCount(), buffered, getRestoreBufferedBytes());
+                schedule(executor);
+            }
+        }
+    }
+
+    private void schedule(Executor executor)
+    {
+        // Sending SETTINGS to many sessions may take a while,
+        // so it is not done by the thread that is reading data.
+        if (executor == null)
+            applyAll();
+        else
+            executor.execute(this::applyAll);
+    }
+
+    private synchronized void applyAll()
+    {
+        // Serialized so that the last state change is the one applied.
+        boolean constrain = isConstrained();
+        for (GovernedFlowControlStrategy session : sessions)
+        {
+            session.apply(constrain, true);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[constrained=%b,buffered=%d/%d,sessions=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            isConstrained(),
+            getBufferedBytes(),
+            getMaxBufferedBytes(),
+            getSessionCount());
+    }
+
+    /**
+     * <p>A flow control strategy that tracks the bytes buffered by a session
+     * and delegates the flow control to the configured strategy.</p>
+     */
+    private class GovernedFlowControlStrategy extends ContainerLifeCycle implements FlowControlStrategy
+    {
+        private final FlowControlStrategy delegate;
+        private final Executor executor;
+        private final int maxConcurrentStreams;
+        private final int initialStreamRecvWindow;
+        private volatile HTTP2Session session;
+        private long buffered;
+        private boolean closed;
+        private boolean constrained;
+
+        private GovernedFlowControlStrategy(FlowControlStrategy delegate, Executor executor, int maxConcurrentStreams, int initialStreamRecvWindow, boolean constrained)
+        {
+            this.delegate = delegate;
+            this.executor = executor;
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            this.initialStreamRecvWindow = initialStreamRecvWindow;
+            this.constrained = constrained;
+            addBean(delegate);
+        }
+
+        private synchronized boolean isConstrained()
+        {
+            return constrained;
+        }
+
+        private void open(HTTP2Session session)
+        {
+            this.session = session;
+            if (isConstrained())
+                session.setMaxRemoteStreams(getConstrainedMaxConcurrentStreams());
+        }
+
+        private void apply(boolean constrain, boolean sendSettings)
+        {
+            HTTP2Session session = this.session;
+            if (session == null)
+                return;
+            synchronized (this)
+            {
+                if (closed || constrained == constrain)
+                    return;
+                constrained = constrain;
+            }
+
+            int maxStreams = constrain ? getConstrainedMaxConcurrentStreams() : maxConcurrentStreams;
+            int streamWindow = constrain ? getConstrainedInitialStreamRecvWindow() : initialStreamRecvWindow;
+            // Streams opened by the client before it receives the SETTINGS are refused,
+            // which is what clients can retry, see RFC 7540 section 8.1.4.
+            session.setMaxRemoteStreams(maxStreams);
+            if (sendSettings)
+            {
+                Map<Integer, Integer> settings = new HashMap<>();
+                if (maxStreams >= 0)
+                    settings.put(SettingsFrame.MAX_CONCURRENT_STREAMS, maxStreams);
+                settings.put(SettingsFrame.INITIAL_WINDOW_SIZE, streamWindow);
+                session.settings(new SettingsFrame(settings, false), Callback.NOOP);
+            }
+        }
+
+        private void buffer(long delta)
+        {
+            synchronized (this)
+            {
+                if (closed)
+                    return;
+                buffered += delta;
+            }
+            update(delta, executor);
+        }
+
+        private void close()
+        {
+            long remaining;
+            synchronized (this)
+            {
+                closed = true;
+                remaining = buffered;
+                buffered = 0;
+            }
+            if (remaining != 0)
+                update(-remaining, executor);
+        }
+
+        @Override
+        public void onStreamCreated(IStream stream)
+        {
+            delegate.onStreamCreated(stream);
+        }
+
+        @Override
+        public void onStreamDestroyed(IStream stream)
+        {
+            delegate.onStreamDestroyed(stream);
+        }
+
+        @Override
+        public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+        {
+            delegate.updateInitialStreamWindow(session, initialStreamWindow, local);
+        }
+
+        @Override
+        public void onWindowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+        {
+            delegate.onWindowUpdate(session, stream, frame);
+        }
+
+        @Override
+        public void onDataReceived(ISession session, IStream stream, int length)
+        {
+            delegate.onDataReceived(session, stream, length);
+            buffer(length);
+        }
+
+        @Override
+        public void onDataConsumed(ISession session, IStream stream, int length)
+        {
+            delegate.onDataConsumed(session, stream, length);
+            buffer(-length);
+        }
+
+        @Override
+        public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+        {
+            delegate.windowUpdate(session, stream, frame);
+        }
+
+        @Override
+        public void onDataSending(IStream stream, int length)
+        {
+            delegate.onDataSending(stream, length);
+        }
+
+        @Override
+        public void onDataSent(IStream stream, int length)
+        {
+            delegate.onDataSent(stream, length);
+        }
+
+        @Override
+        public boolean onPingReply(ISession session, PingFrame frame)
+        {
+            return delegate.onPingReply(session, frame);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[buffered=%d,constrained=%b,%s]", getClass().getSimpleName(), hashCode(), buffered, constrained, delegate);
+        }
+    }
+}
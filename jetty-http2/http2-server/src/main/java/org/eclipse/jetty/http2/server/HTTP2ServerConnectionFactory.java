@@ -92,7 +92,7 @@ public class HTTP2ServerConnectionFactory extends AbstractHTTP2ServerConnectionF
         @Override
         public Map<Integer, Integer> onPreface(Session session)
         {
-            return newSettings();
+            return newSettings(session);
         }
 
         @Override
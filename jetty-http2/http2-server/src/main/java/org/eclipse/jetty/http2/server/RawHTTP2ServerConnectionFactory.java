@@ -73,7 +73,7 @@ public class RawHTTP2ServerConnectionFactory extends AbstractHTTP2ServerConnecti
         @Override
         public Map<Integer, Integer> onPreface(Session session)
         {
-            Map<Integer, Integer> settings = newSettings();
+            Map<Integer, Integer> settings = newSettings(session);
             Map<Integer, Integer> moreSettings = delegate.onPreface(session);
             if (moreSettings != null)
                 settings.putAll(moreSettings);
@@ -20,6 +20,7 @@ package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -35,6 +36,9 @@ abstract class AbstractByteBufferPool implements ByteBufferPool
     private final AtomicLong _heapMemory = new AtomicLong();
     private final long _maxDirectMemory;
     private final AtomicLong _directMemory = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
 
     protected AbstractByteBufferPool(int factor, int maxQueueLength, long maxHeapMemory, long maxDirectMemory)
     {
@@ -71,6 +75,30 @@ abstract class AbstractByteBufferPool implements ByteBufferPool
         memory.addAndGet(addOrSub ? capacity : -capacity);
     }
 
+    /**
+     * <p>Records whether an acquire has been satisfied by a pooled ByteBuffer.</p>
+     *
+     * @param hit true if a pooled ByteBuffer was returned, false if a new one was allocated
+     */
+    protected void recordAcquire(boolean hit)
+    {
+        if (hit)
+            _hits.increment();
+        else
+            _misses.increment();
+    }
+
+    /**
+     * <p>Accounts for a pooled ByteBuffer that has been evicted to reduce the retained memory.</p>
+     *
+     * @param buffer the evicted buffer
+     */
+    protected void evicted(ByteBuffer buffer)
+    {
+        _evictions.increment();
+        decrementMemory(buffer);
+    }
+
     protected void releaseExcessMemory(boolean direct, Consumer<Boolean> clearFn)
     {
         long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
@@ -101,6 +129,32 @@ abstract class AbstractByteBufferPool implements ByteBufferPool
         return memory.get();
     }
 
+    @ManagedAttribute("The number of acquires satisfied by a pooled ByteBuffer")
+    public long getHitCount()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of acquires that allocated a new ByteBuffer")
+    public long getMissCount()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of pooled ByteBuffers evicted to honor the max memory")
+    public long getEvictionCount()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedOperation(value = "Resets the hit, miss and eviction counters", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
     @ManagedOperation(value = "Clears this ByteBufferPool", impact = "ACTION")
     public void clear()
     {
@@ -20,7 +20,10 @@ package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntFunction;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -31,6 +34,13 @@ import org.eclipse.jetty.util.annotation.ManagedObject;
  * <p>Given a capacity {@code factor} of 1024, the first array element holds a queue of ByteBuffers
  * each of capacity 1024, the second array element holds a queue of ByteBuffers each of capacity
  * 2048, and so on.</p>
+ * <p>The memory retained by the pool can be bounded with {@code maxHeapMemory} and
+ * {@code maxDirectMemory}. When a release exceeds the bound, by default the least
+ * recently used bucket is cleared entirely; if {@link #setEvictLargestFirst(boolean)
+ * evictLargestFirst} is enabled, single ByteBuffers are instead evicted from the
+ * largest bucket that has been idle for more than {@link #getIdleTimeout() idleTimeout},
+ * or from the largest bucket if none is idle, which frees memory quickly while keeping
+ * the small, frequently used, ByteBuffers pooled.</p>
  */
 @ManagedObject
 public class ArrayByteBufferPool extends AbstractByteBufferPool
@@ -38,6 +48,8 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
     private final int _minCapacity;
     private final ByteBufferPool.Bucket[] _direct;
     private final ByteBufferPool.Bucket[] _indirect;
+    private volatile boolean _evictLargestFirst;
+    private volatile long _idleTimeout;
 
     /**
      * Creates a new ArrayByteBufferPool with a default configuration.
@@ -100,14 +112,49 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
         _indirect = new ByteBufferPool.Bucket[length];
     }
 
+    @ManagedAttribute("Whether ByteBuffers are evicted from the largest buckets first")
+    public boolean isEvictLargestFirst()
+    {
+        return _evictLargestFirst;
+    }
+
+    /**
+     * @param evictLargestFirst whether to evict single ByteBuffers from the largest
+     * (idle) buckets first rather than clearing the least recently used bucket
+     */
+    public void setEvictLargestFirst(boolean evictLargestFirst)
+    {
+        _evictLargestFirst = evictLargestFirst;
+    }
+
+    @ManagedAttribute("The idle time, in ms, after which a bucket is preferred for eviction")
+    public long getIdleTimeout()
+    {
+        return _idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout the time, in ms, a bucket must not have been released to
+     * in order to be preferred for eviction, or 0 to only evict from the largest buckets
+     * @see #setEvictLargestFirst(boolean)
+     */
+    public void setIdleTimeout(long idleTimeout)
+    {
+        _idleTimeout = idleTimeout;
+    }
+
     @Override
     public ByteBuffer acquire(int size, boolean direct)
     {
         int capacity = size < _minCapacity ? size : (bucketFor(size) + 1) * getCapacityFactor();
         ByteBufferPool.Bucket bucket = bucketFor(size, direct, null);
         if (bucket == null)
+        {
+            recordAcquire(false);
             return newByteBuffer(capacity, direct);
+        }
         ByteBuffer buffer = bucket.acquire();
+        recordAcquire(buffer != null);
         if (buffer == null)
             return newByteBuffer(capacity, direct);
         decrementMemory(buffer);
@@ -121,11 +168,10 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
             return;
         boolean direct = buffer.isDirect();
         ByteBufferPool.Bucket bucket = bucketFor(buffer.capacity(), direct, this::newBucket);
-        if (bucket != null)
+        if (bucket != null && bucket.offer(buffer))
         {
-            bucket.release(buffer);
             incrementMemory(buffer);
-            releaseExcessMemory(direct, this::clearOldestBucket);
+            releaseExcessMemory(direct, _evictLargestFirst ? this::evictFromLargestBucket : this::clearOldestBucket);
         }
     }
 
@@ -175,7 +221,36 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
             // The same bucket may be concurrently
             // removed, so we need this null guard.
             if (bucket != null)
-                bucket.clear(this::decrementMemory);
+                bucket.clear(this::evicted);
+        }
+    }
+
+    private void evictFromLargestBucket(boolean direct)
+    {
+        Bucket[] buckets = bucketsFor(direct);
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(_idleTimeout);
+        long now = System.nanoTime();
+        Bucket largest = null;
+        for (int i = buckets.length - 1; i >= 0; --i)
+        {
+            Bucket bucket = buckets[i];
+            if (bucket == null || bucket.isEmpty())
+                continue;
+            if (now - bucket.getLastUpdate() >= idleTimeout)
+            {
+                largest = bucket;
+                break;
+            }
+            if (largest == null)
+                largest = bucket;
+        }
+        if (largest != null)
+        {
+            // The same buffer may be concurrently
+            // acquired, so we need this null guard.
+            ByteBuffer buffer = largest.evict();
+            if (buffer != null)
+                evicted(buffer);
         }
     }
 
@@ -218,6 +293,29 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
             .sum();
     }
 
+    @ManagedAttribute("The bytes retained by direct ByteBuffers, per bucket capacity")
+    public Map<Integer, Long> getDirectBucketMemory()
+    {
+        return getBucketMemory(true);
+    }
+
+    @ManagedAttribute("The bytes retained by heap ByteBuffers, per bucket capacity")
+    public Map<Integer, Long> getHeapBucketMemory()
+    {
+        return getBucketMemory(false);
+    }
+
+    private Map<Integer, Long> getBucketMemory(boolean direct)
+    {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (Bucket bucket : bucketsFor(direct))
+        {
+            if (bucket != null)
+                result.put(bucket.getCapacity(), (long)bucket.size() * bucket.getCapacity());
+        }
+        return result;
+    }
+
     // Package local for testing
     ByteBufferPool.Bucket[] bucketsFor(boolean direct)
     {
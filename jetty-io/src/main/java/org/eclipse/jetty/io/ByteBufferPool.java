@@ -140,7 +140,7 @@ public interface ByteBufferPool
         private final ByteBufferPool _pool;
         private final int _capacity;
         private final int _maxSize;
-        private final AtomicInteger _size;
+        private final AtomicInteger _size = new AtomicInteger();
         private long _lastUpdate = System.nanoTime();
 
         public Bucket(ByteBufferPool pool, int capacity, int maxSize)
@@ -148,7 +148,6 @@ public interface ByteBufferPool
             _pool = pool;
             _capacity = capacity;
             _maxSize = maxSize;
-            _size = maxSize > 0 ? new AtomicInteger() : null;
         }
 
         public ByteBuffer acquire()
@@ -156,8 +155,7 @@ public interface ByteBufferPool
             ByteBuffer buffer = queuePoll();
             if (buffer == null)
                 return null;
-            if (_size != null)
-                _size.decrementAndGet();
+            _size.decrementAndGet();
             return buffer;
         }
 
@@ -172,21 +170,44 @@ public interface ByteBufferPool
             ByteBuffer buffer = queuePoll();
             if (buffer == null)
                 return _pool.newByteBuffer(_capacity, direct);
-            if (_size != null)
-                _size.decrementAndGet();
+            _size.decrementAndGet();
             return buffer;
         }
 
         public void release(ByteBuffer buffer)
         {
-            _lastUpdate = System.nanoTime();
+            offer(buffer);
+        }
+
+        /**
+         * @param buffer the buffer to return to this bucket
+         * @return whether the buffer has been queued, false if this bucket is full
+         */
+        boolean offer(ByteBuffer buffer)
+        {
             BufferUtil.clear(buffer);
-            if (_size == null)
-                queueOffer(buffer);
-            else if (_size.incrementAndGet() <= _maxSize)
+            if (_size.incrementAndGet() <= _maxSize || _maxSize <= 0)
+            {
+                // Only a queued buffer makes the bucket non idle.
+                _lastUpdate = System.nanoTime();
                 queueOffer(buffer);
-            else
+                return true;
+            }
+            _size.decrementAndGet();
+            return false;
+        }
+
+        /**
+         * <p>Removes the least recently released buffer from this bucket.</p>
+         *
+         * @return the evicted buffer, or null if this bucket is empty
+         */
+        ByteBuffer evict()
+        {
+            ByteBuffer buffer = _queue.pollLast();
+            if (buffer != null)
                 _size.decrementAndGet();
+            return buffer;
         }
 
         public void clear()
@@ -196,7 +217,7 @@ public interface ByteBufferPool
 
         void clear(Consumer<ByteBuffer> memoryFn)
         {
-            int size = _size == null ? 0 : _size.get() - 1;
+            int size = _size.get() - 1;
             while (size >= 0)
             {
                 ByteBuffer buffer = queuePoll();
@@ -204,11 +225,8 @@ public interface ByteBufferPool
                     break;
                 if (memoryFn != null)
                     memoryFn.accept(buffer);
-                if (_size != null)
-                {
-                    _size.decrementAndGet();
-                    --size;
-                }
+                _size.decrementAndGet();
+                --size;
             }
         }
 
@@ -229,7 +247,7 @@ public interface ByteBufferPool
 
         int size()
         {
-            return _queue.size();
+            return _size.get();
         }
 
         long getLastUpdate()
@@ -237,6 +255,11 @@ public interface ByteBufferPool
             return _lastUpdate;
         }
 
+        int getCapacity()
+        {
+            return _capacity;
+        }
+
         @Override
         public String toString()
         {
@@ -29,20 +29,24 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.DumpableCollection;
@@ -50,6 +54,7 @@ import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.TryExecutor;
 import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 
 /**
@@ -57,11 +62,20 @@ import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
  * <p>{@link ManagedSelector} runs the select loop, which waits on {@link Selector#select()} until events
  * happen for registered channels. When events happen, it notifies the {@link EndPoint} associated
  * with the channel.</p>
+ * <p>{@link ManagedSelector} also tracks its own load, via the number of registered keys and the
+ * recent ratio of time the select loop spent processing selected keys and updates rather than waiting
+ * in {@link Selector#select()}, so that {@link SelectorManager} can place new connections
+ * on the least loaded selector.</p>
+ * <p>{@link SelectorUpdate}s are submitted to a lock-free queue and applied in a single batch
+ * before each {@link Selector#select()}; the selector is woken up only by the first submission
+ * that finds it selecting, so that bursts of submissions cause a single wakeup.</p>
  */
+@ManagedObject("Manager of an NIO Selector")
 public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(ManagedSelector.class);
     private static final boolean FORCE_SELECT_NOW;
+    private static final double BUSY_RATIO_WEIGHT = 0.125;
 
     static
     {
@@ -78,22 +92,22 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     }
 
     private final AtomicBoolean _started = new AtomicBoolean(false);
-    private boolean _selecting = false;
+    private final AtomicBoolean _selecting = new AtomicBoolean();
     private final SelectorManager _selectorManager;
     private final int _id;
-    private final ExecutionStrategy _strategy;
+    private ExecutionStrategy _strategy;
     private Selector _selector;
-    private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
-    private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
+    private final ConcurrentLinkedDeque<SelectorUpdate> _updates = new ConcurrentLinkedDeque<>();
+    private final LongAdder _wakeups = new LongAdder();
+    private final LongAdder _wakeupsAvoided = new LongAdder();
+    private final AtomicInteger _pendingRegistrations = new AtomicInteger();
+    private final AtomicLong _selects = new AtomicLong();
+    private volatile double _busyRatio;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
         _selectorManager = selectorManager;
         _id = id;
-        SelectorProducer producer = new SelectorProducer();
-        Executor executor = selectorManager.getExecutor();
-        _strategy = new EatWhatYouKill(producer, executor);
-        addBean(_strategy, true);
         setStopTimeout(5000);
     }
 
@@ -105,6 +119,15 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     @Override
     protected void doStart() throws Exception
     {
+        // Use the reserved threads local to this selector, if any.
+        // The shard is looked up when starting, rather than when this
+        // selector is created, as the executor shards its reserved
+        // threads only once it is started.
+        Executor executor = _selectorManager.getExecutor();
+        TryExecutor tryExecutor = TryExecutor.asTryExecutor(executor).getShard(_id);
+        _strategy = new EatWhatYouKill(new SelectorProducer(), executor, tryExecutor);
+        addBean(_strategy, true);
+
         super.doStart();
 
         _selector = _selectorManager.newSelector();
@@ -130,6 +153,64 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         return s.keys().size();
     }
 
+    @ManagedAttribute("The number of keys registered with the selector")
+    public int getKeyCount()
+    {
+        return size();
+    }
+
+    /**
+     * @return the number of channels that have been assigned to this selector
+     * but are not yet registered with it
+     */
+    @ManagedAttribute("The number of channels waiting to be registered with the selector")
+    public int getPendingRegistrations()
+    {
+        return _pendingRegistrations.get();
+    }
+
+    /**
+     * @return the number of keys registered with the selector plus the
+     * number of channels waiting to be registered
+     */
+    public int getLoad()
+    {
+        return getKeyCount() + getPendingRegistrations();
+    }
+
+    /**
+     * <p>Returns the recent ratio of time the select loop spent processing
+     * selected keys and updates, over the total time of the select loop.</p>
+     * <p>The ratio is an exponentially weighted moving average of the
+     * ratios of the last select loops, and it is updated every time
+     * the selector wakes up from {@link Selector#select()}.</p>
+     *
+     * @return the recent busy ratio of the select loop, between 0 and 1
+     */
+    @ManagedAttribute("The recent ratio of time the select loop was busy rather than waiting in select()")
+    public double getBusyRatio()
+    {
+        return _busyRatio;
+    }
+
+    @ManagedAttribute("The number of times the selector woke up from select()")
+    public long getSelectCount()
+    {
+        return _selects.get();
+    }
+
+    @ManagedAttribute("The number of times the selector was woken up")
+    public long getWakeupCount()
+    {
+        return _wakeups.sum();
+    }
+
+    @ManagedAttribute("The number of selector wakeups avoided because the selector was already awake or being woken up")
+    public long getWakeupsAvoidedCount()
+    {
+        return _wakeupsAvoided.sum();
+    }
+
     @Override
     protected void doStop() throws Exception
     {
@@ -149,6 +230,8 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         }
 
         super.doStop();
+
+        removeBean(_strategy);
     }
 
     /**
@@ -161,44 +244,32 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         if (LOG.isDebugEnabled())
             LOG.debug("Queued change {} on {}", update, this);
 
-        Selector selector = null;
-        synchronized (ManagedSelector.this)
-        {
-            _updates.offer(update);
+        _updates.offer(update);
 
-            if (_selecting)
-            {
-                selector = _selector;
-                // To avoid the extra select wakeup.
-                _selecting = false;
-            }
-        }
-
-        if (selector != null)
-        {
-            if (LOG.isDebugEnabled())
-                LOG.debug("Wakeup on submit {}", this);
-            selector.wakeup();
-        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Wakeup on submit {}", this);
+        wakeup();
     }
 
     private void wakeup()
     {
-        if (LOG.isDebugEnabled())
-            LOG.debug("Wakeup {}", this);
-
-        Selector selector = null;
-        synchronized (ManagedSelector.this)
+        // Only the first thread that finds the selector selecting wakes it up;
+        // updates submitted until the selector selects again are batched.
+        if (_selecting.compareAndSet(true, false))
         {
-            if (_selecting)
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wakeup {}", this);
+            Selector selector = _selector;
+            if (selector != null)
             {
-                selector = _selector;
-                _selecting = false;
+                _wakeups.increment();
+                selector.wakeup();
             }
         }
-
-        if (selector != null)
-            selector.wakeup();
+        else
+        {
+            _wakeupsAvoided.increment();
+        }
     }
 
     private void execute(Runnable task)
@@ -283,10 +354,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 
     private int getActionSize()
     {
-        synchronized (ManagedSelector.this)
-        {
-            return _updates.size();
-        }
+        return _updates.size();
     }
 
     static int safeReadyOps(SelectionKey selectionKey)
@@ -325,12 +393,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         {
             DumpKeys dump = new DumpKeys();
             String updatesAt = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(ZonedDateTime.now());
-            synchronized (ManagedSelector.this)
-            {
-                updates = new ArrayList<>(_updates);
-                _updates.addFirst(dump);
-                _selecting = false;
-            }
+            updates = new ArrayList<>(_updates);
+            _updates.offerFirst(dump);
+            _selecting.set(false);
             if (LOG.isDebugEnabled())
                 LOG.debug("wakeup on dump {}", this);
             selector.wakeup();
@@ -353,12 +418,13 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     public String toString()
     {
         Selector selector = _selector;
-        return String.format("%s id=%s keys=%d selected=%d updates=%d",
+        return String.format("%s id=%s keys=%d selected=%d updates=%d busy=%.2f",
             super.toString(),
             _id,
             selector != null && selector.isOpen() ? selector.keys().size() : -1,
             selector != null && selector.isOpen() ? selector.selectedKeys().size() : -1,
-            getActionSize());
+            getActionSize(),
+            getBusyRatio());
     }
 
     /**
@@ -386,6 +452,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     {
         private Set<SelectionKey> _keys = Collections.emptySet();
         private Iterator<SelectionKey> _cursor = Collections.emptyIterator();
+        private long _selectEnd;
 
         @Override
         public Runnable produce()
@@ -407,20 +474,18 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 
         private void processUpdates()
         {
-            synchronized (ManagedSelector.this)
-            {
-                Deque<SelectorUpdate> updates = _updates;
-                _updates = _updateable;
-                _updateable = updates;
-            }
-
-            if (LOG.isDebugEnabled())
-                LOG.debug("updateable {}", _updateable.size());
-
-            for (SelectorUpdate update : _updateable)
+            int updates = 0;
+            while (true)
             {
+                SelectorUpdate update = _updates.poll();
+                if (update == null)
+                    break;
                 if (_selector == null)
+                {
+                    _updates.clear();
                     break;
+                }
+                ++updates;
                 try
                 {
                     if (LOG.isDebugEnabled())
@@ -432,25 +497,24 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                     LOG.warn(ex);
                 }
             }
-            _updateable.clear();
-
-            Selector selector;
-            int updates;
-            synchronized (ManagedSelector.this)
-            {
-                updates = _updates.size();
-                _selecting = updates == 0;
-                selector = _selecting ? null : _selector;
-            }
 
             if (LOG.isDebugEnabled())
-                LOG.debug("updates {}", updates);
+                LOG.debug("updated {}", updates);
 
-            if (selector != null)
+            // About to select: from now on, submitters must wake up the selector.
+            _selecting.set(true);
+
+            // Updates submitted after the queue has been drained and before
+            // _selecting was set did not wake up the selector, so do it here.
+            if (!_updates.isEmpty() && _selecting.compareAndSet(true, false))
             {
-                if (LOG.isDebugEnabled())
-                    LOG.debug("wakeup on updates {}", this);
-                selector.wakeup();
+                Selector selector = _selector;
+                if (selector != null)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("wakeup on updates {}", this);
+                    selector.wakeup();
+                }
             }
         }
 
@@ -463,7 +527,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} waiting with {} keys", selector, selector.keys().size());
+                    long selectBegin = System.nanoTime();
                     int selected = selector.select();
+                    updateBusyRatio(selectBegin, System.nanoTime());
                     if (selected == 0)
                     {
                         if (LOG.isDebugEnabled())
@@ -478,18 +544,13 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} woken up from select, {}/{}/{} selected", selector, selected, selector.selectedKeys().size(), selector.keys().size());
 
-                    int updates;
-                    synchronized (ManagedSelector.this)
-                    {
-                        // finished selecting
-                        _selecting = false;
-                        updates = _updates.size();
-                    }
+                    // Finished selecting.
+                    _selecting.set(false);
 
                     _keys = selector.selectedKeys();
                     _cursor = _keys.isEmpty() ? Collections.emptyIterator() : _keys.iterator();
                     if (LOG.isDebugEnabled())
-                        LOG.debug("Selector {} processing {} keys, {} updates", selector, _keys.size(), updates);
+                        LOG.debug("Selector {} processing {} keys, {} updates", selector, _keys.size(), _updates.size());
 
                     return true;
                 }
@@ -509,6 +570,21 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             return false;
         }
 
+        private void updateBusyRatio(long selectBegin, long selectEnd)
+        {
+            _selects.incrementAndGet();
+            long lastSelectEnd = _selectEnd;
+            _selectEnd = selectEnd;
+            if (lastSelectEnd == 0)
+                return;
+            long total = selectEnd - lastSelectEnd;
+            if (total <= 0)
+                return;
+            double busy = (double)(selectBegin - lastSelectEnd) / total;
+            // Only the producer thread writes the ratio.
+            _busyRatio += (busy - _busyRatio) * BUSY_RATIO_WEIGHT;
+        }
+
         private Runnable processSelected()
         {
             while (_cursor.hasNext())
@@ -715,6 +791,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         {
             this.channel = channel;
             this.attachment = attachment;
+            _pendingRegistrations.incrementAndGet();
             _selectorManager.onAccepting(channel);
         }
 
@@ -739,6 +816,10 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 _selectorManager.onAcceptFailed(channel, x);
                 LOG.debug(x);
             }
+            finally
+            {
+                _pendingRegistrations.decrementAndGet();
+            }
         }
 
         @Override
@@ -777,6 +858,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             this.channel = channel;
             this.attachment = attachment;
             this.timeout = ManagedSelector.this._selectorManager.getScheduler().schedule(this, ManagedSelector.this._selectorManager.getConnectTimeout(), TimeUnit.MILLISECONDS);
+            _pendingRegistrations.incrementAndGet();
         }
 
         @Override
@@ -790,6 +872,10 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             {
                 failed(x);
             }
+            finally
+            {
+                _pendingRegistrations.decrementAndGet();
+            }
         }
 
         @Override
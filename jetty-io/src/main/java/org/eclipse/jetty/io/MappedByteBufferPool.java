@@ -111,8 +111,12 @@ public class MappedByteBufferPool extends AbstractByteBufferPool
         ConcurrentMap<Integer, Bucket> buffers = bucketsFor(direct);
         Bucket bucket = buffers.get(b);
         if (bucket == null)
+        {
+            recordAcquire(false);
             return newByteBuffer(capacity, direct);
+        }
         ByteBuffer buffer = bucket.acquire();
+        recordAcquire(buffer != null);
         if (buffer == null)
             return newByteBuffer(capacity, direct);
         decrementMemory(buffer);
@@ -133,9 +137,11 @@ public class MappedByteBufferPool extends AbstractByteBufferPool
         boolean direct = buffer.isDirect();
         ConcurrentMap<Integer, Bucket> buckets = bucketsFor(direct);
         Bucket bucket = buckets.computeIfAbsent(b, _newBucket);
-        bucket.release(buffer);
-        incrementMemory(buffer);
-        releaseExcessMemory(direct, this::clearOldestBucket);
+        if (bucket.offer(buffer))
+        {
+            incrementMemory(buffer);
+            releaseExcessMemory(direct, this::clearOldestBucket);
+        }
     }
 
     @Override
@@ -169,7 +175,7 @@ public class MappedByteBufferPool extends AbstractByteBufferPool
             // The same bucket may be concurrently
             // removed, so we need this null guard.
             if (bucket != null)
-                bucket.clear(this::decrementMemory);
+                bucket.clear(this::evicted);
         }
     }
 
@@ -32,6 +32,7 @@ import java.util.Arrays;
 import java.util.EventListener;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntUnaryOperator;
 
@@ -51,6 +52,10 @@ import org.eclipse.jetty.util.thread.ThreadPoolBudget;
  * simplify the non-blocking primitives provided by the JVM via the {@code java.nio} package.</p>
  * <p>{@link SelectorManager} subclasses implement methods to return protocol-specific
  * {@link EndPoint}s and {@link Connection}s.</p>
+ * <p>New channels are assigned to a {@link ManagedSelector} according to the
+ * {@link #getSelectionPolicy() selection policy}; by default selectors are
+ * chosen round-robin, but the least loaded selector may be chosen instead,
+ * so that long-lived busy connections do not pin a single selector.</p>
  */
 
 @ManagedObject("Manager of the NIO Selectors")
@@ -66,6 +71,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final IntUnaryOperator _selectorIndexUpdate;
     private final List<AcceptListener> _acceptListeners = new ArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile SelectionPolicy _selectionPolicy = SelectionPolicy.ROUND_ROBIN;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -172,9 +178,75 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         return _selectors.length;
     }
 
+    /**
+     * @return the policy used to choose the selector of new channels
+     */
+    @ManagedAttribute("The policy used to choose the selector of new channels")
+    public SelectionPolicy getSelectionPolicy()
+    {
+        return _selectionPolicy;
+    }
+
+    /**
+     * @param selectionPolicy the policy used to choose the selector of new channels
+     */
+    public void setSelectionPolicy(SelectionPolicy selectionPolicy)
+    {
+        _selectionPolicy = selectionPolicy == null ? SelectionPolicy.ROUND_ROBIN : selectionPolicy;
+    }
+
     private ManagedSelector chooseSelector()
     {
-        return _selectors[_selectorIndex.updateAndGet(_selectorIndexUpdate)];
+        switch (_selectionPolicy)
+        {
+            case LEAST_KEYS:
+                return chooseLeastKeysSelector();
+            case LEAST_BUSY:
+                return chooseLeastBusySelector();
+            default:
+                return _selectors[_selectorIndex.updateAndGet(_selectorIndexUpdate)];
+        }
+    }
+
+    private ManagedSelector chooseLeastKeysSelector()
+    {
+        // Start from the round-robin index so that ties are spread.
+        int length = _selectors.length;
+        int start = _selectorIndex.updateAndGet(_selectorIndexUpdate);
+        ManagedSelector result = null;
+        int minLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < length; ++i)
+        {
+            ManagedSelector selector = _selectors[(start + i) % length];
+            int load = selector.getLoad();
+            if (load < minLoad)
+            {
+                result = selector;
+                minLoad = load;
+            }
+        }
+        return result;
+    }
+
+    private ManagedSelector chooseLeastBusySelector()
+    {
+        // The busy ratio is only updated once per select loop, so choosing
+        // the least busy of all selectors would send bursts of new channels
+        // to the same selector: choose the least busy of two random selectors.
+        int length = _selectors.length;
+        if (length == 1)
+            return _selectors[0];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i1 = random.nextInt(length);
+        int i2 = random.nextInt(length - 1);
+        if (i2 >= i1)
+            ++i2;
+        ManagedSelector selector1 = _selectors[i1];
+        ManagedSelector selector2 = _selectors[i2];
+        int compare = Double.compare(selector1.getBusyRatio(), selector2.getBusyRatio());
+        if (compare == 0)
+            compare = Integer.compare(selector1.getLoad(), selector2.getLoad());
+        return compare <= 0 ? selector1 : selector2;
     }
 
     /**
@@ -480,6 +552,30 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         }
     }
 
+    /**
+     * <p>The policy used to choose the {@link ManagedSelector} of new channels.</p>
+     */
+    public enum SelectionPolicy
+    {
+        /**
+         * Selectors are chosen in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The selector with the least registered and pending keys is chosen.
+         *
+         * @see ManagedSelector#getLoad()
+         */
+        LEAST_KEYS,
+        /**
+         * The selector whose select loop has recently been the least busy is chosen,
+         * between two selectors picked at random.
+         *
+         * @see ManagedSelector#getBusyRatio()
+         */
+        LEAST_BUSY
+    }
+
     /**
      * <p>A listener for accept events.</p>
      * <p>This listener is called from either the selector or acceptor thread
@@ -0,0 +1,327 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A ByteBuffer pool where small stripes of ByteBuffers are kept in front of
+ * shared queues.</p>
+ * <p>Each thread is mapped to a stripe by its thread id, so that each stripe is
+ * shared by the few threads whose ids map to it; a stripe holds, for each capacity, a short
+ * queue of at most {@code stripeQueueLength} ByteBuffers. Acquiring a ByteBuffer
+ * first looks in the stripe of the current thread, then in the shared queues;
+ * releasing a ByteBuffer puts it back in the stripe of the current thread if
+ * there is room, otherwise in the shared queues.</p>
+ * <p>In this way most acquire/release pairs performed by the same thread (or by
+ * the other threads mapped to the same stripe) do not touch the shared queues, reducing
+ * the contention on them when many cores churn through ByteBuffers.</p>
+ * <p>Like {@link ArrayByteBufferPool}, capacities are multiples of the capacity
+ * {@code factor}, and the heap and direct memory retained by the pool (both in
+ * stripes and in shared queues) can be bounded.</p>
+ */
+@ManagedObject
+public class StripedByteBufferPool extends AbstractByteBufferPool
+{
+    private final int _minCapacity;
+    private final int _length;
+    private final int _stripeQueueLength;
+    private final Stripe[] _stripes;
+    private final AtomicReferenceArray<Bucket> _direct;
+    private final AtomicReferenceArray<Bucket> _indirect;
+
+    /**
+     * Creates a new StripedByteBufferPool with a default configuration.
+     */
+    public StripedByteBufferPool()
+    {
+        this(-1, -1, -1, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool with the given configuration.
+     *
+     * @param stripes the number of stripes, or -1 for the number of available processors
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     */
+    public StripedByteBufferPool(int stripes, long maxHeapMemory, long maxDirectMemory)
+    {
+        this(-1, -1, -1, -1, stripes, -1, maxHeapMemory, maxDirectMemory);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length of the shared queues
+     * @param stripes the number of stripes, or -1 for the number of available processors
+     * @param stripeQueueLength the maximum ByteBuffer queue length of each stripe
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     */
+    public StripedByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, int stripes, int stripeQueueLength, long maxHeapMemory, long maxDirectMemory)
+    {
+        super(factor, maxQueueLength, maxHeapMemory, maxDirectMemory);
+
+        factor = getCapacityFactor();
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % factor) != 0 || factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        if (stripes <= 0)
+            stripes = ProcessorUtils.availableProcessors();
+        if (stripeQueueLength <= 0)
+            stripeQueueLength = 4;
+        _minCapacity = minCapacity;
+        _length = maxCapacity / factor;
+        _stripeQueueLength = stripeQueueLength;
+
+        _stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; ++i)
+        {
+            _stripes[i] = new Stripe(_length);
+        }
+        _direct = new AtomicReferenceArray<>(_length);
+        _indirect = new AtomicReferenceArray<>(_length);
+    }
+
+    @ManagedAttribute("The number of stripes")
+    public int getStripes()
+    {
+        return _stripes.length;
+    }
+
+    @ManagedAttribute("The maximum ByteBuffer queue length of each stripe")
+    public int getStripeQueueLength()
+    {
+        return _stripeQueueLength;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        if (size < _minCapacity)
+        {
+            recordAcquire(false);
+            return newByteBuffer(size, direct);
+        }
+        int b = bucketFor(size);
+        int capacity = (b + 1) * getCapacityFactor();
+        if (b >= _length)
+        {
+            recordAcquire(false);
+            return newByteBuffer(capacity, direct);
+        }
+
+        ByteBuffer buffer = poll(stripeFor(direct), b);
+        if (buffer == null)
+            buffer = poll(sharedFor(direct), b);
+        recordAcquire(buffer != null);
+        if (buffer == null)
+            return newByteBuffer(capacity, direct);
+        decrementMemory(buffer);
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+        int capacity = buffer.capacity();
+        if (capacity < _minCapacity)
+            return;
+        int b = bucketFor(capacity);
+        if (b >= _length)
+            return;
+
+        boolean direct = buffer.isDirect();
+        // The size() checks are racy, but stripes are accessed by
+        // few threads, and the worst case is that a queue
+        // temporarily holds a few more buffers than configured.
+        Bucket bucket = bucketFor(stripeFor(direct), b);
+        if (bucket.size() >= _stripeQueueLength)
+        {
+            bucket = bucketFor(sharedFor(direct), b);
+            int maxQueueLength = getMaxQueueLength();
+            if (maxQueueLength > 0 && bucket.size() >= maxQueueLength)
+                return;
+        }
+        bucket.release(buffer);
+        incrementMemory(buffer);
+        releaseExcessMemory(direct, this::clearOldestBucket);
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        for (Stripe stripe : _stripes)
+        {
+            clear(stripe._direct);
+            clear(stripe._heap);
+        }
+        clear(_direct);
+        clear(_indirect);
+    }
+
+    private void clear(AtomicReferenceArray<Bucket> buckets)
+    {
+        for (int i = 0; i < buckets.length(); ++i)
+        {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null)
+                bucket.clear();
+        }
+    }
+
+    private void clearOldestBucket(boolean direct)
+    {
+        Bucket oldest = oldestBucket(sharedFor(direct), null);
+        for (Stripe stripe : _stripes)
+        {
+            oldest = oldestBucket(stripe.bucketsFor(direct), oldest);
+        }
+        if (oldest != null)
+            oldest.clear(this::evicted);
+    }
+
+    private Bucket oldestBucket(AtomicReferenceArray<Bucket> buckets, Bucket oldest)
+    {
+        for (int i = 0; i < buckets.length(); ++i)
+        {
+            Bucket bucket = buckets.get(i);
+            if (bucket == null || bucket.isEmpty())
+                continue;
+            if (oldest == null || bucket.getLastUpdate() < oldest.getLastUpdate())
+                oldest = bucket;
+        }
+        return oldest;
+    }
+
+    private ByteBuffer poll(AtomicReferenceArray<Bucket> buckets, int b)
+    {
+        Bucket bucket = buckets.get(b);
+        return bucket == null ? null : bucket.acquire();
+    }
+
+    private Bucket bucketFor(AtomicReferenceArray<Bucket> buckets, int b)
+    {
+        Bucket bucket = buckets.get(b);
+        if (bucket == null)
+        {
+            // Queue lengths are enforced by this class, so the Bucket is unbounded.
+            Bucket newBucket = new Bucket(this, (b + 1) * getCapacityFactor(), -1);
+            if (buckets.compareAndSet(b, null, newBucket))
+                bucket = newBucket;
+            else
+                bucket = buckets.get(b);
+        }
+        return bucket;
+    }
+
+    private int bucketFor(int capacity)
+    {
+        return (capacity - 1) / getCapacityFactor();
+    }
+
+    private AtomicReferenceArray<Bucket> stripeFor(boolean direct)
+    {
+        int stripe = (int)(Thread.currentThread().getId() % _stripes.length);
+        return _stripes[stripe].bucketsFor(direct);
+    }
+
+    private AtomicReferenceArray<Bucket> sharedFor(boolean direct)
+    {
+        return direct ? _direct : _indirect;
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    @ManagedAttribute("The number of pooled heap ByteBuffers")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        long count = getByteBufferCount(sharedFor(direct));
+        for (Stripe stripe : _stripes)
+        {
+            count += getByteBufferCount(stripe.bucketsFor(direct));
+        }
+        return count;
+    }
+
+    private long getByteBufferCount(AtomicReferenceArray<Bucket> buckets)
+    {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); ++i)
+        {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null)
+                count += bucket.size();
+        }
+        return count;
+    }
+
+    // Package local for testing
+    AtomicReferenceArray<Bucket> sharedBucketsFor(boolean direct)
+    {
+        return sharedFor(direct);
+    }
+
+    // Package local for testing
+    AtomicReferenceArray<Bucket> stripeBucketsFor(boolean direct)
+    {
+        return stripeFor(direct);
+    }
+
+    private static class Stripe
+    {
+        private final AtomicReferenceArray<Bucket> _direct;
+        private final AtomicReferenceArray<Bucket> _heap;
+
+        private Stripe(int length)
+        {
+            _direct = new AtomicReferenceArray<>(length);
+            _heap = new AtomicReferenceArray<>(length);
+        }
+
+        private AtomicReferenceArray<Bucket> bucketsFor(boolean direct)
+        {
+            return direct ? _direct : _heap;
+        }
+    }
+}
@@ -20,7 +20,9 @@ package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.io.ByteBufferPool.Bucket;
 import org.junit.jupiter.api.Test;
@@ -30,6 +32,7 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -215,4 +218,131 @@ public class ArrayByteBufferPoolTest
         assertNull(buckets[0]);
         assertNull(buckets[2]);
     }
+
+    @Test
+    public void testMaxQueueMemory()
+    {
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1, -1, -1, 1);
+
+        ByteBuffer buffer1 = bufferPool.acquire(512, false);
+        ByteBuffer buffer2 = bufferPool.acquire(512, false);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+
+        // The second buffer is dropped, so it must not be accounted.
+        assertEquals(1024, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testHitMissCounts()
+    {
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool();
+
+        ByteBuffer buffer = bufferPool.acquire(1024, true);
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+
+        bufferPool.release(buffer);
+        bufferPool.acquire(1024, true);
+        assertEquals(1, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+
+        bufferPool.resetStatistics();
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(0, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void testBucketMemory()
+    {
+        int factor = 1024;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1, factor, -1);
+
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(4 * factor, true));
+
+        Map<Integer, Long> memory = bufferPool.getDirectBucketMemory();
+        assertEquals(2L * factor, (long)memory.get(factor));
+        assertEquals(4L * factor, (long)memory.get(4 * factor));
+        assertTrue(bufferPool.getHeapBucketMemory().isEmpty());
+    }
+
+    @Test
+    public void testMaxMemoryEvictLargestFirst()
+    {
+        int factor = 1024;
+        int maxMemory = 11 * 1024;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1, factor, -1, -1, -1, maxMemory);
+        bufferPool.setEvictLargestFirst(true);
+        Bucket[] buckets = bufferPool.bucketsFor(true);
+
+        // 1+1+2+4=8 / maxMemory=11.
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(2 * factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(4 * factor, true));
+
+        // Exceed the max memory, the largest buffer is evicted
+        // but the other buckets (even the oldest) are kept.
+        bufferPool.release(bufferPool.newByteBuffer(5 * factor, true));
+        assertThat(bufferPool.getMemory(true), lessThanOrEqualTo((long)maxMemory));
+        assertEquals(8 * factor, bufferPool.getMemory(true));
+        assertEquals(1, bufferPool.getEvictionCount());
+        assertNotNull(buckets[0]);
+        assertEquals(2, buckets[0].size());
+        assertEquals(1, buckets[1].size());
+        assertEquals(0, buckets[4].size());
+        assertEquals(1, buckets[3].size());
+    }
+
+    @Test
+    public void testMaxMemoryEvictIdleFirst() throws Exception
+    {
+        int factor = 1024;
+        int maxMemory = 8 * 1024;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1, factor, -1, -1, -1, maxMemory);
+        bufferPool.setEvictLargestFirst(true);
+        long idleTimeout = 500;
+        bufferPool.setIdleTimeout(idleTimeout);
+        Bucket[] buckets = bufferPool.bucketsFor(true);
+
+        // Wait for the small bucket to become idle.
+        bufferPool.release(bufferPool.newByteBuffer(2 * factor, true));
+        while (System.nanoTime() - buckets[1].getLastUpdate() < TimeUnit.MILLISECONDS.toNanos(idleTimeout))
+        {
+            Thread.sleep(10);
+        }
+
+        bufferPool.release(bufferPool.newByteBuffer(4 * factor, true));
+        bufferPool.release(bufferPool.newByteBuffer(3 * factor, true));
+
+        // The idle bucket is evicted before the larger, non idle, ones.
+        assertEquals(7 * factor, bufferPool.getMemory(true));
+        assertEquals(0, buckets[1].size());
+        assertEquals(1, buckets[2].size());
+        assertEquals(1, buckets[3].size());
+    }
+
+    @Test
+    public void testRejectedReleaseDoesNotUpdateBucket() throws Exception
+    {
+        int factor = 1024;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1, factor, -1, 1);
+        Bucket[] buckets = bufferPool.bucketsFor(true);
+
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        long lastUpdate = buckets[0].getLastUpdate();
+
+        // Wait for the clock to advance.
+        while (System.nanoTime() == lastUpdate)
+        {
+            Thread.sleep(1);
+        }
+
+        // The bucket is full, the buffer is rejected.
+        bufferPool.release(bufferPool.newByteBuffer(factor, true));
+        assertEquals(1, buckets[0].size());
+        assertEquals(lastUpdate, buckets[0].getLastUpdate());
+    }
 }
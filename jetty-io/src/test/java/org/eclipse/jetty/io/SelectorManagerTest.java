@@ -25,6 +25,9 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +40,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -163,4 +167,135 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testLeastKeysSelectionPolicy() throws Exception
+    {
+        int selectors = 4;
+        int connections = 3 * selectors;
+        CountDownLatch opened = new CountDownLatch(connections);
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, selectors)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint(channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                opened.countDown();
+                return new AbstractConnection(endpoint, executor)
+                {
+                    @Override
+                    public void onFillable()
+                    {
+                    }
+                };
+            }
+        };
+        selectorManager.setSelectionPolicy(SelectorManager.SelectionPolicy.LEAST_KEYS);
+        selectorManager.start();
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            for (int i = 0; i < connections; ++i)
+            {
+                clients.add(SocketChannel.open(server.getLocalAddress()));
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+            }
+            assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+            // Channels have been accepted in a burst, but each
+            // selector has been assigned the same number of them.
+            for (ManagedSelector selector : selectorManager.getBeans(ManagedSelector.class))
+            {
+                assertEquals(connections / selectors, selector.getKeyCount());
+                assertEquals(0, selector.getPendingRegistrations());
+            }
+        }
+        finally
+        {
+            for (SocketChannel client : clients)
+            {
+                client.close();
+            }
+            selectorManager.stop();
+        }
+    }
+
+    @Test
+    public void testUpdatesSubmittedWhileNotSelectingAreBatched() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        selectorManager.start();
+
+        try
+        {
+            ManagedSelector selector = selectorManager.getBean(ManagedSelector.class);
+            CountDownLatch updating = new CountDownLatch(1);
+            CountDownLatch proceed = new CountDownLatch(1);
+            selector.submit(s ->
+            {
+                updating.countDown();
+                try
+                {
+                    proceed.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            });
+            assertTrue(updating.await(5, TimeUnit.SECONDS));
+
+            // The selector is busy applying the update above, so the
+            // updates below must not wake it up, but must be applied in order.
+            long wakeups = selector.getWakeupCount();
+            long avoided = selector.getWakeupsAvoidedCount();
+            int count = 16;
+            List<Integer> applied = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(count);
+            for (int i = 0; i < count; ++i)
+            {
+                int index = i;
+                selector.submit(s ->
+                {
+                    applied.add(index);
+                    latch.countDown();
+                });
+            }
+            proceed.countDown();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(wakeups, selector.getWakeupCount());
+            assertEquals(avoided + count, selector.getWakeupsAvoidedCount());
+            for (int i = 0; i < count; ++i)
+            {
+                assertEquals(i, (int)applied.get(i));
+            }
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
 }
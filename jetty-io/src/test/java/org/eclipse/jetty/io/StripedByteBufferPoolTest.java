@@ -0,0 +1,180 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.io.ByteBufferPool.Bucket;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedByteBufferPoolTest
+{
+    @Test
+    public void testMinimumRelease()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000, -1, 2, -1, -1, -1);
+
+        for (int size = 1; size <= 9; size++)
+        {
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+
+            assertTrue(buffer.isDirect());
+            assertEquals(size, buffer.capacity());
+
+            bufferPool.release(buffer);
+
+            assertEquals(0, bufferPool.getDirectByteBufferCount());
+        }
+    }
+
+    @Test
+    public void testMaxRelease()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000, -1, 2, -1, -1, -1);
+
+        for (int size = 999; size <= 1001; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+
+            assertTrue(buffer.isDirect());
+            assertThat(buffer.capacity(), greaterThanOrEqualTo(size));
+
+            bufferPool.release(buffer);
+
+            assertEquals(size <= 1000, 1 == bufferPool.getDirectByteBufferCount());
+        }
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000, -1, 2, -1, -1, -1);
+
+        for (int size = 390; size <= 510; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer1 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer1);
+            ByteBuffer buffer2 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer2);
+            ByteBuffer buffer3 = bufferPool.acquire(size, false);
+            bufferPool.release(buffer3);
+
+            assertEquals(1, bufferPool.getDirectByteBufferCount());
+            assertEquals(1, bufferPool.getHeapByteBufferCount());
+
+            assertSame(buffer1, buffer2);
+            assertNotSame(buffer1, buffer3);
+        }
+    }
+
+    @Test
+    public void testStripeOverflowsToShared()
+    {
+        int stripeQueueLength = 2;
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, -1, -1, -1, 1, stripeQueueLength, -1, -1);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i)
+        {
+            buffers.add(bufferPool.acquire(512, false));
+        }
+        buffers.forEach(bufferPool::release);
+
+        AtomicReferenceArray<Bucket> stripe = bufferPool.stripeBucketsFor(false);
+        AtomicReferenceArray<Bucket> shared = bufferPool.sharedBucketsFor(false);
+        assertEquals(stripeQueueLength, stripe.get(0).size());
+        assertEquals(5 - stripeQueueLength, shared.get(0).size());
+
+        // Acquiring drains the stripe first, then the shared queue.
+        for (int i = 0; i < stripeQueueLength; ++i)
+        {
+            bufferPool.acquire(512, false);
+        }
+        assertTrue(stripe.get(0).isEmpty());
+        assertEquals(5 - stripeQueueLength, shared.get(0).size());
+        bufferPool.acquire(512, false);
+        assertEquals(5 - stripeQueueLength - 1, shared.get(0).size());
+    }
+
+    @Test
+    public void testMaxQueue()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, -1, -1, 2, 1, 1, -1, -1);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i)
+        {
+            buffers.add(bufferPool.acquire(512, false));
+        }
+        buffers.forEach(bufferPool::release);
+
+        // One in the stripe, two in the shared queue, the others are dropped.
+        assertEquals(3, bufferPool.getHeapByteBufferCount());
+        assertEquals(3 * 1024, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testMaxMemory()
+    {
+        int factor = 1024;
+        int maxMemory = 11 * 1024;
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, factor, -1, -1, 4, 1, -1, maxMemory);
+
+        for (int i = 1; i <= 8; ++i)
+        {
+            ByteBuffer buffer = bufferPool.newByteBuffer(i * factor, true);
+            bufferPool.release(buffer);
+            assertThat(bufferPool.getMemory(true), lessThanOrEqualTo((long)maxMemory));
+        }
+        assertThat(bufferPool.getDirectByteBufferCount(), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    public void testReleaseFromOtherThread() throws Exception
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, -1, -1, -1, 16, -1, -1, -1);
+
+        ByteBuffer buffer = bufferPool.acquire(1024, true);
+        CountDownLatch latch = new CountDownLatch(1);
+        new Thread(() ->
+        {
+            bufferPool.release(buffer);
+            latch.countDown();
+        }).start();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(1024, bufferPool.getDirectMemory());
+    }
+}
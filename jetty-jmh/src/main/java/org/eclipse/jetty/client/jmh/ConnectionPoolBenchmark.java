@@ -0,0 +1,185 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ConcurrentConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.RoundRobinConnectionPool;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the acquisition and release of connections from a connection pool
+ * shared by concurrent requesters, comparing {@link DuplexConnectionPool} and
+ * {@link RoundRobinConnectionPool} with the strategies of {@link ConcurrentConnectionPool}.</p>
+ * <p>The pool is filled before the measurement, so that only the acquire/release
+ * paths are measured, with more requesters than connections.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(16)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class ConnectionPoolBenchmark
+{
+    @Param({"duplex", "round-robin", "concurrent-first", "concurrent-random", "concurrent-round-robin", "concurrent-least-in-use"})
+    public static String POOL;
+
+    @Param({"8"})
+    public static int CONNECTIONS;
+
+    private ConnectionPool _pool;
+
+    @Setup
+    public void setupPool()
+    {
+        Destination destination = new MockDestination();
+        switch (POOL)
+        {
+            case "duplex":
+                _pool = new DuplexConnectionPool(destination, CONNECTIONS, Callback.NOOP);
+                break;
+            case "round-robin":
+                _pool = new RoundRobinConnectionPool(destination, CONNECTIONS, Callback.NOOP);
+                break;
+            case "concurrent-first":
+                _pool = new ConcurrentConnectionPool(destination, CONNECTIONS, Callback.NOOP, ConcurrentConnectionPool.Strategy.FIRST);
+                break;
+            case "concurrent-random":
+                _pool = new ConcurrentConnectionPool(destination, CONNECTIONS, Callback.NOOP, ConcurrentConnectionPool.Strategy.RANDOM);
+                break;
+            case "concurrent-round-robin":
+                _pool = new ConcurrentConnectionPool(destination, CONNECTIONS, Callback.NOOP, ConcurrentConnectionPool.Strategy.ROUND_ROBIN);
+                break;
+            case "concurrent-least-in-use":
+                _pool = new ConcurrentConnectionPool(destination, CONNECTIONS, Callback.NOOP, ConcurrentConnectionPool.Strategy.LEAST_IN_USE);
+                break;
+            default:
+                throw new IllegalStateException(POOL);
+        }
+
+        // The mock destination creates connections synchronously.
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < CONNECTIONS; ++i)
+        {
+            connections.add(_pool.acquire());
+        }
+        connections.forEach(_pool::release);
+    }
+
+    @TearDown
+    public void disposePool()
+    {
+        _pool.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public boolean testAcquireRelease()
+    {
+        Connection connection = _pool.acquire();
+        if (connection == null)
+            return false;
+        return _pool.release(connection);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ConnectionPoolBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+
+    private static class MockDestination implements Destination
+    {
+        @Override
+        public String getScheme()
+        {
+            return "http";
+        }
+
+        @Override
+        public String getHost()
+        {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort()
+        {
+            return 8080;
+        }
+
+        @Override
+        public void newConnection(Promise<Connection> promise)
+        {
+            promise.succeeded(new MockConnection());
+        }
+    }
+
+    private static class MockConnection implements Connection
+    {
+        private volatile boolean closed;
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ConcurrentBoundedQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the raw {@code offer()}/{@code poll()} cost of the queue implementations
+ * that {@code HttpClient.setConcurrentExchangeQueue(boolean)} selects between,
+ * the default {@link BlockingArrayQueue} and {@link ConcurrentBoundedQueue},
+ * with 64 threads sharing one queue.</p>
+ * <p>Each thread offers an element and then polls one. No {@code HttpClient},
+ * destination or exchange is involved, so the results only compare the queues
+ * under contention, not the end to end request throughput.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(64)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class ExchangeQueueBenchmark
+{
+    private static final Object EXCHANGE = new Object();
+
+    @Param({"BlockingArrayQueue", "ConcurrentBoundedQueue"})
+    public static String QUEUE;
+
+    private Queue<Object> _queue;
+
+    @Setup
+    public void setupQueue()
+    {
+        // HttpClient's default max requests queued per destination.
+        int maxQueued = 1024;
+        switch (QUEUE)
+        {
+            case "BlockingArrayQueue":
+                _queue = new BlockingArrayQueue<>(maxQueued);
+                break;
+            case "ConcurrentBoundedQueue":
+                _queue = new ConcurrentBoundedQueue<>(maxQueued);
+                break;
+            default:
+                throw new IllegalStateException(QUEUE);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public Object testOfferPoll()
+    {
+        _queue.offer(EXCHANGE);
+        return _queue.poll();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ExchangeQueueBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,204 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the throughput of {@link HttpGenerator} generating typical responses,
+ * driving the generator in the same way {@code HttpConnection} does.</p>
+ * <p>{@code PRE_ENCODED} compares plain {@link HttpField}s with {@link PreEncodedHttpField}s
+ * for the headers that are the same for every response.</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpGeneratorBenchmark
+{
+    @Param({"SMALL", "HEADERS", "CHUNKED"})
+    public static String RESPONSE;
+
+    @Param({"false", "true"})
+    public static boolean PRE_ENCODED;
+
+    private final ByteBuffer _header = BufferUtil.allocate(8192);
+    private final ByteBuffer _chunk = BufferUtil.allocate(HttpGenerator.CHUNK_SIZE);
+    private final ByteBuffer _trailer = BufferUtil.allocate(8192);
+    private HttpGenerator _generator;
+    private MetaData.Response _info;
+    private ByteBuffer[] _content;
+
+    @Setup
+    public void setupGenerator()
+    {
+        _generator = new HttpGenerator(true, false);
+
+        HttpFields fields = new HttpFields();
+        fields.add(field(HttpHeader.CONTENT_TYPE, "text/html; charset=utf-8"));
+        fields.add(field(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate"));
+        long contentLength;
+        switch (RESPONSE)
+        {
+            case "SMALL":
+                _content = new ByteBuffer[]{BufferUtil.toBuffer(content(512))};
+                contentLength = 512;
+                break;
+            case "HEADERS":
+                fields.add(field(HttpHeader.STRICT_TRANSPORT_SECURITY, "max-age=31536000; includeSubDomains"));
+                fields.add(field(HttpHeader.VARY, "Accept-Encoding"));
+                fields.add(field("X-Frame-Options", "DENY"));
+                fields.add(field("Content-Security-Policy", "default-src 'self'; img-src 'self' https://cdn.example.com; script-src 'self' 'unsafe-inline'"));
+                fields.add(field("X-Content-Type-Options", "nosniff"));
+                fields.add(field("X-XSS-Protection", "1; mode=block"));
+                fields.add(new HttpField(HttpHeader.ETAG, "W/\"5d25a038-3a9f\""));
+                fields.add(new HttpField(HttpHeader.LAST_MODIFIED, "Wed, 10 Jul 2019 08:21:12 GMT"));
+                fields.add(new HttpField(HttpHeader.DATE, "Thu, 11 Jul 2019 13:37:00 GMT"));
+                fields.add(new HttpField(HttpHeader.SET_COOKIE, "session=7a1c9f0e2b6d4c8fa3e5b7d9c1f3a5e7; Path=/; Secure; HttpOnly"));
+                _content = new ByteBuffer[]{BufferUtil.toBuffer(content(512))};
+                contentLength = 512;
+                break;
+            case "CHUNKED":
+                _content = new ByteBuffer[]
+                    {
+                        BufferUtil.toBuffer(content(4096)),
+                        BufferUtil.toBuffer(content(4096)),
+                        BufferUtil.toBuffer(content(1024)),
+                        BufferUtil.EMPTY_BUFFER
+                    };
+                contentLength = -1;
+                break;
+            default:
+                throw new IllegalStateException("Unknown response " + RESPONSE);
+        }
+        _info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, fields, contentLength);
+    }
+
+    private static HttpField field(HttpHeader header, String value)
+    {
+        return PRE_ENCODED ? new PreEncodedHttpField(header, value) : new HttpField(header, value);
+    }
+
+    private static HttpField field(String name, String value)
+    {
+        return PRE_ENCODED ? new PreEncodedHttpField(name, value) : new HttpField(name, value);
+    }
+
+    private static String content(int length)
+    {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; ++i)
+        {
+            builder.append((char)('a' + i % 26));
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testGenerate(Blackhole blackhole) throws IOException
+    {
+        for (int i = 0; i < _content.length; ++i)
+        {
+            generate(blackhole, _content[i].slice(), i == _content.length - 1);
+        }
+        _generator.reset();
+    }
+
+    private void generate(Blackhole blackhole, ByteBuffer content, boolean last) throws IOException
+    {
+        ByteBuffer header = null;
+        ByteBuffer chunk = null;
+        while (true)
+        {
+            HttpGenerator.Result result = _generator.generateResponse(_info, false, header, chunk, content, last);
+            switch (result)
+            {
+                case NEED_HEADER:
+                    header = _header;
+                    BufferUtil.clear(header);
+                    break;
+                case NEED_CHUNK:
+                    chunk = _chunk;
+                    BufferUtil.clear(chunk);
+                    break;
+                case NEED_CHUNK_TRAILER:
+                    chunk = _trailer;
+                    BufferUtil.clear(chunk);
+                    break;
+                case FLUSH:
+                    // Simulate the write of the gathered buffers.
+                    blackhole.consume(BufferUtil.length(header) + BufferUtil.length(chunk) + BufferUtil.length(content));
+                    BufferUtil.clear(header);
+                    BufferUtil.clear(chunk);
+                    if (content != null)
+                        content.position(content.limit());
+                    break;
+                case CONTINUE:
+                case SHUTDOWN_OUT:
+                    break;
+                case DONE:
+                    return;
+                default:
+                    throw new IllegalStateException("generateResponse=" + result);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpGeneratorBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,121 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.http2.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackException;
+import org.eclipse.jetty.http2.hpack.HpackInternTable;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the decoding of the HPACK header block of a typical request by
+ * the {@link HpackDecoder} of a connection.</p>
+ * <p>The header block is encoded without the dynamic table, as done by clients
+ * that do not index header fields, so that every request decodes all the
+ * literal names and values. {@code INTERN} compares creating new Strings for
+ * every literal with resolving them via a {@link HpackInternTable}; run with
+ * the {@link GCProfiler} to compare the allocations per request
+ * ({@code gc.alloc.rate.norm}).</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class HpackDecoderBenchmark
+{
+    @Param({"false", "true"})
+    public static boolean INTERN;
+
+    private HpackDecoder _decoder;
+    private ByteBuffer _headerBlock;
+
+    @Setup
+    public void setupDecoder()
+    {
+        HttpFields fields = new HttpFields();
+        fields.add(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:68.0) Gecko/20100101 Firefox/68.0");
+        fields.add(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        fields.add(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        fields.add(HttpHeader.ACCEPT_ENCODING, "gzip, deflate");
+        fields.add(HttpHeader.CACHE_CONTROL, "no-cache");
+        fields.add("upgrade-insecure-requests", "1");
+        fields.add("x-requested-with", "XMLHttpRequest");
+        MetaData.Request request = new MetaData.Request("GET", HttpScheme.HTTPS, new HostPortHttpField("www.example.com"),
+            "/api/v1/items?page=2", HttpVersion.HTTP_2, fields);
+
+        // A remote dynamic table of size 0 encodes all fields as literals.
+        HpackEncoder encoder = new HpackEncoder(4096, 0);
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, request);
+        BufferUtil.flipToFlush(buffer, pos);
+        _headerBlock = buffer;
+
+        _decoder = new HpackDecoder(4096, 8192);
+        if (!INTERN)
+            _decoder.setInternTable(null);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MetaData testDecode() throws HpackException.SessionException, HpackException.StreamException
+    {
+        return _decoder.decode(_headerBlock.slice());
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackDecoderBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
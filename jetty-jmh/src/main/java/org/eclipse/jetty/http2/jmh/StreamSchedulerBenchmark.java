@@ -0,0 +1,248 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.RoundRobinStreamScheduler;
+import org.eclipse.jetty.http2.SimpleFlowControlStrategy;
+import org.eclipse.jetty.http2.WeightedFairStreamScheduler;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.server.HTTP2ServerSession;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the time to complete a small, high priority response
+ * multiplexed on the same HTTP/2 session with bulk responses.</p>
+ * <p>Each invocation queues {@code BULK} large responses followed by a small
+ * response (like a CSS file requested after images), then the benchmark drains
+ * the connection output until the small response is completely written.
+ * The {@code bytesAhead} counter reports the average number of bytes written
+ * before the small response completed.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class StreamSchedulerBenchmark
+{
+    private static final int BULK_LENGTH = 128 * 1024;
+    private static final int SMALL_LENGTH = 2 * 1024;
+
+    @Param({"FIFO", "ROUND_ROBIN", "WEIGHTED_FAIR"})
+    public static String SCHEDULER;
+
+    @Param({"4"})
+    public static int BULK;
+
+    private final ByteBuffer bulkContent = ByteBuffer.allocate(BULK_LENGTH);
+    private final ByteBuffer smallContent = ByteBuffer.allocate(SMALL_LENGTH);
+    private ScheduledExecutorScheduler scheduler;
+    private ByteArrayEndPoint endPoint;
+    private HTTP2ServerSession session;
+    private int streamId = 1;
+    private volatile boolean smallWritten;
+    private int bulkWritten;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters
+    {
+        public long bytesAhead;
+        public long responses;
+
+        public double bytesAheadPerResponse()
+        {
+            return responses == 0 ? 0 : (double)bytesAhead / responses;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupSession() throws Exception
+    {
+        scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        // A small output buffer makes writes pending,
+        // so that the responses are queued together.
+        endPoint = new ByteArrayEndPoint(scheduler, 60000, (byte[])null, 16 * 1024);
+        Generator generator = new Generator(new MappedByteBufferPool());
+        session = new HTTP2ServerSession(scheduler, endPoint, generator, new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                boolean small = frame.getPriority() != null;
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, new HttpFields());
+                ByteBuffer content = small ? smallContent.slice() : bulkContent.slice();
+                Callback dataCallback = new Callback()
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        if (small)
+                            smallWritten = true;
+                        else
+                            ++bulkWritten;
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        throw new IllegalStateException(x);
+                    }
+                };
+                // Only one write at a time is allowed per stream,
+                // so the content is sent after the headers are written.
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() ->
+                    stream.data(new DataFrame(stream.getId(), content, true), dataCallback), dataCallback::failed));
+                return null;
+            }
+        }, new SimpleFlowControlStrategy());
+        switch (SCHEDULER)
+        {
+            case "FIFO":
+                break;
+            case "ROUND_ROBIN":
+                session.setStreamScheduler(new RoundRobinStreamScheduler());
+                break;
+            case "WEIGHTED_FAIR":
+                session.setStreamScheduler(new WeightedFairStreamScheduler());
+                break;
+            default:
+                throw new IllegalStateException("Unknown scheduler " + SCHEDULER);
+        }
+
+        // Open the flow control windows, as a client that reads fast would do.
+        Map<Integer, Integer> settings = new HashMap<>();
+        settings.put(SettingsFrame.INITIAL_WINDOW_SIZE, Integer.MAX_VALUE);
+        session.onSettings(new SettingsFrame(settings, false));
+        session.onWindowUpdate(new WindowUpdateFrame(0, Integer.MAX_VALUE - 65535));
+        drain();
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeSession() throws Exception
+    {
+        endPoint.close();
+        scheduler.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void queueResponses()
+    {
+        smallWritten = false;
+        bulkWritten = 0;
+        for (int i = 0; i < BULK; ++i)
+        {
+            request(null);
+        }
+        request(new PriorityFrame(streamId, 0, 256, false));
+    }
+
+    @TearDown(Level.Invocation)
+    public void drainBulkResponses()
+    {
+        while (bulkWritten < BULK)
+        {
+            drain();
+        }
+        // Give back the session send window consumed by the responses.
+        session.onWindowUpdate(new WindowUpdateFrame(0, BULK * BULK_LENGTH + SMALL_LENGTH));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long testTimeToSmallResponse(Counters counters)
+    {
+        long bytes = 0;
+        while (!smallWritten)
+        {
+            bytes += drain();
+        }
+        counters.bytesAhead += bytes;
+        ++counters.responses;
+        return bytes;
+    }
+
+    private void request(PriorityFrame priority)
+    {
+        MetaData.Request request = new MetaData.Request("GET", new HttpURI("http://localhost/" + streamId), HttpVersion.HTTP_2, new HttpFields());
+        session.onHeaders(new HeadersFrame(streamId, request, priority, true));
+        streamId += 2;
+    }
+
+    private int drain()
+    {
+        // Writes complete synchronously when the output is taken,
+        // so no output means that the responses are stalled.
+        int bytes = endPoint.takeOutput().remaining();
+        if (bytes == 0)
+            throw new IllegalStateException("Stalled " + session);
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(StreamSchedulerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
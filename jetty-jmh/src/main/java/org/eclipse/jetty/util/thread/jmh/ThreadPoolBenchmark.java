@@ -51,10 +51,10 @@ public class ThreadPoolBenchmark
 {
     public enum Type
     {
-        QTP, ETP, LQTP, LETP, AQTP, AETP
+        QTP, HQTP, ETP, LQTP, LETP, AQTP, AETP
     }
 
-    @Param({"QTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
+    @Param({"QTP", "HQTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
     Type type;
 
     @Param({"200"})
@@ -75,6 +75,16 @@ public class ThreadPoolBenchmark
                 break;
             }
 
+            case HQTP:
+            {
+                // Jobs are handed off directly to the idle threads.
+                QueuedThreadPool qtp = new QueuedThreadPool(size, size, new BlockingArrayQueue<>(32768, 32768));
+                qtp.setReservedThreads(0);
+                qtp.setIdleThreadHandoff(true);
+                pool = qtp;
+                break;
+            }
+
             case ETP:
                 pool = new ExecutorThreadPool(size, size, new BlockingArrayQueue<>(32768, 32768));
                 break;
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.component.LifeCycle;
@@ -55,6 +56,7 @@ public class EWYKBenchmark
     static TestServer server;
     static ReservedThreadExecutor reserved;
     static Path directory;
+    static final AtomicInteger ids = new AtomicInteger();
 
     @Param({"PC", "PEC", "EWYK"})
     public static String strategyName;
@@ -65,6 +67,9 @@ public class EWYKBenchmark
     @Param({"true", "false"})
     public static boolean nonBlocking;
 
+    @Param({"1", "4"})
+    public static int reservedThreadShards;
+
     @Setup(Level.Trial)
     public static void setupServer() throws Exception
     {
@@ -77,7 +82,7 @@ public class EWYKBenchmark
             File.createTempFile("ewyk_benchmark", i + ".txt", directory.toFile());
         }
 
-        server = new TestServer(directory.toFile());
+        server = new TestServer(directory.toFile(), reservedThreadShards);
         server.start();
         reserved = new ReservedThreadExecutor(server, 20);
         reserved.start();
@@ -116,7 +121,8 @@ public class EWYKBenchmark
                     break;
 
                 case "EWYK":
-                    strategy = new EatWhatYouKill(connection, server);
+                    // Like a selector, each connection uses the reserved threads of its shard.
+                    strategy = new EatWhatYouKill(connection, server, server.getShard(ids.getAndIncrement()));
                     break;
 
                 default:
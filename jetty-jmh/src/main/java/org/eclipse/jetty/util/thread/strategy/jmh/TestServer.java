@@ -36,8 +36,14 @@ public class TestServer implements Executor, TryExecutor
     private final File _docroot;
 
     TestServer(File docroot)
+    {
+        this(docroot, 1);
+    }
+
+    TestServer(File docroot, int reservedThreadShards)
     {
         _threadpool.setReservedThreads(20);
+        _threadpool.setReservedThreadShards(reservedThreadShards);
         _docroot = docroot;
     }
 
@@ -77,6 +83,12 @@ public class TestServer implements Executor, TryExecutor
         return _threadpool.tryExecute(task);
     }
 
+    @Override
+    public TryExecutor getShard(int key)
+    {
+        return _threadpool.getShard(key);
+    }
+
     public void start() throws Exception
     {
         _threadpool.start();
@@ -0,0 +1,109 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.common.io.payload.DeMaskProcessor;
+import org.eclipse.jetty.websocket.common.util.MaskUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the unmasking of WebSocket payloads, comparing the long-wide
+ * unmasking of {@link MaskUtil} with XORing the payload byte by byte, for
+ * small and large frames in heap and direct buffers.</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class MaskBenchmark
+{
+    @Param({"125", "4096", "1048576"})
+    public static int SIZE;
+
+    @Param({"false", "true"})
+    public static boolean DIRECT;
+
+    private final byte[] _mask = new byte[4];
+    private final DeMaskProcessor _processor = new DeMaskProcessor();
+    private ByteBuffer _payload;
+
+    @Setup
+    public void setupPayload()
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        random.nextBytes(_mask);
+        byte[] bytes = new byte[SIZE];
+        random.nextBytes(bytes);
+        _payload = DIRECT ? ByteBuffer.allocateDirect(SIZE) : ByteBuffer.allocate(SIZE);
+        _payload.put(bytes).flip();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testDeMaskProcessor()
+    {
+        _processor.reset(_mask);
+        _processor.process(_payload);
+        return _payload;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testByteByByte()
+    {
+        ByteBuffer payload = _payload;
+        byte[] mask = _mask;
+        int end = payload.limit();
+        for (int i = payload.position(); i < end; ++i)
+        {
+            payload.put(i, (byte)(payload.get(i) ^ mask[i & 3]));
+        }
+        return payload;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(MaskBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
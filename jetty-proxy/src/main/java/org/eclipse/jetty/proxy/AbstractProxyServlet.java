@@ -18,9 +18,11 @@
 
 package org.eclipse.jetty.proxy;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -33,6 +35,7 @@ import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -48,6 +51,7 @@ import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.util.HttpCookieStore;
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.StringUtil;
@@ -70,6 +74,8 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
  * <li>viaHost - the name to use in the Via header: Via: http/1.1 &lt;viaHost&gt;</li>
  * <li>whiteList - comma-separated list of allowed proxy hosts</li>
  * <li>blackList - comma-separated list of forbidden proxy hosts</li>
+ * <li>zeroCopy - the response content received from the server is written
+ * to the client without being copied, see {@link #setZeroCopy(boolean)}</li>
  * </ul>
  * <p>In addition, see {@link #createHttpClient()} for init parameters
  * used to configure the {@link HttpClient} instance.</p>
@@ -107,6 +113,7 @@ public abstract class AbstractProxyServlet extends HttpServlet
     private boolean _preserveHost;
     private String _hostHeader;
     private String _viaHost;
+    private boolean _zeroCopy;
     private HttpClient _client;
     private long _timeout;
 
@@ -125,6 +132,8 @@ public abstract class AbstractProxyServlet extends HttpServlet
         if (_viaHost == null)
             _viaHost = viaHost();
 
+        _zeroCopy = Boolean.parseBoolean(config.getInitParameter("zeroCopy"));
+
         try
         {
             _client = createHttpClient();
@@ -182,6 +191,29 @@ public abstract class AbstractProxyServlet extends HttpServlet
         }
     }
 
+    public boolean isZeroCopy()
+    {
+        return _zeroCopy;
+    }
+
+    /**
+     * <p>Sets whether the response content received from the server is written
+     * to the client without being copied.</p>
+     * <p>When enabled, and the servlet output stream is Jetty's {@link HttpOutput},
+     * the pooled buffers of the {@link HttpClient} are passed as they are to the
+     * servlet output stream, rather than being copied to a new byte array, and
+     * are released only when the write is complete.
+     * Applications that override the byte array variants of the methods that
+     * handle the response content should not enable this mode, since they are
+     * not invoked when it is enabled.</p>
+     *
+     * @param zeroCopy whether the response content is written without being copied
+     */
+    public void setZeroCopy(boolean zeroCopy)
+    {
+        _zeroCopy = zeroCopy;
+    }
+
     public long getTimeout()
     {
         return _timeout;
@@ -583,6 +615,35 @@ public abstract class AbstractProxyServlet extends HttpServlet
             : HttpStatus.INTERNAL_SERVER_ERROR_500;
     }
 
+    /**
+     * <p>Writes the given response content to the given servlet output stream.</p>
+     * <p>If {@link #isZeroCopy() zeroCopy} is enabled and the output stream is Jetty's
+     * {@link HttpOutput}, the content buffer is written without being copied, so it must
+     * not be reused until the write is complete; for asynchronous writes, this is when
+     * {@link ServletOutputStream#isReady()} returns {@code true} again.</p>
+     *
+     * @param output the servlet output stream to write to
+     * @param content the content to write
+     * @throws IOException if the write fails
+     */
+    protected void writeResponseContent(ServletOutputStream output, ByteBuffer content) throws IOException
+    {
+        if (isZeroCopy() && output instanceof HttpOutput)
+        {
+            ((HttpOutput)output).write(content);
+        }
+        else if (content.hasArray())
+        {
+            output.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+        }
+        else
+        {
+            byte[] buffer = new byte[content.remaining()];
+            content.get(buffer);
+            output.write(buffer);
+        }
+    }
+
     protected void onServerResponseHeaders(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse)
     {
         for (HttpField field : serverResponse.getHeaders())
@@ -20,7 +20,6 @@ package org.eclipse.jetty.proxy;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -201,25 +200,9 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
 
     void writeProxyResponseContent(ServletOutputStream output, ByteBuffer content) throws IOException
     {
-        write(output, content);
-    }
-
-    private static void write(OutputStream output, ByteBuffer content) throws IOException
-    {
-        int length = content.remaining();
-        int offset = 0;
-        byte[] buffer;
-        if (content.hasArray())
-        {
-            offset = content.arrayOffset();
-            buffer = content.array();
-        }
-        else
-        {
-            buffer = new byte[length];
-            content.get(buffer);
-        }
-        output.write(buffer, offset, length);
+        // The content is written without being copied if zeroCopy is enabled,
+        // and its callback is succeeded only when the write is complete.
+        writeResponseContent(output, content);
     }
 
     private void cleanup(HttpServletRequest clientRequest)
@@ -830,7 +813,7 @@ public class AsyncMiddleManServlet extends AbstractProxyServlet
         {
             for (ByteBuffer buffer : buffers)
             {
-                write(gzipOut, buffer);
+                BufferUtil.writeTo(buffer, gzipOut);
             }
             if (finished)
                 gzipOut.close();
@@ -21,6 +21,7 @@ package org.eclipse.jetty.proxy;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
+import java.util.function.Consumer;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -65,6 +66,17 @@ public class AsyncProxyServlet extends ProxyServlet
 
     @Override
     protected void onResponseContent(HttpServletRequest request, HttpServletResponse response, Response proxyResponse, byte[] buffer, int offset, int length, Callback callback)
+    {
+        writeDownstream(request, response, proxyResponse, length, writeListener -> writeListener.data(buffer, offset, length, callback), callback);
+    }
+
+    @Override
+    protected void onResponseContent(HttpServletRequest request, HttpServletResponse response, Response proxyResponse, ByteBuffer content, Callback callback)
+    {
+        writeDownstream(request, response, proxyResponse, content.remaining(), writeListener -> writeListener.data(content, callback), callback);
+    }
+
+    private void writeDownstream(HttpServletRequest request, HttpServletResponse response, Response proxyResponse, int length, Consumer<StreamWriter> data, Callback callback)
     {
         try
         {
@@ -79,14 +91,14 @@ public class AsyncProxyServlet extends ProxyServlet
                 // Set the data to write before calling setWriteListener(), because
                 // setWriteListener() may trigger the call to onWritePossible() on
                 // a different thread and we would have a race.
-                writeListener.data(buffer, offset, length, callback);
+                data.accept(writeListener);
 
                 // Setting the WriteListener triggers an invocation to onWritePossible().
                 response.getOutputStream().setWriteListener(writeListener);
             }
             else
             {
-                writeListener.data(buffer, offset, length, callback);
+                data.accept(writeListener);
                 writeListener.onWritePossible();
             }
         }
@@ -211,6 +223,7 @@ public class AsyncProxyServlet extends ProxyServlet
         private final Response proxyResponse;
         private WriteState state;
         private byte[] buffer;
+        private ByteBuffer content;
         private int offset;
         private int length;
         private Callback callback;
@@ -233,6 +246,23 @@ public class AsyncProxyServlet extends ProxyServlet
             this.callback = callback;
         }
 
+        /**
+         * <p>Sets the content to write without copying it, see {@link AbstractProxyServlet#isZeroCopy()}.</p>
+         * <p>The content buffer is not reused until the callback is completed.</p>
+         *
+         * @param content the content to write
+         * @param callback the callback to complete when the content has been written
+         */
+        protected void data(ByteBuffer content, Callback callback)
+        {
+            if (state != WriteState.IDLE)
+                throw new WritePendingException();
+            this.state = WriteState.READY;
+            this.content = content;
+            this.length = content.remaining();
+            this.callback = callback;
+        }
+
         @Override
         public void onWritePossible() throws IOException
         {
@@ -243,7 +273,10 @@ public class AsyncProxyServlet extends ProxyServlet
                 // There is data to write.
                 if (_log.isDebugEnabled())
                     _log.debug("{} asynchronous write start of {} bytes on {}", requestId, length, output);
-                output.write(buffer, offset, length);
+                if (content != null)
+                    writeResponseContent(output, content);
+                else
+                    output.write(buffer, offset, length);
                 state = WriteState.PENDING;
                 if (output.isReady())
                 {
@@ -273,6 +306,7 @@ public class AsyncProxyServlet extends ProxyServlet
         protected void complete()
         {
             buffer = null;
+            content = null;
             offset = 0;
             length = 0;
             Callback c = callback;
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.ServletException;
@@ -31,9 +32,23 @@ import javax.servlet.UnavailableException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 
+import org.eclipse.jetty.client.BalancedDestination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.util.URIUtil;
 
+/**
+ * <p>A reverse proxy servlet that balances requests across the backends
+ * configured by the {@code balancerMember.<name>.proxyTo} init-parameters.</p>
+ * <p>By default backends are selected in round-robin. If the
+ * {@code balancingStrategy} init-parameter is set to the name of a
+ * {@link BalancedDestination.Strategy}, the backends are grouped in a
+ * {@link BalancedDestination} of the {@link HttpClient}, which routes each
+ * request to a backend depending on its latency or outstanding requests,
+ * and ejects failing backends; in this case the {@code proxyTo} URIs must
+ * not have a path.</p>
+ */
 public class BalancerServlet extends ProxyServlet
 {
     private static final String BALANCER_MEMBER_PREFIX = "balancerMember.";
@@ -66,6 +81,7 @@ public class BalancerServlet extends ProxyServlet
     private final AtomicLong counter = new AtomicLong();
     private boolean _stickySessions;
     private boolean _proxyPassReverse;
+    private BalancedDestination _balancedDestination;
 
     @Override
     public void init() throws ServletException
@@ -75,6 +91,15 @@ public class BalancerServlet extends ProxyServlet
         initStickySessions();
         initBalancers();
         initProxyPassReverse();
+        initBalancedDestination();
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (_balancedDestination != null)
+            getHttpClient().removeBalancedDestination(_balancedDestination);
+        super.destroy();
     }
 
     private void validateConfig() throws ServletException
@@ -112,6 +137,42 @@ public class BalancerServlet extends ProxyServlet
         _proxyPassReverse = Boolean.parseBoolean(getServletConfig().getInitParameter("proxyPassReverse"));
     }
 
+    private void initBalancedDestination() throws ServletException
+    {
+        String value = getServletConfig().getInitParameter("balancingStrategy");
+        if (value == null || value.trim().length() == 0)
+            return;
+
+        BalancedDestination.Strategy strategy;
+        try
+        {
+            strategy = BalancedDestination.Strategy.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+        catch (IllegalArgumentException x)
+        {
+            throw new UnavailableException("Invalid balancingStrategy " + value);
+        }
+
+        if (_balancerMembers.isEmpty())
+            throw new UnavailableException("balancingStrategy requires balancer members");
+
+        List<Origin> origins = new ArrayList<>();
+        for (BalancerMember balancerMember : _balancerMembers)
+        {
+            URI backendURI = balancerMember.getBackendURI();
+            String path = backendURI.getRawPath();
+            if (path != null && path.length() > 0 && !"/".equals(path))
+                throw new UnavailableException("balancingStrategy does not support paths in " + balancerMember);
+            String scheme = backendURI.getScheme().toLowerCase(Locale.ENGLISH);
+            origins.add(new Origin(scheme, backendURI.getHost(), HttpClient.normalizePort(scheme, backendURI.getPort())));
+        }
+
+        // The logical origin only identifies this servlet's destination, it is never connected to.
+        String scheme = origins.get(0).getScheme();
+        String host = "balancer-" + Integer.toHexString(hashCode());
+        _balancedDestination = getHttpClient().newBalancedDestination(scheme, host, -1, origins, strategy);
+    }
+
     private Set<String> getBalancerNames() throws ServletException
     {
         Set<String> names = new HashSet<>();
@@ -132,28 +193,34 @@ public class BalancerServlet extends ProxyServlet
     @Override
     protected String rewriteTarget(HttpServletRequest request)
     {
-        BalancerMember balancerMember = selectBalancerMember(request);
-        if (_log.isDebugEnabled())
-            _log.debug("Selected {}", balancerMember);
         String path = request.getRequestURI();
         String query = request.getQueryString();
         if (query != null)
             path += "?" + query;
+
+        BalancerMember balancerMember = _stickySessions ? selectStickyBalancerMember(request) : null;
+        if (balancerMember == null && _balancedDestination != null)
+        {
+            // Let the balanced destination select the backend.
+            StringBuilder target = URIUtil.newURIBuilder(_balancedDestination.getScheme(), _balancedDestination.getHost(), _balancedDestination.getPort());
+            return URI.create(target + "/" + path).normalize().toString();
+        }
+
+        if (balancerMember == null)
+            balancerMember = selectBalancerMember(request);
+        if (_log.isDebugEnabled())
+            _log.debug("Selected {}", balancerMember);
         return URI.create(balancerMember.getProxyTo() + "/" + path).normalize().toString();
     }
 
+    private BalancerMember selectStickyBalancerMember(HttpServletRequest request)
+    {
+        String name = getBalancerMemberNameFromSessionId(request);
+        return name == null ? null : findBalancerMemberByName(name);
+    }
+
     private BalancerMember selectBalancerMember(HttpServletRequest request)
     {
-        if (_stickySessions)
-        {
-            String name = getBalancerMemberNameFromSessionId(request);
-            if (name != null)
-            {
-                BalancerMember balancerMember = findBalancerMemberByName(name);
-                if (balancerMember != null)
-                    return balancerMember;
-            }
-        }
         int index = (int)(counter.getAndIncrement() % _balancerMembers.size());
         return _balancerMembers.get(index);
     }
@@ -144,6 +144,33 @@ public class ProxyServlet extends AbstractProxyServlet
         }
     }
 
+    /**
+     * <p>Writes the response content received from the server to the client,
+     * when {@link #isZeroCopy() zeroCopy} is enabled.</p>
+     * <p>The {@code content} buffer is not copied, and it is released when the
+     * {@code callback} is completed.</p>
+     *
+     * @param request the client request
+     * @param response the client response
+     * @param proxyResponse the server response
+     * @param content the response content received from the server
+     * @param callback the callback to complete when the content has been written
+     */
+    protected void onResponseContent(HttpServletRequest request, HttpServletResponse response, Response proxyResponse, ByteBuffer content, Callback callback)
+    {
+        try
+        {
+            if (_log.isDebugEnabled())
+                _log.debug("{} proxying content to downstream: {} bytes", getRequestId(request), content.remaining());
+            writeResponseContent(response.getOutputStream(), content);
+            callback.succeeded();
+        }
+        catch (Throwable x)
+        {
+            callback.failed(x);
+        }
+    }
+
     @Override
     protected void onContinue(HttpServletRequest clientRequest, Request proxyRequest)
     {
@@ -202,6 +229,22 @@ public class ProxyServlet extends AbstractProxyServlet
         @Override
         public void onContent(final Response proxyResponse, ByteBuffer content, final Callback callback)
         {
+            Callback contentCallback = new Callback.Nested(callback)
+            {
+                @Override
+                public void failed(Throwable x)
+                {
+                    super.failed(x);
+                    proxyResponse.abort(x);
+                }
+            };
+
+            if (isZeroCopy())
+            {
+                onResponseContent(request, response, proxyResponse, content, contentCallback);
+                return;
+            }
+
             byte[] buffer;
             int offset;
             int length = content.remaining();
@@ -217,15 +260,7 @@ public class ProxyServlet extends AbstractProxyServlet
                 offset = 0;
             }
 
-            onResponseContent(request, response, proxyResponse, buffer, offset, length, new Callback.Nested(callback)
-            {
-                @Override
-                public void failed(Throwable x)
-                {
-                    super.failed(x);
-                    proxyResponse.abort(x);
-                }
-            });
+            onResponseContent(request, response, proxyResponse, buffer, offset, length, contentCallback);
         }
 
         @Override
@@ -54,6 +54,8 @@ import org.eclipse.jetty.client.api.ContentProvider;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
 import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.client.util.DeferredContentProvider;
 import org.eclipse.jetty.client.util.FutureResponseListener;
@@ -1496,6 +1498,60 @@ public class AsyncMiddleManServletTest
         assertTrue(response.getHeaders().containsKey(PROXIED_HEADER));
     }
 
+    @Test
+    public void testZeroCopyWithIdentityContentTransformerAndSlowReader() throws Exception
+    {
+        byte[] content = new byte[4 * 1024 * 1024];
+        new Random().nextBytes(content);
+        startServer(new HttpServlet()
+        {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                response.getOutputStream().write(content);
+            }
+        });
+        AsyncMiddleManServlet proxyServlet = new AsyncMiddleManServlet()
+        {
+            @Override
+            protected ContentTransformer newServerResponseContentTransformer(HttpServletRequest clientRequest, HttpServletResponse proxyResponse, Response serverResponse)
+            {
+                return ContentTransformer.IDENTITY;
+            }
+        };
+        Map<String, String> initParams = new HashMap<>();
+        initParams.put("zeroCopy", "true");
+        startProxy(proxyServlet, initParams);
+        startClient();
+
+        assertTrue(proxyServlet.isZeroCopy());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        client.newRequest("localhost", serverConnector.getLocalPort())
+            .send(new BufferingResponseListener(2 * content.length)
+            {
+                @Override
+                public void onContent(Response response, ByteBuffer buffer)
+                {
+                    // Slow down the reader so that the proxy writes are pending
+                    // while the proxy holds the buffers received from the server.
+                    sleep(5);
+                    super.onContent(response, buffer);
+                }
+
+                @Override
+                public void onComplete(Result result)
+                {
+                    assertFalse(result.isFailed());
+                    assertEquals(200, result.getResponse().getStatus());
+                    assertArrayEquals(content, getContent());
+                    latch.countDown();
+                }
+            });
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+    }
+
     private Path prepareTargetTestsDir() throws IOException
     {
         final Path targetTestsDir = MavenTestingUtils.getTargetTestingDir().toPath();
@@ -40,6 +40,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class BalancerServletTest
@@ -48,6 +50,7 @@ public class BalancerServletTest
     private static final String SERVLET_PATH = "/mapping";
 
     private boolean stickySessions;
+    private String balancingStrategy;
     private Server server1;
     private Server server2;
     private Server balancer;
@@ -80,6 +83,8 @@ public class BalancerServletTest
         ServletHolder balancerServletHolder = new ServletHolder(BalancerServlet.class);
         balancerServletHolder.setInitParameter("stickySessions", String.valueOf(stickySessions));
         balancerServletHolder.setInitParameter("proxyPassReverse", "true");
+        if (balancingStrategy != null)
+            balancerServletHolder.setInitParameter("balancingStrategy", balancingStrategy);
         balancerServletHolder.setInitParameter("balancerMember." + "node1" + ".proxyTo", "http://localhost:" + getServerPort(server1));
         balancerServletHolder.setInitParameter("balancerMember." + "node2" + ".proxyTo", "http://localhost:" + getServerPort(server2));
 
@@ -150,6 +155,23 @@ public class BalancerServletTest
         }
     }
 
+    @Test
+    public void testBalancedDestinationBalancer() throws Exception
+    {
+        stickySessions = false;
+        balancingStrategy = "least_outstanding";
+        startBalancer(CounterServlet.class);
+        int requests = 20;
+        int maxCounter = 0;
+        for (int i = 0; i < requests; i++)
+        {
+            byte[] responseBytes = sendRequestToBalancer("/balanced");
+            maxCounter = Math.max(maxCounter, Integer.parseInt(readFirstLine(responseBytes)));
+        }
+        // Both nodes have been used.
+        assertThat(maxCounter, lessThan(requests - 1));
+    }
+
     @Test
     public void testProxyPassReverse() throws Exception
     {
@@ -451,6 +451,60 @@ public class ProxyServletTest
         assertTrue(latch.await(30, TimeUnit.SECONDS));
     }
 
+    @ParameterizedTest
+    @MethodSource("impls")
+    public void testProxyWithBigResponseContentZeroCopy(Class<? extends ProxyServlet> proxyServletClass) throws Exception
+    {
+        // Create a 6 MiB content
+        final byte[] content = new byte[6 * 1024 * 1024];
+        new Random().nextBytes(content);
+        startServer(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+            {
+                response.getOutputStream().write(content);
+            }
+        });
+        Map<String, String> params = new HashMap<>();
+        params.put("zeroCopy", "true");
+        startProxy(proxyServletClass, params);
+        startClient();
+
+        assertTrue(proxyServlet.isZeroCopy());
+
+        Request request = client.newRequest("localhost", serverConnector.getLocalPort()).path("/proxy/test");
+        final CountDownLatch latch = new CountDownLatch(1);
+        request.send(new BufferingResponseListener(2 * content.length)
+        {
+            @Override
+            public void onContent(Response response, ByteBuffer buffer)
+            {
+                try
+                {
+                    // Slow down the reader, so that the proxy writes are pending
+                    // while the proxy holds the buffers received from the server.
+                    TimeUnit.MILLISECONDS.sleep(5);
+                    super.onContent(response, buffer);
+                }
+                catch (InterruptedException x)
+                {
+                    response.abort(x);
+                }
+            }
+
+            @Override
+            public void onComplete(Result result)
+            {
+                assertFalse(result.isFailed());
+                assertEquals(200, result.getResponse().getStatus());
+                assertArrayEquals(content, getContent());
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+    }
+
     @ParameterizedTest
     @MethodSource("impls")
     public void testProxyWithQueryString(Class<? extends ProxyServlet> proxyServletClass) throws Exception
@@ -25,3 +25,10 @@ etc/jetty-bytebufferpool.xml
 
 ## Maximum direct memory retainable by the pool (-1 for unlimited)
 #jetty.byteBufferPool.maxDirectMemory=-1
+
+## Whether to evict single buffers from the largest buckets first when
+## the max memory is exceeded, rather than clearing the oldest bucket
+#jetty.byteBufferPool.evictLargestFirst=false
+
+## Idle time in ms after which a bucket is preferred for eviction
+#jetty.byteBufferPool.idleTimeout=0
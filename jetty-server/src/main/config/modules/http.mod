@@ -42,5 +42,8 @@ etc/jetty-http.xml
 ## Connect Timeout in milliseconds
 # jetty.http.connectTimeout=15000
 
+## Policy used to assign connections to selectors: ROUND_ROBIN, LEAST_KEYS or LEAST_BUSY
+# jetty.http.selectionPolicy=ROUND_ROBIN
+
 ## HTTP Compliance: RFC7230, RFC7230_LEGACY, RFC2616, RFC2616_LEGACY, LEGACY or CUSTOMn
 # jetty.http.compliance=RFC7230_LEGACY
@@ -57,6 +57,9 @@ patch-module: servlet.api=lib/jetty-schemas-3.1.jar
 ## Max per-connection header cache size (in nodes)
 # jetty.httpConfig.headerCacheSize=4096
 
+## Max header cache size shared by all connections (in nodes, 0 to disable)
+# jetty.httpConfig.sharedHeaderCacheSize=0
+
 ## Whether, for requests with content, delay dispatch until some content has arrived
 # jetty.httpConfig.delayDispatchUntilContent=true
 
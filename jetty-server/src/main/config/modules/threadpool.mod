@@ -18,6 +18,9 @@ etc/jetty-threadpool.xml
 ## Number of reserved threads (-1 for heuristic)
 # jetty.threadPool.reservedThreads=-1
 
+## Number of shards of reserved threads, each selector using the reserved threads of its shard (1 for no sharding)
+# jetty.threadPool.reservedThreadShards=1
+
 ## Thread Idle Timeout (in milliseconds)
 #jetty.threadPool.idleTimeout=60000
 
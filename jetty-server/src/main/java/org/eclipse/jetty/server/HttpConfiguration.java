@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jetty.http.CookieCompliance;
+import org.eclipse.jetty.http.HttpFieldInternCache;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.Jetty;
@@ -60,6 +61,7 @@ public class HttpConfiguration implements Dumpable
     private int _requestHeaderSize = 8 * 1024;
     private int _responseHeaderSize = 8 * 1024;
     private int _headerCacheSize = 4 * 1024;
+    private HttpFieldInternCache _sharedHeaderCache;
     private int _securePort;
     private long _idleTimeout = -1;
     private long _blockingTimeout = -1;
@@ -126,6 +128,7 @@ public class HttpConfiguration implements Dumpable
         _requestHeaderSize = config._requestHeaderSize;
         _responseHeaderSize = config._responseHeaderSize;
         _headerCacheSize = config._headerCacheSize;
+        _sharedHeaderCache = config._sharedHeaderCache;
         _secureScheme = config._secureScheme;
         _securePort = config._securePort;
         _idleTimeout = config._idleTimeout;
@@ -201,6 +204,19 @@ public class HttpConfiguration implements Dumpable
         return _headerCacheSize;
     }
 
+    @ManagedAttribute("The header field cache shared by all connections")
+    public HttpFieldInternCache getSharedHeaderCache()
+    {
+        return _sharedHeaderCache;
+    }
+
+    @ManagedAttribute("The size in nodes of the header field cache shared by all connections")
+    public int getSharedHeaderCacheSize()
+    {
+        HttpFieldInternCache cache = _sharedHeaderCache;
+        return cache == null ? 0 : cache.getCapacity();
+    }
+
     @ManagedAttribute("The port to which Integral or Confidential security constraints are redirected")
     public int getSecurePort()
     {
@@ -415,6 +431,28 @@ public class HttpConfiguration implements Dumpable
         _headerCacheSize = headerCacheSize;
     }
 
+    /**
+     * <p>Sets the header field cache shared by all the connections that use this configuration.</p>
+     * <p>Unlike the per connection header field cache, the shared cache survives the
+     * connections, so that frequent header fields are not re-allocated by every new connection.</p>
+     *
+     * @param sharedHeaderCache the shared header field cache, or null to not use one
+     */
+    public void setSharedHeaderCache(HttpFieldInternCache sharedHeaderCache)
+    {
+        _sharedHeaderCache = sharedHeaderCache;
+    }
+
+    /**
+     * @param sharedHeaderCacheSize the size in nodes (at most one per character of the cached fields)
+     * of a new shared header field cache, or 0 to not use one
+     * @see #setSharedHeaderCache(HttpFieldInternCache)
+     */
+    public void setSharedHeaderCacheSize(int sharedHeaderCacheSize)
+    {
+        setSharedHeaderCache(sharedHeaderCacheSize > 0 ? new HttpFieldInternCache(sharedHeaderCacheSize) : null);
+    }
+
     /**
      * <p>Sets the TCP/IP port used for CONFIDENTIAL and INTEGRAL redirections.</p>
      *
@@ -646,6 +684,7 @@ public class HttpConfiguration implements Dumpable
             "requestHeaderSize=" + _requestHeaderSize,
             "responseHeaderSize=" + _responseHeaderSize,
             "headerCacheSize=" + _headerCacheSize,
+            "sharedHeaderCache=" + _sharedHeaderCache,
             "secureScheme=" + _secureScheme,
             "securePort=" + _securePort,
             "idleTimeout=" + _idleTimeout,
@@ -134,7 +134,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
 
     protected HttpParser newHttpParser(HttpCompliance compliance)
     {
-        return new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
+        HttpParser parser = new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
+        parser.setSharedFieldCache(getHttpConfiguration().getSharedHeaderCache());
+        return parser;
     }
 
     protected HttpParser.RequestHandler newRequestHandler()
@@ -0,0 +1,163 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free, bounded, multi-producer multi-consumer FIFO queue.
+ * <p>
+ * This queue is backed by a {@link ConcurrentLinkedQueue}, and bounds its size with an
+ * atomic counter, so that producers and consumers never contend on a lock, unlike
+ * {@link BlockingArrayQueue} that serializes producers on its tail lock and consumers
+ * on its head lock.
+ * </p>
+ * <p>
+ * Elements are polled in the order they have been offered, so that the oldest element,
+ * which is the closest to expire when elements have a timeout, is always polled first.
+ * The iterator is weakly consistent and {@link #size()} may transiently count elements
+ * that are being offered.
+ * </p>
+ *
+ * @param <E> The element type
+ */
+public class ConcurrentBoundedQueue<E> extends AbstractQueue<E>
+{
+    private final ConcurrentLinkedQueue<E> _queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final int _capacity;
+
+    /**
+     * @param capacity the max number of elements of this queue
+     */
+    public ConcurrentBoundedQueue(int capacity)
+    {
+        _capacity = capacity;
+    }
+
+    /**
+     * @return the max number of elements of this queue
+     */
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @Override
+    public boolean offer(E e)
+    {
+        Objects.requireNonNull(e);
+        while (true)
+        {
+            int size = _size.get();
+            if (size >= _capacity)
+                return false;
+            if (_size.compareAndSet(size, size + 1))
+                break;
+        }
+        _queue.offer(e);
+        return true;
+    }
+
+    @Override
+    public E poll()
+    {
+        E e = _queue.poll();
+        if (e != null)
+            _size.decrementAndGet();
+        return e;
+    }
+
+    @Override
+    public E peek()
+    {
+        return _queue.peek();
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        if (_queue.remove(o))
+        {
+            _size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return _queue.contains(o);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return _queue.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        return _size.get();
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        Iterator<E> iterator = _queue.iterator();
+        return new Iterator<E>()
+        {
+            private E _last;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                _last = iterator.next();
+                return _last;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (_last == null)
+                    throw new IllegalStateException();
+                ConcurrentBoundedQueue.this.remove(_last);
+                _last = null;
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%d/%d]", getClass().getSimpleName(), hashCode(), size(), getCapacity());
+    }
+}
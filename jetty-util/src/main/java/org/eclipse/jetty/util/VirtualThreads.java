@@ -0,0 +1,122 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Utility class to use virtual threads, if they are supported by the runtime.</p>
+ * <p>Virtual threads are accessed via reflection, so that this class can be compiled
+ * and run on JVMs that do not support them, in which case {@link #areSupported()}
+ * returns {@code false}.</p>
+ */
+public class VirtualThreads
+{
+    private static final Logger LOG = Log.getLogger(VirtualThreads.class);
+    private static final Executor executor = probeVirtualThreadExecutor();
+
+    private static Executor probeVirtualThreadExecutor()
+    {
+        try
+        {
+            return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean areSupported()
+    {
+        return executor != null;
+    }
+
+    /**
+     * <p>Warns that virtual threads are not supported by the runtime.</p>
+     */
+    public static void warn()
+    {
+        LOG.warn("Virtual threads are not supported by this JVM: {} {}", System.getProperty("java.vm.name"), System.getProperty("java.vm.version"));
+    }
+
+    /**
+     * @return a default virtual thread per task {@code Executor},
+     * or null if virtual threads are not supported
+     */
+    public static Executor getDefaultVirtualThreadsExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * <p>Tests whether the given executor implements {@link Configurable} and
+     * it has been configured to use virtual threads.</p>
+     *
+     * @param executor the Executor to test
+     * @return whether the given executor implements {@link Configurable}
+     * and it has been configured to use virtual threads
+     */
+    public static boolean isUseVirtualThreads(Executor executor)
+    {
+        return getVirtualThreadsExecutor(executor) != null;
+    }
+
+    /**
+     * @param executor the Executor to query
+     * @return the virtual threads {@code Executor} of the given executor,
+     * or null if it is not configured to use virtual threads
+     */
+    public static Executor getVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof Configurable)
+            return ((Configurable)executor).getVirtualThreadsExecutor();
+        return null;
+    }
+
+    /**
+     * <p>Implementations of this interface can be configured to use virtual threads.</p>
+     * <p>The virtual threads {@code Executor} is typically the one returned by
+     * {@link #getDefaultVirtualThreadsExecutor()}, but any other {@code Executor}
+     * that runs each task in its own (virtual) thread may be configured.</p>
+     */
+    public interface Configurable
+    {
+        /**
+         * @return the virtual threads {@code Executor} to use, or null if virtual threads are not used
+         */
+        Executor getVirtualThreadsExecutor();
+
+        /**
+         * @param executor the virtual threads {@code Executor} to use, or null to not use virtual threads
+         */
+        void setVirtualThreadsExecutor(Executor executor);
+    }
+
+    private VirtualThreads()
+    {
+    }
+}
@@ -28,6 +28,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import org.eclipse.jetty.util.AtomicBiInteger;
 import org.eclipse.jetty.util.BlockingArrayQueue;
@@ -51,6 +54,9 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
     private static Runnable NOOP = () ->
     {
     };
+    private static final Runnable WAKEUP = () ->
+    {
+    };
 
     /**
      * Encodes thread counts:
@@ -64,17 +70,21 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
     private final Set<Thread> _threads = ConcurrentHashMap.newKeySet();
     private final Object _joinLock = new Object();
     private final BlockingQueue<Runnable> _jobs;
+    private final AtomicReference<IdleThread> _idleThreads = new AtomicReference<>();
+    private final LongAdder _handoffs = new LongAdder();
     private final ThreadGroup _threadGroup;
     private String _name = "qtp" + hashCode();
     private int _idleTimeout;
     private int _maxThreads;
     private int _minThreads;
     private int _reservedThreads = -1;
+    private int _reservedThreadShards = 1;
     private TryExecutor _tryExecutor = TryExecutor.NO_TRY;
     private int _priority = Thread.NORM_PRIORITY;
     private boolean _daemon = false;
     private boolean _detailedDump = false;
     private int _lowThreadsThreshold = 1;
+    private boolean _idleThreadHandoff;
     private ThreadPoolBudget _budget;
 
     public QueuedThreadPool()
@@ -151,6 +161,12 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
         {
             _tryExecutor = NO_TRY;
         }
+        else if (_reservedThreadShards > 1)
+        {
+            ShardedReservedThreadExecutor reserved = new ShardedReservedThreadExecutor(this, _reservedThreads, _reservedThreadShards);
+            reserved.setIdleTimeout(_idleTimeout, TimeUnit.MILLISECONDS);
+            _tryExecutor = reserved;
+        }
         else
         {
             ReservedThreadExecutor reserved = new ReservedThreadExecutor(this, _reservedThreads);
@@ -189,6 +205,12 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
             {
                 jobs.offer(NOOP);
             }
+            // Idle threads parked for a handoff do not wait on the
+            // job queue, so they must be woken up to find the noop jobs.
+            while (wakeupIdleThread())
+            {
+                continue;
+            }
 
             // try to let jobs complete naturally for half our stop time
             joinThreads(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2);
@@ -339,6 +361,22 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
         _reservedThreads = reservedThreads;
     }
 
+    /**
+     * <p>Sets the number of shards the reserved threads are partitioned in.</p>
+     * <p>With more than one shard, components that obtain their shard via
+     * {@link #getShard(int)}, such as the selectors, execute tasks in threads
+     * reserved for their shard, reducing the contention on the reserved threads.</p>
+     *
+     * @param shards the number of shards of reserved threads, 1 for no sharding
+     * @see ShardedReservedThreadExecutor
+     */
+    public void setReservedThreadShards(int shards)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _reservedThreadShards = shards;
+    }
+
     /**
      * @param name Name of this thread pool to use when naming threads.
      */
@@ -411,10 +449,23 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
             ReservedThreadExecutor reservedThreadExecutor = getBean(ReservedThreadExecutor.class);
             if (reservedThreadExecutor != null)
                 return reservedThreadExecutor.getCapacity();
+            ShardedReservedThreadExecutor shardedReservedThreadExecutor = getBean(ShardedReservedThreadExecutor.class);
+            if (shardedReservedThreadExecutor != null)
+                return shardedReservedThreadExecutor.getCapacity();
         }
         return _reservedThreads;
     }
 
+    /**
+     * @return the number of shards of reserved threads
+     * @see #setReservedThreadShards(int)
+     */
+    @ManagedAttribute("the number of shards of reserved threads")
+    public int getReservedThreadShards()
+    {
+        return _reservedThreadShards;
+    }
+
     /**
      * @return The name of the this thread pool
      */
@@ -478,6 +529,43 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
         _lowThreadsThreshold = lowThreadsThreshold;
     }
 
+    /**
+     * @return whether jobs are handed off directly to idle threads
+     * @see #setIdleThreadHandoff(boolean)
+     */
+    @ManagedAttribute("whether jobs are handed off directly to idle threads")
+    public boolean isIdleThreadHandoff()
+    {
+        return _idleThreadHandoff;
+    }
+
+    /**
+     * <p>Sets whether jobs are handed off directly to idle threads.</p>
+     * <p>When enabled, idle threads park on a lock-free stack rather than waiting on
+     * the job queue, and {@link #execute(Runnable)} hands the job directly to the most
+     * recently parked idle thread, so that neither the producer nor the idle thread
+     * contend on the job queue locks.
+     * The job queue is only used when there are no idle threads.</p>
+     *
+     * @param handoff whether jobs are handed off directly to idle threads
+     */
+    public void setIdleThreadHandoff(boolean handoff)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _idleThreadHandoff = handoff;
+    }
+
+    /**
+     * @return the number of jobs handed off directly to idle threads
+     * @see #setIdleThreadHandoff(boolean)
+     */
+    @ManagedAttribute("number of jobs handed off directly to idle threads")
+    public long getIdleThreadHandoffs()
+    {
+        return _handoffs.sum();
+    }
+
     @Override
     public void execute(Runnable job)
     {
@@ -509,16 +597,30 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
             break;
         }
 
-        if (!_jobs.offer(job))
+        if (_idleThreadHandoff && handoff(job))
         {
-            // reverse our changes to _counts.
-            if (addCounts(startThread ? -1 : 0, 1))
-                LOG.warn("{} rejected {}", this, job);
-            throw new RejectedExecutionException(job.toString());
+            _handoffs.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("handoff {} startThread={}", job, startThread);
         }
+        else
+        {
+            if (!_jobs.offer(job))
+            {
+                // reverse our changes to _counts.
+                if (addCounts(startThread ? -1 : 0, 1))
+                    LOG.warn("{} rejected {}", this, job);
+                throw new RejectedExecutionException(job.toString());
+            }
 
-        if (LOG.isDebugEnabled())
-            LOG.debug("queue {} startThread={}", job, startThread);
+            // A thread may have parked after we failed to hand off the job
+            // but before the job was queued, so wake it up to poll the queue.
+            if (_idleThreadHandoff)
+                wakeupIdleThread();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("queue {} startThread={}", job, startThread);
+        }
 
         // Start a thread if one was needed
         if (startThread)
@@ -532,6 +634,16 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
         return tryExecutor != null && tryExecutor.tryExecute(task);
     }
 
+    @Override
+    public TryExecutor getShard(int key)
+    {
+        TryExecutor tryExecutor = _tryExecutor;
+        // Not sharded, or not started yet.
+        if (!(tryExecutor instanceof ShardedReservedThreadExecutor))
+            return this;
+        return tryExecutor.getShard(key);
+    }
+
     /**
      * Blocks until the thread pool is {@link LifeCycle#stop stopped}.
      */
@@ -580,7 +692,12 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
     @ManagedAttribute("number of busy threads in the pool")
     public int getBusyThreads()
     {
-        int reserved = _tryExecutor instanceof ReservedThreadExecutor ? ((ReservedThreadExecutor)_tryExecutor).getAvailable() : 0;
+        TryExecutor tryExecutor = _tryExecutor;
+        int reserved = 0;
+        if (tryExecutor instanceof ReservedThreadExecutor)
+            reserved = ((ReservedThreadExecutor)tryExecutor).getAvailable();
+        else if (tryExecutor instanceof ShardedReservedThreadExecutor)
+            reserved = ((ShardedReservedThreadExecutor)tryExecutor).getAvailable();
         return getThreads() - getIdleThreads() - reserved;
     }
 
@@ -663,6 +780,85 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
         }
     }
 
+    private void pushIdleThread(IdleThread idle)
+    {
+        while (true)
+        {
+            IdleThread head = _idleThreads.get();
+            idle._next = head;
+            if (_idleThreads.compareAndSet(head, idle))
+                return;
+        }
+    }
+
+    private IdleThread popIdleThread()
+    {
+        while (true)
+        {
+            IdleThread head = _idleThreads.get();
+            if (head == null)
+                return null;
+            // Nodes are never pushed twice, so there is no ABA problem.
+            if (_idleThreads.compareAndSet(head, head._next))
+                return head;
+        }
+    }
+
+    private void removeWithdrawnIdleThreads()
+    {
+        // Pop the withdrawn idle threads at the top of the stack.
+        while (true)
+        {
+            IdleThread head = _idleThreads.get();
+            if (head == null || !head.isWithdrawn())
+                break;
+            _idleThreads.compareAndSet(head, head._next);
+        }
+
+        // Unlink the withdrawn idle threads below the top of the stack.
+        // Only withdrawn nodes are ever skipped, so racing with other
+        // threads may leave a withdrawn node linked, but never unlinks
+        // a waiting one; the former are discarded when they are popped.
+        IdleThread node = _idleThreads.get();
+        while (node != null)
+        {
+            IdleThread next = node._next;
+            if (next != null && next.isWithdrawn())
+                node._next = next._next;
+            else
+                node = next;
+        }
+    }
+
+    private boolean handoff(Runnable job)
+    {
+        while (true)
+        {
+            IdleThread idle = popIdleThread();
+            if (idle == null)
+                return false;
+            // Discard the idle threads that have withdrawn.
+            if (idle.offer(job))
+                return true;
+        }
+    }
+
+    private boolean wakeupIdleThread()
+    {
+        return handoff(WAKEUP);
+    }
+
+    // Package local for testing
+    int getIdleThreadNodes()
+    {
+        int nodes = 0;
+        for (IdleThread idle = _idleThreads.get(); idle != null; idle = idle._next)
+        {
+            ++nodes;
+        }
+        return nodes;
+    }
+
     protected Thread newThread(Runnable runnable)
     {
         return new Thread(_threadGroup, runnable);
@@ -846,11 +1042,78 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
     {
         private Runnable idleJobPoll(long idleTimeout) throws InterruptedException
         {
+            if (_idleThreadHandoff)
+                return idleJobHandoff(idleTimeout);
             if (idleTimeout <= 0)
                 return _jobs.take();
             return _jobs.poll(idleTimeout, TimeUnit.MILLISECONDS);
         }
 
+        private Runnable idleJobHandoff(long idleTimeout) throws InterruptedException
+        {
+            long deadline = idleTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idleTimeout) : 0;
+            while (true)
+            {
+                IdleThread idle = new IdleThread();
+                pushIdleThread(idle);
+
+                // A job may have been queued before we were pushed.
+                Runnable job;
+                if (_jobs.isEmpty())
+                {
+                    while ((job = idle.get()) == null)
+                    {
+                        if (deadline == 0)
+                        {
+                            LockSupport.park(this);
+                        }
+                        else
+                        {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0)
+                            {
+                                if (idle.withdraw())
+                                {
+                                    removeWithdrawnIdleThreads();
+                                    return null;
+                                }
+                                continue;
+                            }
+                            LockSupport.parkNanos(this, remaining);
+                        }
+
+                        if (Thread.interrupted())
+                        {
+                            if (idle.withdraw())
+                            {
+                                removeWithdrawnIdleThreads();
+                                throw new InterruptedException();
+                            }
+                            // Something has been handed off to this thread,
+                            // so it cannot withdraw: restore the interrupt.
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                else if (idle.withdraw())
+                {
+                    removeWithdrawnIdleThreads();
+                    job = WAKEUP;
+                }
+                else
+                {
+                    job = idle.get();
+                }
+
+                if (job != WAKEUP)
+                    return job;
+
+                job = _jobs.poll();
+                if (job != null)
+                    return job;
+            }
+        }
+
         @Override
         public void run()
         {
@@ -950,4 +1213,34 @@ public class QueuedThreadPool extends ContainerLifeCycle implements SizedThreadP
             }
         }
     }
+
+    /**
+     * <p>An idle thread parked on the lock-free stack of idle threads.</p>
+     * <p>The value is null while the thread waits, the handed off job once it
+     * has been handed off, or {@link #WAKEUP} if the thread has withdrawn or
+     * must look at the job queue.</p>
+     */
+    private static class IdleThread extends AtomicReference<Runnable>
+    {
+        private final Thread _thread = Thread.currentThread();
+        private volatile IdleThread _next;
+
+        private boolean offer(Runnable job)
+        {
+            if (!compareAndSet(null, job))
+                return false;
+            LockSupport.unpark(_thread);
+            return true;
+        }
+
+        private boolean withdraw()
+        {
+            return compareAndSet(null, WAKEUP);
+        }
+
+        private boolean isWithdrawn()
+        {
+            return get() == WAKEUP;
+        }
+    }
 }
@@ -93,7 +93,7 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements TryExec
      * @return the number of reserved threads that would be used by a ReservedThreadExecutor
      * constructed with these arguments.
      */
-    private static int reservedThreads(Executor executor, int capacity)
+    static int reservedThreads(Executor executor, int capacity)
     {
         if (capacity >= 0)
             return capacity;
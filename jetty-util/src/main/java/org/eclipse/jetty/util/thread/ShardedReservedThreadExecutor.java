@@ -0,0 +1,175 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * <p>A {@link TryExecutor} that partitions the reserved threads in shards,
+ * each shard being a {@link ReservedThreadExecutor} with its own reserved threads.</p>
+ * <p>Components that repeatedly execute tasks, such as the {@link org.eclipse.jetty.util.thread.strategy.EatWhatYouKill}
+ * strategy of a selector, obtain their shard via {@link #getShard(int)}, so that their
+ * calls to {@link #tryExecute(Runnable)} are satisfied by threads reserved for them,
+ * without contending with other components on a single stack of reserved threads,
+ * and with better cache locality.</p>
+ * <p>Calls to {@link #tryExecute(Runnable)} on this executor, rather than on a shard,
+ * try first the shard selected by the calling thread and then the other shards.</p>
+ */
+@ManagedObject("A sharded pool for reserved threads")
+public class ShardedReservedThreadExecutor extends ContainerLifeCycle implements TryExecutor
+{
+    private final Executor _executor;
+    private final ReservedThreadExecutor[] _shards;
+
+    /**
+     * @param executor The executor to use to obtain threads
+     * @param capacity The total number of threads to preallocate. If less than 0 then capacity
+     * is calculated based on a heuristic from the number of available processors and
+     * thread pool size.
+     * @param shards The number of shards
+     */
+    public ShardedReservedThreadExecutor(Executor executor, int capacity, int shards)
+    {
+        if (shards <= 0)
+            throw new IllegalArgumentException("Invalid shards " + shards);
+        _executor = executor;
+        int total = ReservedThreadExecutor.reservedThreads(executor, capacity);
+        _shards = new ReservedThreadExecutor[shards];
+        for (int i = 0; i < shards; ++i)
+        {
+            // Spread the capacity so that the shards sum up to the total.
+            int shardCapacity = total / shards + (i < total % shards ? 1 : 0);
+            _shards[i] = new ReservedThreadExecutor(executor, shardCapacity);
+            addBean(_shards[i], true);
+        }
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @param key the key of the shard, for example the id of a selector
+     * @return the shard for the given key
+     */
+    @Override
+    public ReservedThreadExecutor getShard(int key)
+    {
+        return _shards[Math.floorMod(key, _shards.length)];
+    }
+
+    @ManagedAttribute(value = "number of shards", readonly = true)
+    public int getShards()
+    {
+        return _shards.length;
+    }
+
+    @ManagedAttribute(value = "max number of reserved threads", readonly = true)
+    public int getCapacity()
+    {
+        int capacity = 0;
+        for (ReservedThreadExecutor shard : _shards)
+        {
+            capacity += shard.getCapacity();
+        }
+        return capacity;
+    }
+
+    @ManagedAttribute(value = "available reserved threads", readonly = true)
+    public int getAvailable()
+    {
+        int available = 0;
+        for (ReservedThreadExecutor shard : _shards)
+        {
+            available += shard.getAvailable();
+        }
+        return available;
+    }
+
+    @ManagedAttribute(value = "pending reserved threads", readonly = true)
+    public int getPending()
+    {
+        int pending = 0;
+        for (ReservedThreadExecutor shard : _shards)
+        {
+            pending += shard.getPending();
+        }
+        return pending;
+    }
+
+    @ManagedAttribute(value = "idletimeout in MS", readonly = true)
+    public long getIdleTimeoutMs()
+    {
+        return _shards[0].getIdleTimeoutMs();
+    }
+
+    /**
+     * Set the idle timeout for shrinking the reserved threads of each shard
+     *
+     * @param idleTime Time to wait before shrinking, or 0 for no timeout.
+     * @param idleTimeUnit Time units for idle timeout
+     */
+    public void setIdleTimeout(long idleTime, TimeUnit idleTimeUnit)
+    {
+        if (isRunning())
+            throw new IllegalStateException();
+        for (ReservedThreadExecutor shard : _shards)
+        {
+            shard.setIdleTimeout(idleTime, idleTimeUnit);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) throws RejectedExecutionException
+    {
+        _executor.execute(task);
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task)
+    {
+        int length = _shards.length;
+        int start = (int)(Thread.currentThread().getId() % length);
+        for (int i = 0; i < length; ++i)
+        {
+            if (_shards[(start + i) % length].tryExecute(task))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{s=%d/%d,p=%d,shards=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getAvailable(),
+            getCapacity(),
+            getPending(),
+            _shards.length);
+    }
+}
@@ -41,6 +41,21 @@ public interface TryExecutor extends Executor
             throw new RejectedExecutionException();
     }
 
+    /**
+     * <p>Returns a {@code TryExecutor} local to the given key.</p>
+     * <p>Components that repeatedly call {@link #tryExecute(Runnable)}, for example
+     * a selector identified by its id, may use the shard for their key so that their
+     * tasks are preferably executed by threads reserved for them.</p>
+     *
+     * @param key the key of the shard
+     * @return the {@code TryExecutor} for the given key, by default this {@code TryExecutor}
+     * @see ShardedReservedThreadExecutor
+     */
+    default TryExecutor getShard(int key)
+    {
+        return this;
+    }
+
     static TryExecutor asTryExecutor(Executor executor)
     {
         if (executor instanceof TryExecutor)
@@ -0,0 +1,270 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * <p>A {@link ThreadPool} that runs blocking tasks in virtual threads, and
+ * all other tasks in a small pool of platform threads.</p>
+ * <p>Tasks that are {@link Invocable} and whose {@link Invocable#getInvocationType()
+ * invocation type} is {@link Invocable.InvocationType#BLOCKING BLOCKING}, such as the
+ * tasks that call the application, are run in virtual threads, so that blocking
+ * applications may scale to many concurrent requests without a large thread pool.
+ * Other tasks, such as the selector loops, run in the platform {@link QueuedThreadPool}.</p>
+ * <p>Virtual threads are used if the runtime supports them, see {@link VirtualThreads};
+ * otherwise all tasks run in the platform {@link QueuedThreadPool}.
+ * The thread pool size attributes, like {@link #getMaxThreads()}, as well as the
+ * {@link ThreadPoolBudget}, refer to the platform {@link QueuedThreadPool}.</p>
+ * <p>{@link org.eclipse.jetty.util.thread.strategy.EatWhatYouKill} detects this
+ * thread pool, and executes blocking tasks in virtual threads rather than handing
+ * over production for them.</p>
+ */
+@ManagedObject("A thread pool that runs blocking tasks in virtual threads")
+public class VirtualThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor, VirtualThreads.Configurable
+{
+    private final LongAdder _virtualTasks = new LongAdder();
+    private final LongAdder _platformTasks = new LongAdder();
+    private final QueuedThreadPool _platformThreadPool;
+    private volatile Executor _virtualThreadsExecutor;
+
+    public VirtualThreadPool()
+    {
+        this(Math.max(16, 4 * ProcessorUtils.availableProcessors()));
+    }
+
+    /**
+     * @param maxPlatformThreads the max number of platform threads
+     */
+    public VirtualThreadPool(@Name("maxPlatformThreads") int maxPlatformThreads)
+    {
+        this(new QueuedThreadPool(maxPlatformThreads, Math.min(8, maxPlatformThreads)));
+    }
+
+    /**
+     * @param platformThreadPool the thread pool for non blocking tasks
+     */
+    public VirtualThreadPool(@Name("platformThreadPool") QueuedThreadPool platformThreadPool)
+    {
+        _platformThreadPool = platformThreadPool;
+        addBean(_platformThreadPool, true);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_virtualThreadsExecutor == null)
+        {
+            if (VirtualThreads.areSupported())
+                _virtualThreadsExecutor = VirtualThreads.getDefaultVirtualThreadsExecutor();
+            else
+                VirtualThreads.warn();
+        }
+        super.doStart();
+    }
+
+    /**
+     * @return the thread pool for non blocking tasks
+     */
+    @ManagedAttribute("The thread pool for non blocking tasks")
+    public QueuedThreadPool getPlatformThreadPool()
+    {
+        return _platformThreadPool;
+    }
+
+    /**
+     * @return the virtual threads {@code Executor}, or null if virtual threads are not used
+     */
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _virtualThreadsExecutor;
+    }
+
+    /**
+     * <p>Sets the virtual threads {@code Executor}.</p>
+     * <p>If not set, {@link VirtualThreads#getDefaultVirtualThreadsExecutor()} is used when
+     * this thread pool is started.</p>
+     *
+     * @param executor the virtual threads {@code Executor}
+     */
+    @Override
+    public void setVirtualThreadsExecutor(Executor executor)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _virtualThreadsExecutor = executor;
+    }
+
+    @ManagedAttribute("Whether blocking tasks run in virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _virtualThreadsExecutor != null;
+    }
+
+    @ManagedAttribute("The number of tasks executed in virtual threads")
+    public long getVirtualThreadTasks()
+    {
+        return _virtualTasks.sum();
+    }
+
+    @ManagedAttribute("The number of tasks executed in platform threads")
+    public long getPlatformThreadTasks()
+    {
+        return _platformTasks.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _virtualTasks.reset();
+        _platformTasks.reset();
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        Executor virtual = virtualThreadsExecutorFor(task);
+        if (virtual != null)
+        {
+            _virtualTasks.increment();
+            virtual.execute(task);
+        }
+        else
+        {
+            _platformTasks.increment();
+            _platformThreadPool.execute(task);
+        }
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task)
+    {
+        Executor virtual = virtualThreadsExecutorFor(task);
+        if (virtual != null)
+        {
+            // A virtual thread is always immediately available.
+            _virtualTasks.increment();
+            virtual.execute(task);
+            return true;
+        }
+        if (_platformThreadPool.tryExecute(task))
+        {
+            _platformTasks.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private Executor virtualThreadsExecutorFor(Runnable task)
+    {
+        Executor virtual = _virtualThreadsExecutor;
+        if (virtual != null && isBlocking(task))
+            return virtual;
+        return null;
+    }
+
+    /**
+     * <p>Tests whether the given task must be run in a virtual thread.</p>
+     * <p>Only tasks that explicitly declare themselves as {@link Invocable.InvocationType#BLOCKING}
+     * are run in virtual threads, so that plain tasks such as selector loops keep running
+     * in platform threads.</p>
+     *
+     * @param task the task to test
+     * @return whether the task is blocking
+     */
+    public static boolean isBlocking(Runnable task)
+    {
+        return task instanceof Invocable && ((Invocable)task).getInvocationType() == Invocable.InvocationType.BLOCKING;
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        _platformThreadPool.join();
+    }
+
+    @Override
+    public int getThreads()
+    {
+        return _platformThreadPool.getThreads();
+    }
+
+    @Override
+    public int getIdleThreads()
+    {
+        return _platformThreadPool.getIdleThreads();
+    }
+
+    @Override
+    public boolean isLowOnThreads()
+    {
+        return _platformThreadPool.isLowOnThreads();
+    }
+
+    @Override
+    public int getMinThreads()
+    {
+        return _platformThreadPool.getMinThreads();
+    }
+
+    @Override
+    public int getMaxThreads()
+    {
+        return _platformThreadPool.getMaxThreads();
+    }
+
+    @Override
+    public void setMinThreads(int threads)
+    {
+        _platformThreadPool.setMinThreads(threads);
+    }
+
+    @Override
+    public void setMaxThreads(int threads)
+    {
+        _platformThreadPool.setMaxThreads(threads);
+    }
+
+    @Override
+    public ThreadPoolBudget getThreadPoolBudget()
+    {
+        return _platformThreadPool.getThreadPoolBudget();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,virtual=%s,%s}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getState(),
+            _virtualThreadsExecutor,
+            _platformThreadPool);
+    }
+}
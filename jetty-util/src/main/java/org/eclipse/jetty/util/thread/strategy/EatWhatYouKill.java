@@ -25,6 +25,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
@@ -52,6 +53,10 @@ import org.eclipse.jetty.util.thread.TryExecutor;
  * indicated it is non-blocking, then this strategy will dispatch the execution of
  * the task and immediately continue production. When operating in this pattern, the
  * sub-strategy is called ProduceExecuteConsume (PEC).</p>
+ * <p>If the executor is configured to run blocking tasks in virtual threads (see
+ * {@link VirtualThreads#isUseVirtualThreads(Executor)}), blocking tasks are always
+ * executed in PEC mode, as a virtual thread is always available and cheap, so that
+ * the producing platform thread never blocks in application code.</p>
  */
 @ManagedObject("eat what you kill execution strategy")
 public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrategy, Runnable
@@ -83,10 +88,21 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
     private boolean _pending;
 
     public EatWhatYouKill(Producer producer, Executor executor)
+    {
+        this(producer, executor, TryExecutor.asTryExecutor(executor));
+    }
+
+    /**
+     * @param producer the task producer
+     * @param executor the executor of the produced tasks
+     * @param tryExecutor the {@link TryExecutor} used to hand over production to a reserved thread,
+     * typically a {@link TryExecutor#getShard(int) shard} of the executor
+     */
+    public EatWhatYouKill(Producer producer, Executor executor, TryExecutor tryExecutor)
     {
         _producer = producer;
         _executor = executor;
-        _tryExecutor = TryExecutor.asTryExecutor(executor);
+        _tryExecutor = tryExecutor;
         addBean(_producer);
         addBean(_tryExecutor);
         if (LOG.isDebugEnabled())
@@ -235,6 +251,13 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                     break;
 
                 case BLOCKING:
+                    if (VirtualThreads.isUseVirtualThreads(_executor))
+                    {
+                        // The task will be executed in a virtual thread, so
+                        // there is no need to hand over production.
+                        mode = Mode.PRODUCE_EXECUTE_CONSUME;
+                        break;
+                    }
                     // The task is blocking, so PC is not an option. Thus we choose
                     // between EPC and PEC based on the availability of a reserved thread.
                     synchronized (this)
@@ -0,0 +1,121 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentBoundedQueueTest
+{
+    @Test
+    public void testBoundedFIFO()
+    {
+        ConcurrentBoundedQueue<String> queue = new ConcurrentBoundedQueue<>(3);
+        assertTrue(queue.offer("A"));
+        assertTrue(queue.offer("B"));
+        assertTrue(queue.offer("C"));
+        assertFalse(queue.offer("D"));
+        assertThat(queue.size(), is(3));
+
+        assertThat(queue.peek(), is("A"));
+        assertThat(queue.poll(), is("A"));
+        assertTrue(queue.offer("D"));
+
+        assertTrue(queue.remove("C"));
+        assertFalse(queue.remove("C"));
+        assertThat(queue.size(), is(2));
+
+        Iterator<String> iterator = queue.iterator();
+        assertThat(iterator.next(), is("B"));
+        iterator.remove();
+        assertThat(queue.size(), is(1));
+
+        assertThat(queue.poll(), is("D"));
+        assertThat(queue.poll(), nullValue());
+        assertTrue(queue.isEmpty());
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test
+    public void testConcurrentProducersConsumers() throws Exception
+    {
+        int threads = 8;
+        int iterations = 10000;
+        ConcurrentBoundedQueue<Integer> queue = new ConcurrentBoundedQueue<>(threads);
+        ConcurrentHashMap.KeySetView<Integer, Boolean> consumed = ConcurrentHashMap.newKeySet();
+        // Producers and consumers must all run concurrently, as they spin on a full or empty queue.
+        ExecutorService executor = Executors.newFixedThreadPool(2 * threads);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[2 * threads];
+        for (int t = 0; t < threads; ++t)
+        {
+            int producer = t;
+            futures[2 * t] = CompletableFuture.runAsync(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    Integer element = producer * iterations + i;
+                    while (!queue.offer(element))
+                    {
+                        Thread.yield();
+                    }
+                }
+            }, executor);
+            futures[2 * t + 1] = CompletableFuture.runAsync(() ->
+            {
+                int count = 0;
+                while (count < iterations)
+                {
+                    Integer element = queue.poll();
+                    if (element == null)
+                    {
+                        Thread.yield();
+                        continue;
+                    }
+                    assertTrue(consumed.add(element));
+                    ++count;
+                }
+            }, executor);
+        }
+        try
+        {
+            CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat(consumed.size(), is(threads * iterations));
+        assertTrue(queue.isEmpty());
+        assertThat(queue.size(), is(0));
+    }
+}
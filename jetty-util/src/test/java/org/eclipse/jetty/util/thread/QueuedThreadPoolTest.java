@@ -450,6 +450,75 @@ public class QueuedThreadPoolTest extends AbstractThreadPoolTest
         tp.stop();
     }
 
+    @Test
+    public void testIdleThreadHandoff() throws Exception
+    {
+        QueuedThreadPool tp = new QueuedThreadPool(10, 2);
+        tp.setIdleThreadHandoff(true);
+        tp.setIdleTimeout(400);
+        tp.setReservedThreads(0);
+        tp.start();
+        assertThrows(IllegalStateException.class, () -> tp.setIdleThreadHandoff(false));
+        waitForIdle(tp, 2);
+        waitForThreads(tp, 2);
+        Thread.sleep(100);
+
+        // Jobs are handed off to the idle threads.
+        RunningJob job0 = new RunningJob("JOB0");
+        RunningJob job1 = new RunningJob("JOB1");
+        tp.execute(job0);
+        tp.execute(job1);
+        assertTrue(job0._run.await(10, TimeUnit.SECONDS));
+        assertTrue(job1._run.await(10, TimeUnit.SECONDS));
+        assertThat(tp.getIdleThreadHandoffs(), is(2L));
+        assertThat(tp.getQueueSize(), is(0));
+
+        // Jobs are queued when there are no idle threads.
+        RunningJob job2 = new RunningJob("JOB2");
+        tp.execute(job2);
+        assertTrue(job2._run.await(10, TimeUnit.SECONDS));
+        waitForThreads(tp, 3);
+        job0.stop();
+        job1.stop();
+        job2.stop();
+
+        // Many jobs are all run, and the pool shrinks back when idle.
+        CountDownLatch latch = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++)
+        {
+            tp.execute(latch::countDown);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        waitForThreads(tp, 2);
+        waitForIdle(tp, 2);
+
+        // Stopping wakes up the parked idle threads.
+        long start = System.nanoTime();
+        tp.stop();
+        assertThat(tp.getThreads(), is(0));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Matchers.lessThan(tp.getStopTimeout() / 2));
+    }
+
+    @Test
+    public void testIdleThreadHandoffUnlinksWithdrawnThreads() throws Exception
+    {
+        QueuedThreadPool tp = new QueuedThreadPool(4, 4);
+        tp.setIdleThreadHandoff(true);
+        tp.setIdleTimeout(20);
+        tp.setReservedThreads(0);
+        tp.start();
+        waitForThreads(tp, 4);
+        waitForIdle(tp, 4);
+
+        // The idle threads time out and park again many times, but only
+        // the nodes of the currently parked threads remain in the stack.
+        Thread.sleep(500);
+        assertThat(tp.getIdleThreadNodes(), Matchers.lessThanOrEqualTo(4));
+
+        tp.stop();
+        assertThat(tp.getIdleThreadNodes(), is(0));
+    }
+
     @Test
     public void testMaxStopTime() throws Exception
     {
@@ -0,0 +1,146 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedReservedThreadExecutorTest
+{
+    private QueuedThreadPool _threadPool;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _threadPool = new QueuedThreadPool(16, 4);
+        _threadPool.setReservedThreads(4);
+        _threadPool.setReservedThreadShards(2);
+        _threadPool.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        _threadPool.stop();
+    }
+
+    @Test
+    public void testShards()
+    {
+        assertThat(_threadPool.getReservedThreads(), is(4));
+        TryExecutor shard0 = _threadPool.getShard(0);
+        TryExecutor shard1 = _threadPool.getShard(1);
+        assertThat(shard0, instanceOf(ReservedThreadExecutor.class));
+        assertThat(shard1, instanceOf(ReservedThreadExecutor.class));
+        assertThat(shard0, not(sameInstance(shard1)));
+        assertThat(_threadPool.getShard(2), sameInstance(shard0));
+        assertThat(((ReservedThreadExecutor)shard0).getCapacity(), is(2));
+        assertThat(((ReservedThreadExecutor)shard1).getCapacity(), is(2));
+    }
+
+    @Test
+    public void testNotShardedByDefault() throws Exception
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        assertThat(threadPool.getShard(0), sameInstance(threadPool));
+        threadPool.start();
+        try
+        {
+            assertThat(threadPool.getShard(0), sameInstance(threadPool));
+        }
+        finally
+        {
+            threadPool.stop();
+        }
+    }
+
+    @Test
+    public void testShardTryExecuteIsLocal() throws Exception
+    {
+        ReservedThreadExecutor shard0 = (ReservedThreadExecutor)_threadPool.getShard(0);
+        ReservedThreadExecutor shard1 = (ReservedThreadExecutor)_threadPool.getShard(1);
+
+        // Reserved threads are lazily started.
+        assertFalse(shard0.tryExecute(() ->
+        {
+        }));
+        waitForAvailable(shard0, 1);
+        assertThat(shard1.getAvailable(), is(0));
+
+        // The reserved thread of shard 0 is not available to shard 1.
+        CountDownLatch latch = new CountDownLatch(1);
+        assertFalse(shard1.tryExecute(latch::countDown));
+        assertTrue(shard0.tryExecute(latch::countDown));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTryExecuteUsesAnyShard() throws Exception
+    {
+        ReservedThreadExecutor shard1 = (ReservedThreadExecutor)_threadPool.getShard(1);
+        assertFalse(shard1.tryExecute(() ->
+        {
+        }));
+        waitForAvailable(shard1, 1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(_threadPool.tryExecute(latch::countDown));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBusyThreadsExcludeReservedThreads() throws Exception
+    {
+        ReservedThreadExecutor shard0 = (ReservedThreadExecutor)_threadPool.getShard(0);
+        ReservedThreadExecutor shard1 = (ReservedThreadExecutor)_threadPool.getShard(1);
+        assertFalse(shard0.tryExecute(() ->
+        {
+        }));
+        assertFalse(shard1.tryExecute(() ->
+        {
+        }));
+        waitForAvailable(shard0, 1);
+        waitForAvailable(shard1, 1);
+
+        // The reserved threads of all shards are not busy.
+        assertThat(_threadPool.getBusyThreads(), is(0));
+    }
+
+    private void waitForAvailable(ReservedThreadExecutor reserved, int available) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reserved.getAvailable() < available)
+        {
+            assertTrue(System.nanoTime() < end);
+            Thread.sleep(10);
+        }
+    }
+}
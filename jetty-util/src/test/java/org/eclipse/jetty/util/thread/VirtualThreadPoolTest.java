@@ -0,0 +1,158 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadPoolTest
+{
+    private static final String VIRTUAL = "virtual-";
+
+    private VirtualThreadPool _threadPool;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        QueuedThreadPool platform = new QueuedThreadPool(8, 2);
+        platform.setName("platform");
+        _threadPool = new VirtualThreadPool(platform);
+        // Simulate virtual threads, as the runtime may not support them.
+        Executor virtual = task -> new Thread(task, VIRTUAL + task).start();
+        _threadPool.setVirtualThreadsExecutor(virtual);
+        _threadPool.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        _threadPool.stop();
+    }
+
+    @Test
+    public void testBlockingTasksRunInVirtualThreads() throws Exception
+    {
+        assertTrue(VirtualThreads.isUseVirtualThreads(_threadPool));
+
+        Task blocking = new Task(Invocable.InvocationType.BLOCKING);
+        _threadPool.execute(blocking);
+        assertThat(blocking.awaitThreadName(), startsWith(VIRTUAL));
+
+        Task nonBlocking = new Task(Invocable.InvocationType.NON_BLOCKING);
+        _threadPool.execute(nonBlocking);
+        assertThat(nonBlocking.awaitThreadName(), startsWith("platform"));
+
+        Task either = new Task(Invocable.InvocationType.EITHER);
+        _threadPool.execute(either);
+        assertThat(either.awaitThreadName(), startsWith("platform"));
+
+        // Plain tasks, such as selector loops, are not run in virtual threads.
+        AtomicReference<String> plain = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        _threadPool.execute(() ->
+        {
+            plain.set(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(plain.get(), startsWith("platform"));
+
+        assertEquals(1, _threadPool.getVirtualThreadTasks());
+        assertEquals(3, _threadPool.getPlatformThreadTasks());
+    }
+
+    @Test
+    public void testTryExecuteBlockingTask() throws Exception
+    {
+        Task blocking = new Task(Invocable.InvocationType.BLOCKING);
+        assertTrue(_threadPool.tryExecute(blocking));
+        assertThat(blocking.awaitThreadName(), startsWith(VIRTUAL));
+    }
+
+    @Test
+    public void testEatWhatYouKillExecutesBlockingTasksInVirtualThreads() throws Exception
+    {
+        Task blocking = new Task(Invocable.InvocationType.BLOCKING);
+        AtomicReference<Runnable> produced = new AtomicReference<>(blocking);
+        EatWhatYouKill strategy = new EatWhatYouKill(() -> produced.getAndSet(null), _threadPool);
+        strategy.start();
+        try
+        {
+            strategy.produce();
+            assertThat(blocking.awaitThreadName(), startsWith(VIRTUAL));
+            assertThat(strategy.getPECTasksExecuted(), is(1L));
+            assertThat(strategy.getEPCTasksConsumed(), is(0L));
+        }
+        finally
+        {
+            strategy.stop();
+        }
+    }
+
+    private static class Task implements Runnable, Invocable
+    {
+        private final CountDownLatch _latch = new CountDownLatch(1);
+        private final InvocationType _invocationType;
+        private volatile String _threadName;
+
+        private Task(InvocationType invocationType)
+        {
+            _invocationType = invocationType;
+        }
+
+        @Override
+        public void run()
+        {
+            _threadName = Thread.currentThread().getName();
+            _latch.countDown();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _invocationType;
+        }
+
+        private String awaitThreadName() throws InterruptedException
+        {
+            assertTrue(_latch.await(5, TimeUnit.SECONDS));
+            return _threadName;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), _invocationType);
+        }
+    }
+}
@@ -0,0 +1,447 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketBehavior;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.extensions.Extension;
+import org.eclipse.jetty.websocket.api.extensions.OutgoingFrames;
+import org.eclipse.jetty.websocket.common.extensions.ExtensionStack;
+import org.eclipse.jetty.websocket.common.extensions.compress.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.common.extensions.identity.IdentityExtension;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.DataFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+
+/**
+ * <p>Sends the same message to many sessions, generating and compressing it only once.</p>
+ * <p>Sending a message to each session via its {@link RemoteEndpoint} generates the
+ * frame and, if {@code permessage-deflate} has been negotiated, compresses it once
+ * per session. A {@code Broadcaster} instead generates the frame bytes once for the
+ * sessions without extensions, and compresses and generates them once for the sessions
+ * that negotiated {@code permessage-deflate}; the same bytes are then written to each
+ * session, in order with the other messages sent by the session.</p>
+ * <p>Compressed messages are compressed without context, and the compression context
+ * of the sessions that use context takeover is reset after them, since the remote
+ * decompression context now contains the broadcast message.</p>
+ * <p>Sessions that cannot share the generated bytes, such as client sessions (whose
+ * frames are masked) or sessions that negotiated other extensions, are sent the
+ * message through their extensions as usual, sharing only the message payload.</p>
+ */
+@ManagedObject("Broadcasts WebSocket messages to many sessions")
+public class Broadcaster extends ContainerLifeCycle
+{
+    private static final Logger LOG = Log.getLogger(Broadcaster.class);
+    private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder encodings = new LongAdder();
+    private final LongAdder encodedWrites = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final ByteBufferPool bufferPool;
+    private final DeflaterPool deflaterPool;
+    private final Generator generator;
+
+    public Broadcaster()
+    {
+        this(new MappedByteBufferPool());
+    }
+
+    /**
+     * @param bufferPool the pool of the buffers that hold the generated messages
+     */
+    public Broadcaster(ByteBufferPool bufferPool)
+    {
+        this.bufferPool = bufferPool;
+        this.deflaterPool = new DeflaterPool(8, Deflater.DEFAULT_COMPRESSION, true);
+        this.generator = new Generator(WebSocketPolicy.newServerPolicy(), bufferPool, false);
+        addBean(deflaterPool);
+    }
+
+    /**
+     * <p>Sends the given text message to the given sessions.</p>
+     *
+     * @param sessions the sessions to send the message to
+     * @param text the text message
+     */
+    public void broadcastString(Collection<? extends Session> sessions, String text)
+    {
+        broadcastString(sessions, text, null);
+    }
+
+    /**
+     * <p>Sends the given text message to the given sessions.</p>
+     *
+     * @param sessions the sessions to send the message to
+     * @param text the text message
+     * @param callback the callback notified of the outcome of the write to each session, or null
+     */
+    public void broadcastString(Collection<? extends Session> sessions, String text, Callback callback)
+    {
+        broadcast(sessions, OpCode.TEXT, BufferUtil.toBuffer(text, StandardCharsets.UTF_8), callback);
+    }
+
+    /**
+     * <p>Sends the given binary message to the given sessions.</p>
+     *
+     * @param sessions the sessions to send the message to
+     * @param data the binary message, that must not be modified until all the writes are complete
+     */
+    public void broadcastBytes(Collection<? extends Session> sessions, ByteBuffer data)
+    {
+        broadcastBytes(sessions, data, null);
+    }
+
+    /**
+     * <p>Sends the given binary message to the given sessions.</p>
+     *
+     * @param sessions the sessions to send the message to
+     * @param data the binary message, that must not be modified until all the writes are complete
+     * @param callback the callback notified of the outcome of the write to each session, or null
+     */
+    public void broadcastBytes(Collection<? extends Session> sessions, ByteBuffer data, Callback callback)
+    {
+        broadcast(sessions, OpCode.BINARY, data.slice(), callback);
+    }
+
+    private void broadcast(Collection<? extends Session> sessions, byte opCode, ByteBuffer payload, Callback callback)
+    {
+        messages.increment();
+        Message message = new Message(opCode, payload.asReadOnlyBuffer());
+        try
+        {
+            for (Session session : sessions)
+            {
+                message.send(session, callback);
+            }
+        }
+        finally
+        {
+            message.release();
+        }
+    }
+
+    @ManagedAttribute("The number of messages broadcast")
+    public long getMessages()
+    {
+        return messages.sum();
+    }
+
+    @ManagedAttribute("The number of times a message has been generated")
+    public long getEncodings()
+    {
+        return encodings.sum();
+    }
+
+    @ManagedAttribute("The number of writes of already generated messages")
+    public long getEncodedWrites()
+    {
+        return encodedWrites.sum();
+    }
+
+    @ManagedAttribute("The number of writes of messages generated by the session")
+    public long getWrites()
+    {
+        return writes.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        messages.reset();
+        encodings.reset();
+        encodedWrites.reset();
+        writes.reset();
+    }
+
+    /**
+     * @param session the session to test
+     * @return whether the session can be sent compressed messages, not compressed messages,
+     * or null if the session must generate the message itself
+     */
+    private static Boolean isDeflate(WebSocketSession session)
+    {
+        if (session.getPolicy().getBehavior() != WebSocketBehavior.SERVER)
+            return null;
+        OutgoingFrames outgoing = session.getOutgoingHandler();
+        if (!(outgoing instanceof ExtensionStack))
+            return null;
+        boolean deflate = false;
+        for (Extension extension : ((ExtensionStack)outgoing).getExtensions())
+        {
+            if (extension instanceof PerMessageDeflateExtension)
+                deflate = true;
+            else if (!(extension instanceof IdentityExtension))
+                return null;
+        }
+        return deflate;
+    }
+
+    private static ByteBuffer deflate(Deflater deflater, ByteBuffer payload)
+    {
+        byte[] input = BufferUtil.toArray(payload);
+        deflater.setInput(input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+        byte[] output = new byte[Math.max(256, input.length)];
+        while (true)
+        {
+            int compressed = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            out.write(output, 0, compressed);
+            if (compressed < output.length)
+                break;
+        }
+        byte[] bytes = out.toByteArray();
+
+        // Drop the tail bytes generated by SYNC_FLUSH, see RFC 7692 section 7.2.1.
+        int length = bytes.length;
+        if (length >= TAIL_BYTES.length)
+        {
+            boolean tail = true;
+            for (int i = 0; i < TAIL_BYTES.length; ++i)
+            {
+                tail &= bytes[length - TAIL_BYTES.length + i] == TAIL_BYTES[i];
+            }
+            if (tail)
+                length -= TAIL_BYTES.length;
+        }
+        if (length == 0)
+            return ByteBuffer.wrap(new byte[]{0x00});
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * <p>Listener for the outcome of the write of a broadcast message to each session.</p>
+     */
+    public interface Callback
+    {
+        /**
+         * <p>Callback method invoked when the message has been written to the given session.</p>
+         *
+         * @param session the session
+         */
+        default void succeeded(Session session)
+        {
+        }
+
+        /**
+         * <p>Callback method invoked when the message could not be written to the given session.</p>
+         *
+         * @param session the session
+         * @param failure the failure
+         */
+        default void failed(Session session, Throwable failure)
+        {
+        }
+    }
+
+    private class Message
+    {
+        private final byte opCode;
+        private final ByteBuffer payload;
+        private Encoded plain;
+        private Encoded deflated;
+
+        private Message(byte opCode, ByteBuffer payload)
+        {
+            this.opCode = opCode;
+            this.payload = payload;
+        }
+
+        private void send(Session session, Callback callback)
+        {
+            SessionCallback sessionCallback = new SessionCallback(session, callback);
+            try
+            {
+                if (session instanceof WebSocketSession)
+                {
+                    WebSocketSession wsSession = (WebSocketSession)session;
+                    RemoteEndpoint remote = wsSession.getRemote();
+                    if (remote instanceof WebSocketRemoteEndpoint)
+                    {
+                        WebSocketRemoteEndpoint wsRemote = (WebSocketRemoteEndpoint)remote;
+                        Boolean deflate = isDeflate(wsSession);
+                        if (deflate != null)
+                        {
+                            Encoded encoded = deflate ? getDeflated() : getPlain();
+                            sessionCallback.retain(encoded.buffer);
+                            encodedWrites.increment();
+                            wsRemote.sendFrame(encoded.newFrame(opCode), sessionCallback);
+                        }
+                        else
+                        {
+                            // Client frames are masked in place, so the payload cannot be shared.
+                            boolean masked = wsSession.getPolicy().getBehavior() == WebSocketBehavior.CLIENT;
+                            DataFrame frame = opCode == OpCode.TEXT ? new TextFrame() : new BinaryFrame();
+                            frame.setPayload(masked ? ByteBuffer.wrap(BufferUtil.toArray(payload)) : payload.slice());
+                            writes.increment();
+                            wsRemote.sendFrame(frame, sessionCallback);
+                        }
+                        return;
+                    }
+                }
+
+                writes.increment();
+                if (opCode == OpCode.TEXT)
+                    session.getRemote().sendString(BufferUtil.toUTF8String(payload.slice()), sessionCallback);
+                else
+                    session.getRemote().sendBytes(ByteBuffer.wrap(BufferUtil.toArray(payload)), sessionCallback);
+            }
+            catch (Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not broadcast to " + session, x);
+                sessionCallback.writeFailed(x);
+            }
+        }
+
+        private Encoded getPlain()
+        {
+            if (plain == null)
+                plain = encode(payload.slice(), false);
+            return plain;
+        }
+
+        private Encoded getDeflated()
+        {
+            if (deflated == null)
+            {
+                Deflater deflater = deflaterPool.acquire();
+                try
+                {
+                    deflated = encode(deflate(deflater, payload.slice()), true);
+                }
+                finally
+                {
+                    deflaterPool.release(deflater);
+                }
+            }
+            return deflated;
+        }
+
+        private Encoded encode(ByteBuffer data, boolean rsv1)
+        {
+            encodings.increment();
+            DataFrame frame = opCode == OpCode.TEXT ? new TextFrame() : new BinaryFrame();
+            frame.setRsv1(rsv1);
+            frame.setPayload(data);
+            RetainableByteBuffer retainable = new RetainableByteBuffer(bufferPool, Generator.MAX_HEADER_LENGTH + data.remaining(), true);
+            ByteBuffer buffer = retainable.getBuffer();
+            generator.generateHeaderBytes(frame, buffer);
+            int headerLength = buffer.remaining();
+            BufferUtil.append(buffer, data);
+            return new Encoded(retainable, headerLength, rsv1);
+        }
+
+        private void release()
+        {
+            if (plain != null)
+                plain.buffer.release();
+            if (deflated != null)
+                deflated.buffer.release();
+        }
+    }
+
+    private static class Encoded
+    {
+        private final RetainableByteBuffer buffer;
+        private final int headerLength;
+        private final boolean rsv1;
+
+        private Encoded(RetainableByteBuffer buffer, int headerLength, boolean rsv1)
+        {
+            this.buffer = buffer;
+            this.headerLength = headerLength;
+            this.rsv1 = rsv1;
+        }
+
+        private EncodedFrame newFrame(byte opCode)
+        {
+            ByteBuffer encoded = buffer.getBuffer().asReadOnlyBuffer();
+            ByteBuffer payload = encoded.duplicate();
+            payload.position(payload.position() + headerLength);
+            return new EncodedFrame(opCode, rsv1, payload.slice(), encoded);
+        }
+    }
+
+    private static class SessionCallback implements WriteCallback
+    {
+        private final Session session;
+        private final Callback callback;
+        private RetainableByteBuffer buffer;
+
+        private SessionCallback(Session session, Callback callback)
+        {
+            this.session = session;
+            this.callback = callback;
+        }
+
+        private void retain(RetainableByteBuffer buffer)
+        {
+            buffer.retain();
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void writeSuccess()
+        {
+            release();
+            if (callback != null)
+                callback.succeeded(session);
+        }
+
+        @Override
+        public void writeFailed(Throwable x)
+        {
+            release();
+            if (callback != null)
+                callback.failed(session, x);
+        }
+
+        private void release()
+        {
+            if (buffer != null)
+            {
+                buffer.release();
+                buffer = null;
+            }
+        }
+    }
+}
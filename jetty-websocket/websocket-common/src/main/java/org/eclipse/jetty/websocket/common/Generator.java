@@ -28,6 +28,7 @@ import org.eclipse.jetty.websocket.api.WebSocketBehavior;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.eclipse.jetty.websocket.api.extensions.Extension;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.util.MaskUtil;
 
 /**
  * Generating a frame in WebSocket land.
@@ -300,34 +301,12 @@ public class Generator
         {
             byte[] mask = frame.getMask();
             buffer.put(mask);
-            int maskInt = 0;
-            for (byte maskByte : mask)
-            {
-                maskInt = (maskInt << 8) + (maskByte & 0xFF);
-            }
 
             // perform data masking here
             ByteBuffer payload = frame.getPayload();
             if ((payload != null) && (payload.remaining() > 0))
             {
-                int maskOffset = 0;
-                int start = payload.position();
-                int end = payload.limit();
-                int remaining;
-                while ((remaining = end - start) > 0)
-                {
-                    if (remaining >= 4)
-                    {
-                        payload.putInt(start, payload.getInt(start) ^ maskInt);
-                        start += 4;
-                    }
-                    else
-                    {
-                        payload.put(start, (byte)(payload.get(start) ^ mask[maskOffset & 3]));
-                        ++start;
-                        ++maskOffset;
-                    }
-                }
+                MaskUtil.mask(payload, payload.position(), payload.limit(), mask, 0);
             }
         }
 
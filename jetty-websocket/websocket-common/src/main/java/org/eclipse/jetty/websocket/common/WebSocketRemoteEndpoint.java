@@ -298,6 +298,26 @@ public class WebSocketRemoteEndpoint implements RemoteEndpoint
         }
     }
 
+    /**
+     * <p>Asynchronous write of a whole message frame, used by {@link Broadcaster}.</p>
+     *
+     * @param frame the frame to write
+     * @param callback the callback notified when the write is complete
+     * @throws IllegalStateException if a partial message is being sent
+     */
+    void sendFrame(WebSocketFrame frame, WriteCallback callback)
+    {
+        lockMsg(MsgType.ASYNC);
+        try
+        {
+            uncheckedSendFrame(frame, callback);
+        }
+        finally
+        {
+            unlockMsg(MsgType.ASYNC);
+        }
+    }
+
     public void uncheckedSendFrame(WebSocketFrame frame, WriteCallback callback)
     {
         BatchMode batchMode = BatchMode.OFF;
@@ -27,7 +27,6 @@ import java.util.zip.Deflater;
 
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
-import org.eclipse.jetty.util.compression.CompressionPool;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
 import org.eclipse.jetty.websocket.api.WebSocketException;
@@ -35,15 +34,21 @@ import org.eclipse.jetty.websocket.api.extensions.Extension;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionFactory;
 import org.eclipse.jetty.websocket.common.extensions.compress.CompressExtension;
+import org.eclipse.jetty.websocket.common.extensions.compress.CompressionMemoryManager;
 import org.eclipse.jetty.websocket.common.scopes.WebSocketContainerScope;
 
 public class WebSocketExtensionFactory extends ContainerLifeCycle implements ExtensionFactory
 {
+    // Bounded, so that the Deflaters and Inflaters released
+    // by idle sessions eventually free their native memory.
+    private static final int POOL_CAPACITY = 1024;
+
     private WebSocketContainerScope container;
     private ServiceLoader<Extension> extensionLoader = ServiceLoader.load(Extension.class);
     private Map<String, Class<? extends Extension>> availableExtensions;
-    private final InflaterPool inflaterPool = new InflaterPool(CompressionPool.INFINITE_CAPACITY, true);
-    private final DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+    private final InflaterPool inflaterPool = new InflaterPool(POOL_CAPACITY, true);
+    private final DeflaterPool deflaterPool = new DeflaterPool(POOL_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+    private final CompressionMemoryManager compressionMemoryManager = new CompressionMemoryManager();
 
     public WebSocketExtensionFactory(WebSocketContainerScope container)
     {
@@ -57,6 +62,15 @@ public class WebSocketExtensionFactory extends ContainerLifeCycle implements Ext
         this.container = container;
         addBean(inflaterPool);
         addBean(deflaterPool);
+        addBean(compressionMemoryManager);
+    }
+
+    /**
+     * @return the manager of the native memory used by the compression extensions
+     */
+    public CompressionMemoryManager getCompressionMemoryManager()
+    {
+        return compressionMemoryManager;
     }
 
     @Override
@@ -106,17 +120,18 @@ public class WebSocketExtensionFactory extends ContainerLifeCycle implements Ext
         try
         {
             Extension ext = container.getObjectFactory().createInstance(extClass);
-            if (ext instanceof AbstractExtension)
-            {
-                AbstractExtension aext = (AbstractExtension)ext;
-                aext.init(container);
-                aext.setConfig(config);
-            }
             if (ext instanceof CompressExtension)
             {
                 CompressExtension cext = (CompressExtension)ext;
                 cext.setInflaterPool(inflaterPool);
                 cext.setDeflaterPool(deflaterPool);
+                cext.setMemoryManager(compressionMemoryManager);
+            }
+            if (ext instanceof AbstractExtension)
+            {
+                AbstractExtension aext = (AbstractExtension)ext;
+                aext.init(container);
+                aext.setConfig(config);
             }
 
             return ext;
@@ -40,6 +40,7 @@ import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.OpCode;
 import org.eclipse.jetty.websocket.common.extensions.AbstractExtension;
 import org.eclipse.jetty.websocket.common.frames.DataFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
 
 public abstract class CompressExtension extends AbstractExtension
 {
@@ -88,10 +89,15 @@ public abstract class CompressExtension extends AbstractExtension
 
     private final Queue<FrameEntry> entries = new ArrayDeque<>();
     private final IteratingCallback flusher = new Flusher();
+    private final Object deflaterLock = new Object();
+    private final Object inflaterLock = new Object();
     private DeflaterPool deflaterPool;
     private InflaterPool inflaterPool;
+    private CompressionMemoryManager memoryManager;
     private Deflater deflaterImpl;
     private Inflater inflaterImpl;
+    private long deflaterLastUsed;
+    private long inflaterLastUsed;
     protected AtomicInteger decompressCount = new AtomicInteger(0);
     private int tailDrop = TAIL_DROP_NEVER;
     private int rsvUse = RSV_USE_ALWAYS;
@@ -112,22 +118,117 @@ public abstract class CompressExtension extends AbstractExtension
         this.deflaterPool = deflaterPool;
     }
 
+    public CompressionMemoryManager getMemoryManager()
+    {
+        return memoryManager;
+    }
+
+    /**
+     * @param memoryManager the manager of the native memory used by the compression extensions of the container
+     */
+    public void setMemoryManager(CompressionMemoryManager memoryManager)
+    {
+        this.memoryManager = memoryManager;
+    }
+
     public Deflater getDeflater()
     {
-        if (deflaterImpl == null)
+        synchronized (deflaterLock)
         {
-            deflaterImpl = deflaterPool.acquire();
+            if (deflaterImpl == null)
+            {
+                deflaterImpl = deflaterPool.acquire();
+                if (memoryManager != null)
+                    memoryManager.onDeflaterAcquired(this);
+            }
+            deflaterLastUsed = System.nanoTime();
+            return deflaterImpl;
         }
-        return deflaterImpl;
     }
 
     public Inflater getInflater()
     {
-        if (inflaterImpl == null)
+        synchronized (inflaterLock)
         {
-            inflaterImpl = inflaterPool.acquire();
+            if (inflaterImpl == null)
+            {
+                inflaterImpl = inflaterPool.acquire();
+                if (memoryManager != null)
+                    memoryManager.onInflaterAcquired(this);
+            }
+            inflaterLastUsed = System.nanoTime();
+            return inflaterImpl;
         }
-        return inflaterImpl;
+    }
+
+    /**
+     * <p>Tests whether the {@code Inflater} can be released, because the
+     * next incoming message will not refer to the decompression context.</p>
+     *
+     * @return whether the {@code Inflater} can be released
+     */
+    protected boolean isInflaterReleasable()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Releases the {@code Deflater} and the {@code Inflater}, if they
+     * have not been used for the given time and they can be released.</p>
+     *
+     * @param now the current nanoTime
+     * @param idleNanos the idle time in nanoseconds
+     */
+    void releaseIdle(long now, long idleNanos)
+    {
+        synchronized (deflaterLock)
+        {
+            // A new Deflater can always continue the
+            // message stream, at a lower compression ratio.
+            if (deflaterImpl != null && now - deflaterLastUsed >= idleNanos)
+                releaseDeflater(true);
+
+            synchronized (inflaterLock)
+            {
+                if (inflaterImpl != null && now - inflaterLastUsed >= idleNanos && isInflaterReleasable())
+                    releaseInflater(true);
+
+                if (deflaterImpl == null && inflaterImpl == null)
+                    memoryManager.unregister(this);
+            }
+        }
+    }
+
+    /**
+     * <p>Resets the {@code Deflater}, if any, without acquiring one if it has been released.</p>
+     */
+    protected void resetDeflater()
+    {
+        synchronized (deflaterLock)
+        {
+            if (deflaterImpl != null)
+                deflaterImpl.reset();
+        }
+    }
+
+    private void releaseDeflater(boolean idle)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Releasing {} Deflater of {}", idle ? "idle" : "", this);
+        deflaterPool.release(deflaterImpl);
+        deflaterImpl = null;
+        if (memoryManager != null)
+            memoryManager.onDeflaterReleased(idle);
+    }
+
+    private void releaseInflater(boolean idle)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Releasing {} Inflater of {}", idle ? "idle" : "", this);
+        inflaterPool.release(inflaterImpl);
+        inflaterImpl = null;
+        if (memoryManager != null)
+            memoryManager.onInflaterReleased(idle);
     }
 
     /**
@@ -187,6 +288,14 @@ public abstract class CompressExtension extends AbstractExtension
         }
         byte[] output = new byte[DECOMPRESS_BUF_SIZE];
 
+        synchronized (inflaterLock)
+        {
+            decompress(accumulator, buf, output);
+        }
+    }
+
+    private void decompress(ByteAccumulator accumulator, ByteBuffer buf, byte[] output) throws DataFormatException
+    {
         Inflater inflater = getInflater();
 
         while (buf.hasRemaining() && inflater.needsInput())
@@ -400,16 +509,19 @@ public abstract class CompressExtension extends AbstractExtension
     @Override
     protected void doStop() throws Exception
     {
-        if (deflaterImpl != null)
+        synchronized (deflaterLock)
         {
-            deflaterPool.release(deflaterImpl);
-            deflaterImpl = null;
-        }
+            if (deflaterImpl != null)
+                releaseDeflater(false);
 
-        if (inflaterImpl != null)
-        {
-            inflaterPool.release(inflaterImpl);
-            inflaterImpl = null;
+            synchronized (inflaterLock)
+            {
+                if (inflaterImpl != null)
+                    releaseInflater(false);
+
+                if (memoryManager != null)
+                    memoryManager.unregister(this);
+            }
         }
 
         super.doStop();
@@ -485,6 +597,17 @@ public abstract class CompressExtension extends AbstractExtension
                 return;
             }
 
+            if (frame instanceof EncodedFrame)
+            {
+                // The frame has been compressed already, without context, but the
+                // remote decompression context now contains it, so the local
+                // compression context no longer matches and must be reset.
+                if (frame.isRsv1())
+                    resetDeflater();
+                nextOutgoingFrame(frame, this, batchMode);
+                return;
+            }
+
             compress(entry, true);
         }
 
@@ -503,40 +626,14 @@ public abstract class CompressExtension extends AbstractExtension
             if (LOG.isDebugEnabled())
                 LOG.debug("Compressing {}: {} bytes in {} bytes chunk", entry, remaining, outputLength);
 
-            boolean needsCompress = true;
-
-            Deflater deflater = getDeflater();
-
-            if (deflater.needsInput() && !supplyInput(deflater, data))
+            ByteBuffer payload;
+            synchronized (deflaterLock)
             {
-                // no input supplied
-                needsCompress = false;
+                payload = deflate(data, outputLength);
             }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-            byte[] output = new byte[outputLength];
-
             boolean fin = frame.isFin();
 
-            // Compress the data
-            while (needsCompress)
-            {
-                int compressed = deflater.deflate(output, 0, outputLength, Deflater.SYNC_FLUSH);
-
-                // Append the output for the eventual frame.
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Wrote {} bytes to output buffer", compressed);
-                out.write(output, 0, compressed);
-
-                if (compressed < outputLength)
-                {
-                    needsCompress = false;
-                }
-            }
-
-            ByteBuffer payload = ByteBuffer.wrap(out.toByteArray());
-
             if (payload.remaining() > 0)
             {
                 // Handle tail bytes generated by SYNC_FLUSH.
@@ -591,6 +688,41 @@ public abstract class CompressExtension extends AbstractExtension
             nextOutgoingFrame(chunk, this, entry.batchMode);
         }
 
+        private ByteBuffer deflate(ByteBuffer data, int outputLength)
+        {
+            boolean needsCompress = true;
+
+            Deflater deflater = getDeflater();
+
+            if (deflater.needsInput() && !supplyInput(deflater, data))
+            {
+                // no input supplied
+                needsCompress = false;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            byte[] output = new byte[outputLength];
+
+            // Compress the data
+            while (needsCompress)
+            {
+                int compressed = deflater.deflate(output, 0, outputLength, Deflater.SYNC_FLUSH);
+
+                // Append the output for the eventual frame.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Wrote {} bytes to output buffer", compressed);
+                out.write(output, 0, compressed);
+
+                if (compressed < outputLength)
+                {
+                    needsCompress = false;
+                }
+            }
+
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+
         @Override
         protected void onCompleteSuccess()
         {
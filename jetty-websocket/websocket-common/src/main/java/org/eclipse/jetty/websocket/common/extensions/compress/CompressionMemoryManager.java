@@ -0,0 +1,278 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+
+package org.eclipse.jetty.websocket.common.extensions.compress;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>Tracks and limits the native memory used by the {@link java.util.zip.Deflater}s
+ * and {@link java.util.zip.Inflater}s of the {@link CompressExtension}s of a WebSocket container.</p>
+ * <p>A compression extension holds its {@code Deflater} and {@code Inflater} for
+ * the whole session lifetime, to keep the compression context across messages;
+ * each of them uses native memory (about 260 KiB for a {@code Deflater} and 40 KiB
+ * for an {@code Inflater}), which adds up to gigabytes for many mostly idle sessions.</p>
+ * <p>If {@link #getIdleTimeout() idleTimeout} is positive, the {@code Deflater}s and
+ * {@code Inflater}s that have not been used for that time are released back to their
+ * pool. A released {@code Deflater} only loses the compression context, so the next
+ * messages compress less until the context is rebuilt. An {@code Inflater} can only
+ * be released between messages and when the remote peer does not use context
+ * takeover, otherwise the next messages could not be decompressed.</p>
+ * <p>If {@link #getMaxNativeMemory() maxNativeMemory} is positive and the native
+ * memory in use exceeds it, {@link PerMessageDeflateExtension} negotiates
+ * {@code server_no_context_takeover} and {@code client_no_context_takeover}
+ * for new server sessions, so that their {@code Deflater}s and {@code Inflater}s
+ * can be released when idle.</p>
+ */
+@ManagedObject("Native memory used by WebSocket compression")
+public class CompressionMemoryManager extends ContainerLifeCycle
+{
+    /**
+     * The estimated native memory of a {@code Deflater}, with the default window and memory level.
+     */
+    public static final long DEFLATER_MEMORY = 262 * 1024;
+    /**
+     * The estimated native memory of an {@code Inflater}, with the default window.
+     */
+    public static final long INFLATER_MEMORY = 40 * 1024;
+    private static final Logger LOG = Log.getLogger(CompressionMemoryManager.class);
+
+    private final Set<CompressExtension> extensions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger deflaters = new AtomicInteger();
+    private final AtomicInteger inflaters = new AtomicInteger();
+    private final LongAdder idleReleases = new LongAdder();
+    private final LongAdder noContextTakeoverNegotiations = new LongAdder();
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+    private Scheduler scheduler;
+    private long idleTimeout = -1;
+    private long maxNativeMemory = -1;
+
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    public void setScheduler(Scheduler scheduler)
+    {
+        updateBean(this.scheduler, scheduler);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (scheduler == null)
+        {
+            scheduler = new ScheduledExecutorScheduler(String.format("WebSocketCompression-%x", hashCode()), true);
+            addBean(scheduler, true);
+        }
+        super.doStart();
+    }
+
+    /**
+     * @return the time in milliseconds after which unused {@code Deflater}s and {@code Inflater}s
+     * are released, or a non-positive value to never release them
+     */
+    @ManagedAttribute("The time in ms after which unused Deflaters and Inflaters are released")
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+        if (idleTimeout > 0 && !extensions.isEmpty())
+            scheduleSweep();
+    }
+
+    /**
+     * @return the native memory in bytes above which new sessions negotiate
+     * no context takeover, or a non-positive value for no limit
+     */
+    @ManagedAttribute("The native memory in bytes above which new sessions do not use context takeover")
+    public long getMaxNativeMemory()
+    {
+        return maxNativeMemory;
+    }
+
+    public void setMaxNativeMemory(long maxNativeMemory)
+    {
+        this.maxNativeMemory = maxNativeMemory;
+    }
+
+    @ManagedAttribute("The number of Deflaters held by sessions")
+    public int getDeflatersInUse()
+    {
+        return deflaters.get();
+    }
+
+    @ManagedAttribute("The number of Inflaters held by sessions")
+    public int getInflatersInUse()
+    {
+        return inflaters.get();
+    }
+
+    /**
+     * @return the estimated native memory in bytes of the {@code Deflater}s and {@code Inflater}s held by sessions
+     */
+    @ManagedAttribute("The estimated native memory in bytes held by sessions")
+    public long getNativeMemory()
+    {
+        return getDeflatersInUse() * DEFLATER_MEMORY + getInflatersInUse() * INFLATER_MEMORY;
+    }
+
+    @ManagedAttribute("Whether the native memory in use exceeds the max native memory")
+    public boolean isMemoryPressure()
+    {
+        long max = getMaxNativeMemory();
+        return max > 0 && getNativeMemory() > max;
+    }
+
+    @ManagedAttribute("The number of Deflaters and Inflaters released because unused")
+    public long getIdleReleases()
+    {
+        return idleReleases.sum();
+    }
+
+    @ManagedAttribute("The number of sessions that negotiated no context takeover because of memory pressure")
+    public long getNoContextTakeoverNegotiations()
+    {
+        return noContextTakeoverNegotiations.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        idleReleases.reset();
+        noContextTakeoverNegotiations.reset();
+    }
+
+    void onDeflaterAcquired(CompressExtension extension)
+    {
+        deflaters.incrementAndGet();
+        register(extension);
+    }
+
+    void onDeflaterReleased(boolean idle)
+    {
+        deflaters.decrementAndGet();
+        if (idle)
+            idleReleases.increment();
+    }
+
+    void onInflaterAcquired(CompressExtension extension)
+    {
+        inflaters.incrementAndGet();
+        register(extension);
+    }
+
+    void onInflaterReleased(boolean idle)
+    {
+        inflaters.decrementAndGet();
+        if (idle)
+            idleReleases.increment();
+    }
+
+    void onNoContextTakeoverNegotiated()
+    {
+        noContextTakeoverNegotiations.increment();
+    }
+
+    void unregister(CompressExtension extension)
+    {
+        extensions.remove(extension);
+    }
+
+    private void register(CompressExtension extension)
+    {
+        if (extensions.add(extension) && getIdleTimeout() > 0)
+            scheduleSweep();
+    }
+
+    private void scheduleSweep()
+    {
+        long idleTimeout = getIdleTimeout();
+        Scheduler scheduler = this.scheduler;
+        if (idleTimeout <= 0 || scheduler == null || !isRunning())
+            return;
+        if (sweepScheduled.compareAndSet(false, true))
+            scheduler.schedule(this::sweep, Math.max(1, idleTimeout / 2), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Releases the {@code Deflater}s and {@code Inflater}s that have not been used for {@link #getIdleTimeout()}.</p>
+     */
+    void sweep()
+    {
+        sweep(System.nanoTime());
+    }
+
+    // Package local for testing
+    void sweep(long now)
+    {
+        sweepScheduled.set(false);
+        long idleTimeout = getIdleTimeout();
+        if (idleTimeout <= 0)
+            return;
+
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        for (CompressExtension extension : extensions)
+        {
+            try
+            {
+                extension.releaseIdle(now, idleNanos);
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Could not release idle compression resources of " + extension, x);
+            }
+        }
+
+        if (!extensions.isEmpty())
+            scheduleSweep();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{deflaters=%d,inflaters=%d,memory=%d/%d,idleTimeout=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getDeflatersInUse(),
+            getInflatersInUse(),
+            getNativeMemory(),
+            getMaxNativeMemory(),
+            getIdleTimeout());
+    }
+}
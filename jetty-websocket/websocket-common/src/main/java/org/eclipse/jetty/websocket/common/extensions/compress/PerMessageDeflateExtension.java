@@ -26,6 +26,7 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.api.BadPayloadException;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.ProtocolException;
+import org.eclipse.jetty.websocket.api.WebSocketBehavior;
 import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
@@ -44,7 +45,7 @@ public class PerMessageDeflateExtension extends CompressExtension
     private ExtensionConfig configNegotiated;
     private boolean incomingContextTakeover = true;
     private boolean outgoingContextTakeover = true;
-    private boolean incomingCompressed;
+    private volatile boolean incomingCompressed;
 
     @Override
     public String getName()
@@ -118,11 +119,19 @@ public class PerMessageDeflateExtension extends CompressExtension
         if (frame.isFin() && !outgoingContextTakeover)
         {
             LOG.debug("Outgoing Context Reset");
-            getDeflater().reset();
+            resetDeflater();
         }
         super.nextOutgoingFrame(frame, callback, batchMode);
     }
 
+    @Override
+    protected boolean isInflaterReleasable()
+    {
+        // Without context takeover, the Inflater is
+        // reset anyway at the end of each message.
+        return !incomingContextTakeover && !incomingCompressed;
+    }
+
     @Override
     int getRsvUseMode()
     {
@@ -188,6 +197,18 @@ public class PerMessageDeflateExtension extends CompressExtension
             }
         }
 
+        CompressionMemoryManager memoryManager = getMemoryManager();
+        if (getPolicy().getBehavior() == WebSocketBehavior.SERVER && memoryManager != null && memoryManager.isMemoryPressure())
+        {
+            // RFC 7692 allows the server to include these parameters
+            // in its response even if the client did not offer them.
+            configNegotiated.setParameter("client_no_context_takeover");
+            configNegotiated.setParameter("server_no_context_takeover");
+            incomingContextTakeover = false;
+            outgoingContextTakeover = false;
+            memoryManager.onNoContextTakeoverNegotiated();
+        }
+
         LOG.debug("config: outgoingContextTakeover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
 
         super.setConfig(configNegotiated);
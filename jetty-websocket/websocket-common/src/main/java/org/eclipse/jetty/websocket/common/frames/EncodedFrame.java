@@ -0,0 +1,57 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common.frames;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A data frame whose bytes, header included, have been already generated.</p>
+ * <p>Encoded frames are written as they are, so that the same message can be
+ * written to many sessions generating (and possibly compressing) it only once;
+ * extensions must not modify their payload.</p>
+ *
+ * @see org.eclipse.jetty.websocket.common.Broadcaster
+ */
+public class EncodedFrame extends DataFrame
+{
+    private final ByteBuffer encoded;
+
+    /**
+     * @param opcode the frame opcode
+     * @param rsv1 whether the payload is compressed
+     * @param payload the payload of the frame
+     * @param encoded the bytes of the frame, header included
+     */
+    public EncodedFrame(byte opcode, boolean rsv1, ByteBuffer payload, ByteBuffer encoded)
+    {
+        super(opcode);
+        setFin(true);
+        setRsv1(rsv1);
+        setPayload(payload);
+        this.encoded = encoded;
+    }
+
+    /**
+     * @return the bytes of the frame, header included, as they are written on the wire
+     */
+    public ByteBuffer getEncoded()
+    {
+        return encoded;
+    }
+}
@@ -653,6 +653,40 @@ public abstract class AbstractWebSocketConnection extends AbstractConnection imp
         super.setInputBufferSize(inputBufferSize);
     }
 
+    /**
+     * @return the max number of outgoing frames aggregated before they are written
+     * @see FrameFlusher#getMaxBatchFrames()
+     */
+    public int getMaxBatchFrames()
+    {
+        return flusher.getMaxBatchFrames();
+    }
+
+    /**
+     * @param maxBatchFrames the max number of outgoing frames aggregated before they are written
+     */
+    public void setMaxBatchFrames(int maxBatchFrames)
+    {
+        flusher.setMaxBatchFrames(maxBatchFrames);
+    }
+
+    /**
+     * @return the max number of outgoing bytes aggregated before they are written
+     * @see FrameFlusher#getMaxBatchBytes()
+     */
+    public int getMaxBatchBytes()
+    {
+        return flusher.getMaxBatchBytes();
+    }
+
+    /**
+     * @param maxBatchBytes the max number of outgoing bytes aggregated before they are written
+     */
+    public void setMaxBatchBytes(int maxBatchBytes)
+    {
+        flusher.setMaxBatchBytes(maxBatchBytes);
+    }
+
     @Override
     public void setMaxIdleTimeout(long ms)
     {
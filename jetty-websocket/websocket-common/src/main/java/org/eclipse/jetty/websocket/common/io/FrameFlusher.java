@@ -20,11 +20,13 @@ package org.eclipse.jetty.websocket.common.io;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.io.ByteBufferPool;
@@ -39,7 +41,18 @@ import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.Generator;
 import org.eclipse.jetty.websocket.common.OpCode;
 import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
-
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
+
+/**
+ * <p>Generates and writes the frames of a connection.</p>
+ * <p>Frames are enqueued without locking by application threads, and are
+ * written by the single flushing thread, with PING and PONG frames before
+ * data frames. Frames sent with {@link BatchMode#AUTO} or {@link BatchMode#ON}
+ * are aggregated, and the aggregate buffer is written when it holds
+ * {@link #getMaxBatchFrames() maxBatchFrames} frames or
+ * {@link #getMaxBatchBytes() maxBatchBytes} bytes, or, for {@link BatchMode#AUTO},
+ * when no more frames are queued.</p>
+ */
 public class FrameFlusher extends IteratingCallback
 {
     public static final BinaryFrame FLUSH_FRAME = new BinaryFrame();
@@ -50,7 +63,10 @@ public class FrameFlusher extends IteratingCallback
     private final int bufferSize;
     private final Generator generator;
     private final int maxGather;
-    private final Deque<FrameEntry> queue = new ArrayDeque<>();
+    private final Queue<FrameEntry> controlQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<FrameEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean closeEnqueued = new AtomicBoolean();
+    private final AtomicReference<Throwable> terminated = new AtomicReference<>();
     private final List<FrameEntry> entries;
     private final List<ByteBuffer> buffers;
 
@@ -59,10 +75,11 @@ public class FrameFlusher extends IteratingCallback
     private final LongAdder bytesOut = new LongAdder();
 
     private boolean closed;
-    private boolean canEnqueue = true;
-    private Throwable terminated;
     private ByteBuffer aggregate;
+    private int aggregateFrames;
     private BatchMode batchMode;
+    private volatile int maxBatchFrames = Integer.MAX_VALUE;
+    private volatile int maxBatchBytes;
 
     public FrameFlusher(ByteBufferPool bufferPool, Generator generator, EndPoint endPoint, int bufferSize, int maxGather)
     {
@@ -73,45 +90,72 @@ public class FrameFlusher extends IteratingCallback
         this.maxGather = maxGather;
         this.entries = new ArrayList<>(maxGather);
         this.buffers = new ArrayList<>((maxGather * 2) + 1);
+        this.maxBatchBytes = bufferSize;
+    }
+
+    /**
+     * @return the max number of frames aggregated before they are written
+     */
+    public int getMaxBatchFrames()
+    {
+        return maxBatchFrames;
+    }
+
+    /**
+     * @param maxBatchFrames the max number of frames aggregated before they are written
+     */
+    public void setMaxBatchFrames(int maxBatchFrames)
+    {
+        this.maxBatchFrames = maxBatchFrames;
+    }
+
+    /**
+     * @return the max number of bytes aggregated before they are written
+     */
+    public int getMaxBatchBytes()
+    {
+        return maxBatchBytes;
+    }
+
+    /**
+     * @param maxBatchBytes the max number of bytes aggregated before they are written,
+     * capped to the aggregate buffer size
+     */
+    public void setMaxBatchBytes(int maxBatchBytes)
+    {
+        this.maxBatchBytes = maxBatchBytes;
     }
 
     public boolean enqueue(Frame frame, WriteCallback callback, BatchMode batchMode)
     {
         FrameEntry entry = new FrameEntry(frame, callback, batchMode);
 
-        Throwable dead;
-
-        synchronized (this)
+        byte opCode = frame.getOpCode();
+        Throwable dead = terminated.get();
+        if (dead == null)
         {
-            if (canEnqueue)
-            {
-                dead = terminated;
-                if (dead == null)
-                {
-                    byte opCode = frame.getOpCode();
-                    if (opCode == OpCode.PING || opCode == OpCode.PONG)
-                    {
-                        queue.offerFirst(entry);
-                    }
-                    else
-                    {
-                        queue.offerLast(entry);
-                    }
-
-                    if (opCode == OpCode.CLOSE)
-                    {
-                        this.canEnqueue = false;
-                    }
-                }
-            }
-            else
-            {
+            // No frames may be enqueued after the CLOSE frame.
+            boolean closing = opCode == OpCode.CLOSE ? !closeEnqueued.compareAndSet(false, true) : closeEnqueued.get();
+            if (closing)
                 dead = new ClosedChannelException();
-            }
         }
 
         if (dead == null)
         {
+            if (opCode == OpCode.PING || opCode == OpCode.PONG)
+                controlQueue.offer(entry);
+            else
+                queue.offer(entry);
+
+            // If this flusher completed concurrently, it may not have
+            // seen the entry, which must be failed here.
+            dead = terminated.get();
+            if (dead != null)
+            {
+                failQueued(dead);
+                return false;
+            }
+
             if (LOG.isDebugEnabled())
             {
                 LOG.debug("Enqueued {} to {}", entry, this);
@@ -129,44 +173,52 @@ public class FrameFlusher extends IteratingCallback
         if (LOG.isDebugEnabled())
             LOG.debug("Flushing {}", this);
 
-        int space = aggregate == null ? bufferSize : BufferUtil.space(aggregate);
+        if (closed)
+            return Action.SUCCEEDED;
+
+        Throwable failure = terminated.get();
+        if (failure != null)
+            throw failure;
+
+        int maxBytes = Math.min(bufferSize, maxBatchBytes);
+        int space = aggregate == null ? maxBytes : maxBytes - aggregate.remaining();
         BatchMode currentBatchMode = BatchMode.AUTO;
-        synchronized (this)
+        while (entries.size() < maxGather)
         {
-            if (closed)
-            {
-                return Action.SUCCEEDED;
-            }
+            FrameEntry entry = controlQueue.poll();
+            if (entry == null)
+                entry = queue.poll();
+            if (entry == null)
+                break;
 
-            if (terminated != null)
-            {
-                throw terminated;
-            }
+            currentBatchMode = BatchMode.max(currentBatchMode, entry.batchMode);
+            messagesOut.increment();
 
-            while (!queue.isEmpty() && entries.size() < maxGather)
-            {
-                FrameEntry entry = queue.poll();
-                currentBatchMode = BatchMode.max(currentBatchMode, entry.batchMode);
-                messagesOut.increment();
+            // Force flush if we need to.
+            if (entry.frame == FLUSH_FRAME)
+                currentBatchMode = BatchMode.OFF;
 
-                // Force flush if we need to.
-                if (entry.frame == FLUSH_FRAME)
-                    currentBatchMode = BatchMode.OFF;
+            int payloadLength = BufferUtil.length(entry.frame.getPayload());
+            int approxFrameLength = Generator.MAX_HEADER_LENGTH + payloadLength;
 
-                int payloadLength = BufferUtil.length(entry.frame.getPayload());
-                int approxFrameLength = Generator.MAX_HEADER_LENGTH + payloadLength;
+            // If it is a "big" frame, avoid copying into the aggregate buffer.
+            if (approxFrameLength > (bufferSize >> 2))
+                currentBatchMode = BatchMode.OFF;
 
-                // If it is a "big" frame, avoid copying into the aggregate buffer.
-                if (approxFrameLength > (bufferSize >> 2))
-                    currentBatchMode = BatchMode.OFF;
+            // If the aggregate buffer overflows, do not batch.
+            space -= approxFrameLength;
+            if (space <= 0)
+                currentBatchMode = BatchMode.OFF;
 
-                // If the aggregate buffer overflows, do not batch.
-                space -= approxFrameLength;
-                if (space <= 0)
-                    currentBatchMode = BatchMode.OFF;
+            entries.add(entry);
 
-                entries.add(entry);
-            }
+            // If enough frames are aggregated, write them.
+            if (aggregateFrames + entries.size() >= maxBatchFrames)
+                currentBatchMode = BatchMode.OFF;
+
+            // Frames enqueued concurrently with the CLOSE frame are failed on completion.
+            if (entry.frame.getOpCode() == OpCode.CLOSE)
+                break;
         }
 
         if (LOG.isDebugEnabled())
@@ -204,12 +256,19 @@ public class FrameFlusher extends IteratingCallback
 
         for (FrameEntry entry : entries)
         {
+            if (entry.frame instanceof EncodedFrame)
+            {
+                BufferUtil.append(aggregate, ((EncodedFrame)entry.frame).getEncoded());
+                continue;
+            }
+
             entry.generateHeaderBytes(aggregate);
 
             ByteBuffer payload = entry.frame.getPayload();
             if (BufferUtil.hasContent(payload))
                 BufferUtil.append(aggregate, payload);
         }
+        aggregateFrames += entries.size();
         if (LOG.isDebugEnabled())
             LOG.debug("{} aggregated {} frames: {}", this, entries.size(), entries);
 
@@ -227,6 +286,7 @@ public class FrameFlusher extends IteratingCallback
             if (LOG.isDebugEnabled())
                 LOG.debug("{} flushing aggregate {}", this, aggregate);
         }
+        aggregateFrames = 0;
 
         for (FrameEntry entry : entries)
         {
@@ -234,6 +294,13 @@ public class FrameFlusher extends IteratingCallback
             if (entry.frame == FLUSH_FRAME)
                 continue;
 
+            // Already generated frames are written as they are.
+            if (entry.frame instanceof EncodedFrame)
+            {
+                buffers.add(((EncodedFrame)entry.frame).getEncoded());
+                continue;
+            }
+
             buffers.add(entry.generateHeaderBytes());
             ByteBuffer payload = entry.frame.getPayload();
             if (BufferUtil.hasContent(payload))
@@ -268,10 +335,7 @@ public class FrameFlusher extends IteratingCallback
 
     private int getQueueSize()
     {
-        synchronized (this)
-        {
-            return queue.size();
-        }
+        return controlQueue.size() + queue.size();
     }
 
     @Override
@@ -289,33 +353,31 @@ public class FrameFlusher extends IteratingCallback
             entry.release();
             if (entry.frame.getOpCode() == OpCode.CLOSE)
             {
-                synchronized (this)
-                {
-                    // we know that enqueue protects us.
-                    // and the processing will not contain extra frame entries.
-                    closed = true;
-                }
+                // The CLOSE frame is always the last entry.
+                closed = true;
                 endPoint.shutdownOutput();
             }
         }
         entries.clear();
     }
 
+    @Override
+    protected void onCompleteSuccess()
+    {
+        // The CLOSE frame has been written, fail the frames enqueued concurrently.
+        terminated.compareAndSet(null, new ClosedChannelException());
+        failQueued(terminated.get());
+    }
+
     @Override
     public void onCompleteFailure(Throwable failure)
     {
         releaseAggregate();
 
-        synchronized (this)
+        if (terminated.compareAndSet(null, failure))
         {
-            if (terminated == null)
-            {
-                terminated = failure;
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Write flush failure", failure);
-            }
-            entries.addAll(queue);
-            queue.clear();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Write flush failure", failure);
         }
 
         for (FrameEntry entry : entries)
@@ -324,6 +386,22 @@ public class FrameFlusher extends IteratingCallback
             entry.release();
         }
         entries.clear();
+
+        failQueued(failure);
+    }
+
+    private void failQueued(Throwable failure)
+    {
+        while (true)
+        {
+            FrameEntry entry = controlQueue.poll();
+            if (entry == null)
+                entry = queue.poll();
+            if (entry == null)
+                break;
+            notifyCallbackFailure(entry.callback, failure);
+            entry.release();
+        }
     }
 
     private void releaseAggregate()
@@ -337,16 +415,10 @@ public class FrameFlusher extends IteratingCallback
 
     void terminate(Throwable cause)
     {
-        Throwable reason;
-        synchronized (this)
-        {
-            reason = terminated;
-            if (reason == null)
-                terminated = cause;
-        }
+        boolean terminating = terminated.compareAndSet(null, cause);
         if (LOG.isDebugEnabled())
-            LOG.debug("{} {}", reason == null ? "Terminating" : "Terminated", this);
-        if (reason == null)
+            LOG.debug("{} {}", terminating ? "Terminating" : "Terminated", this);
+        if (terminating)
             iterate();
     }
 
@@ -403,7 +475,7 @@ public class FrameFlusher extends IteratingCallback
             super.toString(),
             getQueueSize(),
             aggSize,
-            terminated);
+            terminated.get());
     }
 
     private class FrameEntry
@@ -442,7 +514,7 @@ public class FrameFlusher extends IteratingCallback
         @Override
         public String toString()
         {
-            return String.format("%s[%s,%s,%s,%s]", getClass().getSimpleName(), frame, callback, batchMode, terminated);
+            return String.format("%s[%s,%s,%s,%s]", getClass().getSimpleName(), frame, callback, batchMode, terminated.get());
         }
     }
 }
@@ -21,11 +21,11 @@ package org.eclipse.jetty.websocket.common.io.payload;
 import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.util.MaskUtil;
 
 public class DeMaskProcessor implements PayloadProcessor
 {
     private byte[] maskBytes;
-    private int maskInt;
     private int maskOffset;
 
     @Override
@@ -36,41 +36,12 @@ public class DeMaskProcessor implements PayloadProcessor
             return;
         }
 
-        int maskInt = this.maskInt;
-        int start = payload.position();
-        int end = payload.limit();
-        int offset = this.maskOffset;
-        int remaining;
-        while ((remaining = end - start) > 0)
-        {
-            if (remaining >= 4 && (offset & 3) == 0)
-            {
-                payload.putInt(start, payload.getInt(start) ^ maskInt);
-                start += 4;
-                offset += 4;
-            }
-            else
-            {
-                payload.put(start, (byte)(payload.get(start) ^ maskBytes[offset & 3]));
-                ++start;
-                ++offset;
-            }
-        }
-        maskOffset = offset;
+        maskOffset = MaskUtil.mask(payload, payload.position(), payload.limit(), maskBytes, maskOffset);
     }
 
     public void reset(byte[] mask)
     {
         this.maskBytes = mask;
-        int maskInt = 0;
-        if (mask != null)
-        {
-            for (byte maskByte : mask)
-            {
-                maskInt = (maskInt << 8) + (maskByte & 0xFF);
-            }
-        }
-        this.maskInt = maskInt;
         this.maskOffset = 0;
     }
 
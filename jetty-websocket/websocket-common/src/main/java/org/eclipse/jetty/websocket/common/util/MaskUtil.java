@@ -0,0 +1,97 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Collection of utility methods to mask and unmask WebSocket payloads (RFC-6455: Section 5.3)
+ */
+public final class MaskUtil
+{
+    /**
+     * XOR the bytes of a buffer with a 4 byte mask.
+     * <p>
+     * The bytes are processed 8 at a time, using the byte order of the buffer,
+     * so that heap and direct buffers of any byte order are masked with the
+     * same long-wide operations, and only the trailing bytes are masked one by one.
+     * <p>
+     * Masking is its own inverse, so this method both masks and unmasks payloads.
+     *
+     * @param buffer the buffer to mask, its position and limit are not modified
+     * @param start the index of the first byte to mask
+     * @param end the index after the last byte to mask
+     * @param mask the 4 byte mask
+     * @param maskOffset the index in the mask of the byte to apply to the first byte
+     * @return the index in the mask of the byte to apply to the byte after the last one
+     */
+    public static int mask(ByteBuffer buffer, int start, int end, byte[] mask, int maskOffset)
+    {
+        int offset = maskOffset & 3;
+        if (end - start >= 8)
+        {
+            // Consuming 8 bytes does not change the mask offset.
+            long maskLong = toMaskLong(mask, offset, buffer.order());
+            int longEnd = end - 7;
+            while (start < longEnd)
+            {
+                buffer.putLong(start, buffer.getLong(start) ^ maskLong);
+                start += 8;
+            }
+        }
+        while (start < end)
+        {
+            buffer.put(start, (byte)(buffer.get(start) ^ mask[offset]));
+            ++start;
+            offset = (offset + 1) & 3;
+        }
+        return offset;
+    }
+
+    /**
+     * @param mask the 4 byte mask
+     * @param maskOffset the index in the mask of the byte to apply to the first byte
+     * @param order the byte order of the buffer the mask is applied to
+     * @return the mask repeated over 8 bytes, as read from a buffer with the given byte order
+     */
+    private static long toMaskLong(byte[] mask, int maskOffset, ByteOrder order)
+    {
+        long maskLong = 0;
+        if (order == ByteOrder.BIG_ENDIAN)
+        {
+            for (int i = 0; i < 8; ++i)
+            {
+                maskLong = (maskLong << 8) | (mask[(maskOffset + i) & 3] & 0xFF);
+            }
+        }
+        else
+        {
+            for (int i = 7; i >= 0; --i)
+            {
+                maskLong = (maskLong << 8) | (mask[(maskOffset + i) & 3] & 0xFF);
+            }
+        }
+        return maskLong;
+    }
+
+    private MaskUtil()
+    {
+    }
+}
@@ -24,7 +24,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
@@ -51,6 +53,7 @@ import org.eclipse.jetty.websocket.common.test.OutgoingFramesCapture;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -515,6 +518,101 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         assertThat("Frame.rsv3", capturedFrame.isRsv3(), is(false));
     }
 
+    @Test
+    public void testIdleDeflaterReleased() throws Exception
+    {
+        CompressionMemoryManager memoryManager = new CompressionMemoryManager();
+        memoryManager.setIdleTimeout(1000);
+
+        PerMessageDeflateExtension ext = newServerExtension(memoryManager);
+
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.outgoingFrame(new TextFrame().setPayload("Hello Hello Hello"), null, BatchMode.OFF);
+        assertThat(memoryManager.getDeflatersInUse(), is(1));
+        assertThat(memoryManager.getNativeMemory(), is(CompressionMemoryManager.DEFLATER_MEMORY));
+
+        // Sweep as if the idle timeout had elapsed.
+        memoryManager.sweep(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(memoryManager.getIdleTimeout()));
+        assertThat(memoryManager.getDeflatersInUse(), is(0));
+        assertThat(memoryManager.getIdleReleases(), is(1L));
+
+        // The next message is compressed by a new Deflater, and
+        // the remote Inflater can still decompress it in context.
+        ext.outgoingFrame(new TextFrame().setPayload("Hello Again"), null, BatchMode.OFF);
+        assertThat(memoryManager.getDeflatersInUse(), is(1));
+        capture.assertFrameCount(2);
+
+        Inflater inflater = new Inflater(true);
+        assertThat(inflate(inflater, capture.getFrames().poll()), is("Hello Hello Hello"));
+        assertThat(inflate(inflater, capture.getFrames().poll()), is("Hello Again"));
+
+        ext.stop();
+        assertThat(memoryManager.getDeflatersInUse(), is(0));
+    }
+
+    @Test
+    public void testNoContextTakeoverUnderMemoryPressure() throws Exception
+    {
+        CompressionMemoryManager memoryManager = new CompressionMemoryManager();
+        memoryManager.setMaxNativeMemory(CompressionMemoryManager.DEFLATER_MEMORY);
+
+        PerMessageDeflateExtension ext1 = newServerExtension(memoryManager);
+        assertThat(ext1.getConfig().getParameterizedName(), is("permessage-deflate"));
+
+        ext1.getDeflater();
+        ext1.getInflater();
+        assertThat(memoryManager.isMemoryPressure(), is(true));
+
+        PerMessageDeflateExtension ext2 = newServerExtension(memoryManager);
+        ExtensionConfig negotiated = ext2.getConfig();
+        assertThat(negotiated.getParameterKeys(), containsInAnyOrder("client_no_context_takeover", "server_no_context_takeover"));
+        assertThat(memoryManager.getNoContextTakeoverNegotiations(), is(1L));
+
+        // Without context takeover, the idle Inflater can be released too.
+        long idleNanos = TimeUnit.SECONDS.toNanos(1);
+        ext2.getDeflater();
+        ext2.getInflater();
+        // Release as if the idle timeout had elapsed.
+        long now = System.nanoTime() + idleNanos;
+        ext2.releaseIdle(now, idleNanos);
+        ext1.releaseIdle(now, idleNanos);
+        assertThat(memoryManager.getDeflatersInUse(), is(0));
+        // The Inflater of the first extension uses context takeover.
+        assertThat(memoryManager.getInflatersInUse(), is(1));
+
+        ext1.stop();
+        ext2.stop();
+        assertThat(memoryManager.getNativeMemory(), is(0L));
+    }
+
+    private PerMessageDeflateExtension newServerExtension(CompressionMemoryManager memoryManager) throws Exception
+    {
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.setBufferPool(bufferPool);
+        ext.setDeflaterPool(deflaterPool);
+        ext.setInflaterPool(inflaterPool);
+        ext.setMemoryManager(memoryManager);
+        ext.setPolicy(WebSocketPolicy.newServerPolicy());
+        ext.setConfig(ExtensionConfig.parse("permessage-deflate"));
+        ext.start();
+        return ext;
+    }
+
+    private static String inflate(Inflater inflater, Frame frame) throws DataFormatException
+    {
+        ByteBuffer payload = frame.getPayload().slice();
+        byte[] input = new byte[payload.remaining() + 4];
+        payload.get(input, 0, payload.remaining());
+        // Add back the tail bytes dropped by permessage-deflate.
+        System.arraycopy(new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF}, 0, input, input.length - 4, 4);
+        inflater.setInput(input);
+        byte[] output = new byte[1024];
+        int length = inflater.inflate(output);
+        return new String(output, 0, length, StandardCharsets.UTF_8);
+    }
+
     @Test
     public void testPyWebSocket_Client_NoContextTakeover_ThreeOra()
     {
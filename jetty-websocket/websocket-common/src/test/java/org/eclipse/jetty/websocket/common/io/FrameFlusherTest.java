@@ -21,20 +21,27 @@ package org.eclipse.jetty.websocket.common.io;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritePendingException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.api.extensions.IncomingFrames;
 import org.eclipse.jetty.websocket.common.CloseInfo;
@@ -47,6 +54,7 @@ import org.junit.jupiter.api.Test;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -146,6 +154,117 @@ public class FrameFlusherTest
         System.out.printf("Received: %,d frames%n", endPoint.incomingFrames.size());
     }
 
+    @Test
+    public void testMaxBatchFrames() throws Exception
+    {
+        WebSocketPolicy policy = WebSocketPolicy.newServerPolicy();
+        Generator generator = new Generator(policy, bufferPool);
+        CapturingEndPoint endPoint = new CapturingEndPoint(WebSocketPolicy.newClientPolicy(), bufferPool);
+        FrameFlusher frameFlusher = new FrameFlusher(bufferPool, generator, endPoint, policy.getMaxBinaryMessageBufferSize(), 8);
+        frameFlusher.setMaxBatchFrames(3);
+
+        for (int i = 0; i < 2; ++i)
+        {
+            assertTrue(frameFlusher.enqueue(new TextFrame().setPayload("Hello " + i), null, BatchMode.ON));
+            frameFlusher.iterate();
+        }
+        // The frames are aggregated, but not written yet.
+        assertThat(endPoint.incomingFrames.size(), is(0));
+
+        assertTrue(frameFlusher.enqueue(new TextFrame().setPayload("Hello 2"), null, BatchMode.ON));
+        frameFlusher.iterate();
+        assertThat(endPoint.incomingFrames.size(), is(3));
+    }
+
+    @Test
+    public void testMaxBatchBytes() throws Exception
+    {
+        WebSocketPolicy policy = WebSocketPolicy.newServerPolicy();
+        Generator generator = new Generator(policy, bufferPool);
+        CapturingEndPoint endPoint = new CapturingEndPoint(WebSocketPolicy.newClientPolicy(), bufferPool);
+        FrameFlusher frameFlusher = new FrameFlusher(bufferPool, generator, endPoint, policy.getMaxBinaryMessageBufferSize(), 8);
+        frameFlusher.setMaxBatchBytes(Generator.MAX_HEADER_LENGTH + 16);
+
+        assertTrue(frameFlusher.enqueue(new TextFrame().setPayload("0123456789"), null, BatchMode.ON));
+        frameFlusher.iterate();
+        assertThat(endPoint.incomingFrames.size(), is(0));
+
+        // The second frame does not fit in the batch, so both are written.
+        assertTrue(frameFlusher.enqueue(new TextFrame().setPayload("0123456789"), null, BatchMode.ON));
+        frameFlusher.iterate();
+        assertThat(endPoint.incomingFrames.size(), is(2));
+    }
+
+    @Test
+    public void testConcurrentEnqueue() throws Exception
+    {
+        WebSocketPolicy policy = WebSocketPolicy.newServerPolicy();
+        Generator generator = new Generator(policy, bufferPool);
+        LinkedBlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        CapturingEndPoint endPoint = new CapturingEndPoint(WebSocketPolicy.newClientPolicy(), bufferPool)
+        {
+            @Override
+            public void incomingFrame(Frame frame)
+            {
+                messages.offer(BufferUtil.toUTF8String(frame.getPayload()));
+            }
+        };
+        FrameFlusher frameFlusher = new FrameFlusher(bufferPool, generator, endPoint, policy.getMaxBinaryMessageBufferSize(), 8);
+
+        int threads = 8;
+        int frames = 1000;
+        CountDownLatch latch = new CountDownLatch(threads * frames);
+        WriteCallback callback = new WriteCallback()
+        {
+            @Override
+            public void writeFailed(Throwable x)
+            {
+            }
+
+            @Override
+            public void writeSuccess()
+            {
+                latch.countDown();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> producers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t)
+        {
+            int thread = t;
+            producers.add(CompletableFuture.runAsync(() ->
+            {
+                for (int i = 0; i < frames; ++i)
+                {
+                    frameFlusher.enqueue(new TextFrame().setPayload(thread + "/" + i), callback, BatchMode.AUTO);
+                    frameFlusher.iterate();
+                }
+            }, executor));
+        }
+        try
+        {
+            CompletableFuture.allOf(producers.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // Frames from the same thread are written in order.
+        int[] next = new int[threads];
+        for (String message : messages)
+        {
+            String[] parts = message.split("/");
+            int thread = Integer.parseInt(parts[0]);
+            assertThat(Integer.parseInt(parts[1]), is(next[thread]++));
+        }
+        for (int count : next)
+        {
+            assertThat(count, is(frames));
+        }
+    }
+
     public static class CapturingEndPoint extends MockEndPoint implements IncomingFrames
     {
         public Parser parser;
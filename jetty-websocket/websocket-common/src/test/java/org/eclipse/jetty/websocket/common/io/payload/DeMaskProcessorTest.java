@@ -19,7 +19,9 @@
 package org.eclipse.jetty.websocket.common.io.payload;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.TypeUtil;
@@ -31,6 +33,8 @@ import org.eclipse.jetty.websocket.common.test.ByteBufferAssert;
 import org.eclipse.jetty.websocket.common.test.UnitGenerator;
 import org.eclipse.jetty.websocket.common.util.Hex;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -106,4 +110,40 @@ public class DeMaskProcessorTest
             assertThat("payload[" + i + "]", payload.get(i), is(msgChar));
         }
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HEAP_BIG_ENDIAN", "HEAP_LITTLE_ENDIAN", "DIRECT_BIG_ENDIAN", "DIRECT_LITTLE_ENDIAN"})
+    public void testDeMaskBuffers(String type)
+    {
+        byte[] mask = TypeUtil.fromHexString("8a1b2c3d");
+        byte[] message = new byte[1031];
+        ThreadLocalRandom.current().nextBytes(message);
+
+        ByteBuffer payload = type.startsWith("DIRECT") ? ByteBuffer.allocateDirect(message.length) : ByteBuffer.allocate(message.length);
+        payload.order(type.endsWith("LITTLE_ENDIAN") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < message.length; i++)
+        {
+            payload.put(i, (byte)(message[i] ^ mask[i & 3]));
+        }
+
+        DeMaskProcessor demask = new DeMaskProcessor();
+        demask.reset(mask);
+        // Process uneven chunks, so that the long-wide unmasking starts at every mask offset.
+        int start = 0;
+        int chunk = 1;
+        while (start < message.length)
+        {
+            int end = Math.min(message.length, start + chunk);
+            ByteBuffer slice = payload.duplicate().order(payload.order());
+            slice.position(start).limit(end);
+            demask.process(slice);
+            start = end;
+            chunk += 3;
+        }
+
+        for (int i = 0; i < message.length; i++)
+        {
+            assertThat("payload[" + i + "]", payload.get(i), is(message[i]));
+        }
+    }
 }
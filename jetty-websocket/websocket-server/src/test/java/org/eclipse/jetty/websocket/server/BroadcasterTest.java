@@ -0,0 +1,153 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.server;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.common.Broadcaster;
+import org.eclipse.jetty.websocket.server.helper.CaptureSocket;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcasterTest
+{
+    private final BlockingQueue<Session> serverSessions = new LinkedBlockingQueue<>();
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketClient client;
+    private Broadcaster broadcaster;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        WebSocketHandler handler = new WebSocketHandler()
+        {
+            @Override
+            public void configure(WebSocketServletFactory factory)
+            {
+                factory.setCreator((request, response) -> new WebSocketAdapter()
+                {
+                    @Override
+                    public void onWebSocketConnect(Session session)
+                    {
+                        super.onWebSocketConnect(session);
+                        serverSessions.offer(session);
+                    }
+                });
+            }
+        };
+        server.setHandler(handler);
+
+        broadcaster = new Broadcaster();
+        server.addBean(broadcaster);
+
+        client = new WebSocketClient();
+        server.addBean(client, true);
+
+        server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        server.stop();
+    }
+
+    @Test
+    public void testBroadcastInterleavedWithMessages() throws Exception
+    {
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort());
+
+        String[] extensions = new String[]{"permessage-deflate", "permessage-deflate; server_no_context_takeover", null, "fragment;maxLength=8"};
+        List<CaptureSocket> clientSockets = new ArrayList<>();
+        List<Session> sessions = new ArrayList<>();
+        for (String extension : extensions)
+        {
+            CaptureSocket clientSocket = new CaptureSocket();
+            ClientUpgradeRequest request = new ClientUpgradeRequest();
+            if (extension != null)
+                request.addExtensions(extension);
+            client.connect(clientSocket, uri, request).get(5, TimeUnit.SECONDS);
+            clientSockets.add(clientSocket);
+            Session session = serverSessions.poll(5, TimeUnit.SECONDS);
+            assertThat(session, notNullValue());
+            sessions.add(session);
+        }
+
+        int count = 5;
+        CountDownLatch latch = new CountDownLatch(count * sessions.size());
+        Broadcaster.Callback callback = new Broadcaster.Callback()
+        {
+            @Override
+            public void succeeded(Session session)
+            {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < count; ++i)
+        {
+            broadcaster.broadcastString(sessions, "broadcast broadcast broadcast #" + i, callback);
+            // Messages sent by each session, compressed with its own context.
+            for (Session session : sessions)
+            {
+                session.getRemote().sendString("unicast unicast unicast #" + i);
+            }
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        for (CaptureSocket clientSocket : clientSockets)
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                assertThat(clientSocket.messages.poll(5, TimeUnit.SECONDS), is("broadcast broadcast broadcast #" + i));
+                assertThat(clientSocket.messages.poll(5, TimeUnit.SECONDS), is("unicast unicast unicast #" + i));
+            }
+        }
+
+        // Each message is generated once without and once with compression.
+        assertThat(broadcaster.getMessages(), is((long)count));
+        assertThat(broadcaster.getEncodings(), is(2L * count));
+        assertThat(broadcaster.getEncodedWrites(), is(3L * count));
+        // The session with the fragment extension generates the message itself.
+        assertThat(broadcaster.getWrites(), is((long)count));
+    }
+}